@@ -0,0 +1,123 @@
+package com.bookstore;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files (-rf json) and flags regressions.
+ *
+ * Usage: BenchmarkComparison baseline.json current.json [threshold-percent]
+ *
+ * A benchmark regresses when its score moves the wrong way (up for time modes, down for
+ * throughput modes) by more than the threshold and by more than both error margins combined.
+ * gc.alloc.rate.norm (from -prof gc) is compared the same way. Exits with 1 on any regression.
+ */
+public class BenchmarkComparison {
+
+    private static final String ALLOC = "gc.alloc.rate.norm";
+
+    private record Result(String mode, String unit, double score, double error, Double alloc, double allocError) {
+        boolean higherIsBetter() {
+            return mode.equals("thrpt");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparison <baseline.json> <current.json> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100.0 : 0.10;
+        Map<String, Result> baseline = read(Path.of(args[0]));
+        Map<String, Result> current = read(Path.of(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %8s  %s%n", "benchmark", "baseline", "current", "change", "");
+        for (Map.Entry<String, Result> e : new TreeMap<>(current).entrySet()) {
+            Result now = e.getValue();
+            Result before = baseline.get(e.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.2f %8s  new%n", e.getKey(), "-", now.score(), "");
+                continue;
+            }
+            boolean slower = worse(before.score(), before.error(), now.score(), now.error(),
+                    now.higherIsBetter(), threshold);
+            System.out.printf("%-70s %14.2f %14.2f %+7.1f%%  %s%n", e.getKey(), before.score(), now.score(),
+                    change(before.score(), now.score()), slower ? "REGRESSION " + now.unit() : now.unit());
+            if (slower) regressions++;
+
+            if (before.alloc() != null && now.alloc() != null) {
+                boolean moreGarbage = worse(before.alloc(), before.allocError(), now.alloc(), now.allocError(),
+                        false, threshold) && now.alloc() - before.alloc() >= 16;
+                System.out.printf("%-70s %14.1f %14.1f %+7.1f%%  %s%n", "  " + ALLOC, before.alloc(), now.alloc(),
+                        change(before.alloc(), now.alloc()), moreGarbage ? "REGRESSION B/op" : "B/op");
+                if (moreGarbage) regressions++;
+            }
+        }
+        for (String gone : baseline.keySet()) {
+            if (!current.containsKey(gone)) System.out.printf("%-70s  missing from current run%n", gone);
+        }
+
+        if (regressions > 0) {
+            System.out.println(regressions + " regression(s) beyond " + Math.round(threshold * 100) + "%");
+            System.exit(1);
+        }
+        System.out.println("No regressions beyond " + Math.round(threshold * 100) + "%");
+    }
+
+    private static boolean worse(double before, double beforeError, double now, double nowError,
+                                 boolean higherIsBetter, double threshold) {
+        double delta = higherIsBetter ? before - now : now - before;
+        return delta > Math.abs(before) * threshold && delta > safe(beforeError) + safe(nowError);
+    }
+
+    private static double change(double before, double now) {
+        return before == 0 ? 0 : (now - before) / before * 100.0;
+    }
+
+    private static double safe(double error) {
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    /** Key: benchmark name plus its parameters, e.g. "CartBenchmark.preview(lines=10)". */
+    private static Map<String, Result> read(Path file) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(Files.readString(file));
+        Map<String, Result> out = new LinkedHashMap<>();
+        for (JsonNode run : root) {
+            StringBuilder key = new StringBuilder(shortName(run.path("benchmark").asText()));
+            JsonNode params = run.path("params");
+            if (params.size() > 0) {
+                key.append('(');
+                Iterator<Map.Entry<String, JsonNode>> it = params.fields();
+                while (it.hasNext()) {
+                    Map.Entry<String, JsonNode> p = it.next();
+                    key.append(p.getKey()).append('=').append(p.getValue().asText());
+                    if (it.hasNext()) key.append(',');
+                }
+                key.append(')');
+            }
+            key.append(" [").append(run.path("threads").asInt(1)).append("t]");
+
+            JsonNode primary = run.path("primaryMetric");
+            JsonNode alloc = run.path("secondaryMetrics").path(ALLOC);
+            out.put(key.toString(), new Result(run.path("mode").asText(), primary.path("scoreUnit").asText(),
+                    primary.path("score").asDouble(), primary.path("scoreError").asDouble(Double.NaN),
+                    alloc.isMissingNode() ? null : alloc.path("score").asDouble(),
+                    alloc.path("scoreError").asDouble(Double.NaN)));
+        }
+        return out;
+    }
+
+    private static String shortName(String benchmark) {
+        int cls = benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1);
+        return cls < 0 ? benchmark : benchmark.substring(cls + 1);
+    }
+}
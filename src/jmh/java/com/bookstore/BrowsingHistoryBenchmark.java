@@ -0,0 +1,78 @@
+package com.bookstore;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording a view and reading recent books, for the per-user BrowsingHistory and for
+ * BrowsingHistoryService. The view stream revisits books about half the time, so
+ * move-to-front is exercised as well as plain inserts and evictions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BrowsingHistoryBenchmark {
+
+    private static final int USERS = 1000;
+    private static final int SEQUENCE = 1 << 12;
+
+    @Param({"10", "50"})
+    int capacity;
+
+    private Book[] books;
+    private String[] users;
+    private int[] sequence;
+    private int next;
+
+    private BrowsingHistory history;
+    private BrowsingHistoryService service;
+
+    @Setup
+    public void setUp() {
+        books = new Book[capacity * 2];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = new Book("b-" + i, "Title " + i, "Author " + i, "Genre", new BigDecimal("9.99"), 10);
+        }
+        users = new String[USERS];
+        for (int i = 0; i < USERS; i++) users[i] = "user-" + i;
+
+        Random random = new Random(42);
+        sequence = new int[SEQUENCE];
+        for (int i = 0; i < SEQUENCE; i++) sequence[i] = random.nextInt(books.length);
+
+        history = new BrowsingHistory(capacity);
+        service = new BrowsingHistoryService(capacity, 30, 64L << 20, 0, BrowsingHistoryRepository.none());
+        for (int i = 0; i < SEQUENCE; i++) {
+            history.view(books[sequence[i]]);
+            service.view(users[i % USERS], books[sequence[i]]);
+        }
+    }
+
+    @Benchmark
+    public void historyView() {
+        history.view(books[sequence[next++ & (SEQUENCE - 1)]]);
+    }
+
+    @Benchmark
+    public List<Book> historyGetRecent() {
+        return history.getRecent();
+    }
+
+    @Benchmark
+    public void serviceView() {
+        int i = next++;
+        service.view(users[i % USERS], books[sequence[i & (SEQUENCE - 1)]]);
+    }
+
+    @Benchmark
+    public List<String> serviceGetRecent() {
+        return service.getRecentIds(users[next++ % USERS]);
+    }
+}
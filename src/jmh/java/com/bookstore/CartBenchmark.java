@@ -0,0 +1,101 @@
+package com.bookstore;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart hot path: a preview builds the cart, then reads items once per line (the hold loop in
+ * CartController) and the total. "legacy" is the previous implementation (copy per read,
+ * BigDecimal per line); run with -prof gc to compare gc.alloc.rate.norm per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"1", "10", "100"})
+    int lines;
+
+    private List<Book> books;
+    private Cart filled;
+    private LegacyCart legacyFilled;
+
+    @Setup
+    public void setUp() {
+        books = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            books.add(new Book("b-" + i, "Title " + i, "Author", "Genre",
+                    new BigDecimal(String.format("%d.%02d", 5 + i % 40, i % 100)), 100));
+        }
+        filled = new Cart();
+        legacyFilled = new LegacyCart();
+        for (Book b : books) {
+            filled.addBook(b, 2);
+            legacyFilled.addBook(b, 2);
+        }
+    }
+
+    @Benchmark
+    public void preview(Blackhole bh) {
+        Cart cart = new Cart();
+        for (Book b : books) cart.addBook(b, 2);
+        for (Book b : books) bh.consume(cart.getItems().get(b.getId()));
+        bh.consume(cart.calculateTotal());
+    }
+
+    @Benchmark
+    public void previewLegacy(Blackhole bh) {
+        LegacyCart cart = new LegacyCart();
+        for (Book b : books) cart.addBook(b, 2);
+        for (Book b : books) bh.consume(cart.getItems().get(b.getId()));
+        bh.consume(cart.calculateTotal());
+    }
+
+    @Benchmark
+    public void readTotal(Blackhole bh) {
+        bh.consume(filled.getItems());
+        bh.consume(filled.calculateTotal());
+    }
+
+    @Benchmark
+    public void readTotalLegacy(Blackhole bh) {
+        bh.consume(legacyFilled.getItems());
+        bh.consume(legacyFilled.calculateTotal());
+    }
+
+    /** Cart before the cents fast path, kept here as the baseline. */
+    static final class LegacyCart {
+        private final Map<String, CartItem> items = new LinkedHashMap<>();
+
+        synchronized void addBook(Book book, int qty) {
+            CartItem existing = items.get(book.getId());
+            if (existing == null) {
+                items.put(book.getId(), new CartItem(book.getId(), book.getTitle(), book.getAuthor(),
+                        book.getIsbn(), book.getPrice(), qty));
+            } else {
+                existing.increaseQuantity(qty);
+            }
+        }
+
+        synchronized Map<String, CartItem> getItems() {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(items));
+        }
+
+        synchronized BigDecimal calculateTotal() {
+            return items.values().stream()
+                    .map(CartItem::totalPrice)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+    }
+}
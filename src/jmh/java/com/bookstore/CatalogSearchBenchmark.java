@@ -0,0 +1,74 @@
+package com.bookstore;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BookService's title/author "contains" search over a synthetic catalog. "indexed" is the
+ * BookSearchIndex path BookService answers from once warm; "scan" is the filter it applies
+ * to a full table scan before the index is ready (minus the DynamoDB round trips).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogSearchBenchmark {
+
+    private static final String[] WORDS = {
+            "shadow", "river", "empire", "garden", "winter", "secret", "silver", "machine", "ocean", "night",
+            "history", "journey", "stone", "kingdom", "letters", "forest", "city", "memory", "fire", "island"};
+
+    @Param({"10000", "100000"})
+    int catalog;
+
+    /** common: one title word; rare: a single author; short: under one trigram. */
+    @Param({"common", "rare", "short"})
+    String query;
+
+    private List<Book> books;
+    private BookSearchIndex index;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        books = new ArrayList<>(catalog);
+        for (int i = 0; i < catalog; i++) {
+            String title = "The " + WORDS[random.nextInt(WORDS.length)] + " of the "
+                    + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            books.add(new Book("b-" + i, title, "Writer " + (i % 5000), "Genre", new BigDecimal("9.99"), 10));
+        }
+        index = new BookSearchIndex();
+        index.rebuild(books);
+        text = switch (query) {
+            case "common" -> "Kingdom";
+            case "rare" -> "Writer 4321";
+            default -> "ty";
+        };
+    }
+
+    @Benchmark
+    public List<Book> indexed() {
+        return index.search(text);
+    }
+
+    @Benchmark
+    public List<Book> scan() {
+        String lower = text.toLowerCase();
+        List<Book> out = new ArrayList<>();
+        for (Book b : books) {
+            if ((b.getTitle() != null && b.getTitle().toLowerCase().contains(lower)) ||
+                    (b.getAuthor() != null && b.getAuthor().toLowerCase().contains(lower))) {
+                out.add(b);
+            }
+        }
+        return out;
+    }
+}
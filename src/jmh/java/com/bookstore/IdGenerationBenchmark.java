@@ -0,0 +1,41 @@
+package com.bookstore;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Deterministic ids derived from title + author, computed on every import and create. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGenerationBenchmark {
+
+    private static final int BOOKS = 1 << 10;
+
+    private final String[] titles = new String[BOOKS];
+    private final String[] authors = new String[BOOKS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < BOOKS; i++) {
+            titles[i] = "The Collected Works of Example Title Number " + i;
+            authors[i] = "Author Surname " + (i % 97);
+        }
+    }
+
+    @Benchmark
+    public String asinFromBook() {
+        int i = next++ & (BOOKS - 1);
+        return AsinGenerator.generateFromBook(titles[i], authors[i]);
+    }
+
+    @Benchmark
+    public String deterministicId() {
+        int i = next++ & (BOOKS - 1);
+        return DeterministicId.forBook(titles[i], authors[i]);
+    }
+}
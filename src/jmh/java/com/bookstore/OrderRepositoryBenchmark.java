@@ -0,0 +1,59 @@
+package com.bookstore;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Order history reads against InMemoryOrderRepository with 1000 users. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderRepositoryBenchmark {
+
+    private static final int USERS = 1000;
+
+    @Param({"10000", "100000"})
+    int orders;
+
+    private InMemoryOrderRepository repo;
+    private String[] users;
+
+    @Setup
+    public void setUp() {
+        repo = new InMemoryOrderRepository();
+        users = new String[USERS];
+        for (int i = 0; i < USERS; i++) users[i] = "user-" + i;
+
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i = 0; i < orders; i++) {
+            Map<String, CartItem> items = new LinkedHashMap<>();
+            String bookId = "b-" + (i % 500);
+            items.put(bookId, new CartItem(bookId, "Title", "Author", "isbn", new BigDecimal("12.50"), 1 + i % 3));
+            repo.save(new Order("o-" + i, users[i % USERS], items,
+                    new BigDecimal("12.50").multiply(BigDecimal.valueOf(1 + i % 3)), start.plusSeconds(i)));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public List<Order> findByUser(Cursor c) {
+        return repo.findByUser(users[c.next++ % USERS]);
+    }
+
+    @Benchmark
+    public OrderPage findByUserFirstPage(Cursor c) {
+        return repo.findByUser(users[c.next++ % USERS], 20, null);
+    }
+}
@@ -0,0 +1,161 @@
+package com.bookstore;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * One GET /api/recommendations minus the DynamoDB round trips: the saved list is in memory and
+ * booksById is a warm map. "typed" is RecommendationService with batched hydration; "legacy"
+ * is the previous path (adapter probing method names, repository mapping each entry through
+ * reflective getter/field lookups). Run with -prof gc to compare gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecommendationReadBenchmark {
+
+    private static final String USER = "alice";
+    private static final int LIMIT = 5;           // the old adapter's only limit; also the endpoint default
+
+    private RecommendationService service;
+    private Map<String, Book> cache;
+
+    @Setup
+    public void setUp() {
+        List<Recommendation> saved = new ArrayList<>();
+        cache = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            String id = "b-" + i;
+            saved.add(new Recommendation(i + 1, id, "Title " + i, "Bought together with your past purchases"));
+            cache.put(id, new Book(id, "Title " + i, "Author", "Genre", new BigDecimal("9.99"), 10));
+        }
+        service = new RecommendationService(new SavedRecommendations(saved));
+    }
+
+    @Benchmark
+    public List<Book> typed() {
+        return service.recommendForUser(USER, LIMIT, this::booksInOrder);
+    }
+
+    @Benchmark
+    public List<Book> legacy() {
+        return LegacyRead.recommendForUser(service, USER);
+    }
+
+    /** Same contract as BookServiceAdapter.findAllByIdInOrder on a full cache hit. */
+    private List<Book> booksInOrder(List<String> ids) {
+        List<Book> found = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Book b = cache.get(id);
+            if (b != null) found.add(b);
+        }
+        return found;
+    }
+
+    /** One user's saved list, returned the way DynamoDbSingleItemRecommendationRepository reads it. */
+    static final class SavedRecommendations implements RecommendationRepository {
+        private final List<Recommendation> saved;
+
+        SavedRecommendations(List<Recommendation> saved) {
+            this.saved = saved;
+        }
+
+        @Override
+        public void saveRecommendations(String userId, List<Recommendation> recs) {}
+
+        @Override
+        public List<Recommendation> getTopRecommendations(String userId, int limit) {
+            return saved.stream()
+                    .sorted(Comparator.comparingInt(Recommendation::getRank))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public void deleteRecommendations(String userId) {}
+
+        @Override
+        public List<Book> findRecommendationsForUser(String userId, int limit) {
+            return getTopRecommendations(userId, limit).stream()
+                    .map(LegacyRead::bookFromRecommendation)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /** The reflective read path before typed mapping, kept here as the baseline. */
+    static final class LegacyRead {
+
+        @SuppressWarnings("unchecked")
+        static List<Book> recommendForUser(RecommendationService svc, String user) {
+            String[] candidateNames = {"recommendForUser", "getRecommendationsForUser", "recommendationsFor",
+                    "getForUser", "recommend", "findRecommendations", "getRecommendations"};
+            for (String name : candidateNames) {
+                try {
+                    java.lang.reflect.Method m = svc.getClass().getMethod(name, String.class);
+                    Object result = m.invoke(svc, user);
+                    if (result instanceof List) return (List<Book>) result;
+                } catch (Exception ignored) {
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        static Book bookFromRecommendation(Recommendation r) {
+            if (r == null) return null;
+            for (String getter : new String[]{"getBook", "getItem"}) {
+                try {
+                    Object res = r.getClass().getMethod(getter).invoke(r);
+                    if (res instanceof Book) return (Book) res;
+                } catch (Exception ignored) {
+                }
+            }
+            String id = tryInvokeStringGetter(r, "getBookId", "getItemId", "getId");
+            String title = tryInvokeStringGetter(r, "getTitle", "getName");
+            String author = tryInvokeStringGetter(r, "getAuthor", "getWriter");
+            if (id == null && title == null && author == null) return null;
+            try {
+                Book b = new Book();
+                if (id != null) Book.class.getMethod("setId", String.class).invoke(b, id);
+                if (title != null) Book.class.getMethod("setTitle", String.class).invoke(b, title);
+                if (author != null) Book.class.getMethod("setAuthor", String.class).invoke(b, author);
+                return b;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        private static String tryInvokeStringGetter(Recommendation r, String... methodNames) {
+            for (String methodName : methodNames) {
+                try {
+                    Object res = r.getClass().getMethod(methodName).invoke(r);
+                    if (res != null) return res.toString();
+                } catch (Exception ignored) {
+                }
+            }
+            for (String fieldName : new String[]{"bookId", "itemId", "id", "title", "name", "author", "writer"}) {
+                try {
+                    java.lang.reflect.Field f = r.getClass().getDeclaredField(fieldName);
+                    f.setAccessible(true);
+                    Object res = f.get(r);
+                    if (res != null) return res.toString();
+                } catch (Exception ignored) {
+                }
+            }
+            return null;
+        }
+    }
+}
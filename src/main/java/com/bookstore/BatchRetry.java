@@ -0,0 +1,45 @@
+package com.bookstore;
+
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Retry loop shared by the DynamoDB batch calls (BatchGetItem/BatchWriteItem): the call is
+ * repeated with exponential backoff for whatever the previous attempt left unprocessed.
+ */
+final class BatchRetry {
+
+    static final int MAX_ATTEMPTS = 6;
+
+    /** What a retried batch left unprocessed, and the exception that stopped it early (if any). */
+    record Outcome<T>(T remaining, RuntimeException error) {}
+
+    private BatchRetry() {}
+
+    /**
+     * Run {@code call} on the pending work until {@code done} holds or MAX_ATTEMPTS calls were
+     * made; each call returns what is still unprocessed. Exceptions end the loop and are reported
+     * in the outcome together with the work that was pending when they happened.
+     */
+    static <T> Outcome<T> untilProcessed(T pending, Predicate<T> done, UnaryOperator<T> call) {
+        try {
+            for (int attempt = 0; !done.test(pending) && attempt < MAX_ATTEMPTS; attempt++) {
+                if (attempt > 0) backoff(attempt);
+                pending = call.apply(pending);
+            }
+            return new Outcome<>(pending, null);
+        } catch (RuntimeException e) {
+            return new Outcome<>(pending, e);
+        }
+    }
+
+    /** Sleep 50 ms, 100 ms, ... up to one second before retry number {@code attempt}. */
+    static void backoff(int attempt) {
+        try {
+            Thread.sleep(Math.min(1000L, 25L << attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying", e);
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package com.bookstore;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSecondaryPartitionKey;
 
 import java.math.BigDecimal;
+import java.util.Locale;
 
 @DynamoDbBean
 public class Book {
@@ -29,6 +31,13 @@ public class Book {
         this.stockQuantity = stockQuantity;
     }
 
+    /** Field-by-field copy, for handing out books that callers may modify. */
+    public Book(Book other) {
+        this(other.id, other.title, other.author, other.genre, other.price, other.stockQuantity);
+        this.asin = other.asin;
+        this.isbn = other.isbn;
+    }
+
     @DynamoDbPartitionKey
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
@@ -39,6 +48,14 @@ public class Book {
     public String getTitle() { return title; }
     public void setTitle(String title) { this.title = title; }
 
+    // Derived from title; stored so the "TitleLowerIndex" GSI can answer case-insensitive lookups.
+    // The setter only exists for the bean mapper - the value always follows the title.
+    @JsonIgnore
+    @DynamoDbAttribute("titleLower")
+    @DynamoDbSecondaryPartitionKey(indexNames = {"TitleLowerIndex"})
+    public String getTitleLower() { return normalizeTitle(title); }
+    public void setTitleLower(String titleLower) { }
+
     @DynamoDbAttribute("author")
     // optionally add @DynamoDbSecondaryPartitionKey(indexNames = {"AuthorIndex"}) if you create an AuthorIndex GSI
     public String getAuthor() { return author; }
@@ -65,6 +82,16 @@ public class Book {
     public String getAsin() { return asin; }
     public void setAsin(String asin) { this.asin = asin; }
 
+    /**
+     * Normalized form used for case-insensitive title matching (trimmed, lower-cased).
+     * Returns null for blank titles, since GSI keys cannot be empty.
+     */
+    public static String normalizeTitle(String title) {
+        if (title == null) return null;
+        String t = title.trim().toLowerCase(Locale.ROOT);
+        return t.isEmpty() ? null : t;
+    }
+
     /**
      * Ensure ASIN is set before saving
      */
@@ -0,0 +1,212 @@
+package com.bookstore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process trigram index over book titles and authors.
+ *
+ * Answers the same case-insensitive "title or author contains" query as a full
+ * table scan, but from memory:
+ * - every lower-cased title/author is split into 3-character grams
+ * - a query picks the smallest posting list among its own grams as candidates
+ * - candidates are verified with contains(), so results stay exact
+ *
+ * Queries shorter than one gram fall back to a linear pass over the indexed books
+ * (still in memory, no DynamoDB round trip).
+ *
+ * Writes are serialized; reads are lock-free against concurrent maps. The index keeps its
+ * own copies: put() copies the book in, get()/search() hand out copies, and a stock change
+ * replaces the entry with a new copy rather than editing the one readers may be holding.
+ */
+public class BookSearchIndex {
+
+    private static final int GRAM = 3;
+
+    /** Indexed view of one book: a private copy of it plus its normalized search fields. */
+    private record Entry(Book book, String title, String author) {
+        boolean matches(String lower) {
+            return (title != null && title.contains(lower)) || (author != null && author.contains(lower));
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    private Set<String> touched; // ids written since beginReconcile(); guarded by this
+
+    /** Replace the whole index with the given books (startup / full reload). */
+    public synchronized void rebuild(Collection<Book> books) {
+        touched = null;
+        entries.clear();
+        postings.clear();
+        if (books != null) {
+            for (Book b : books) put(b);
+        }
+        ready = true;
+    }
+
+    /** Add or replace one book. Books without an id are ignored. */
+    public synchronized void put(Book book) {
+        if (book == null || book.getId() == null) return;
+        if (touched != null) touched.add(book.getId());
+        Entry old = entries.get(book.getId());
+        if (old != null) unlink(book.getId(), old);
+
+        Entry e = new Entry(new Book(book), lower(book.getTitle()), lower(book.getAuthor()));
+        entries.put(book.getId(), e);
+        for (String g : grams(e)) {
+            postings.computeIfAbsent(g, k -> ConcurrentHashMap.newKeySet()).add(book.getId());
+        }
+    }
+
+    /** Remove one book by id (no-op if absent). */
+    public synchronized void remove(String id) {
+        if (id == null) return;
+        if (touched != null) touched.add(id);
+        Entry old = entries.remove(id);
+        if (old != null) unlink(id, old);
+    }
+
+    /** Apply a committed stock change (floored at 0) to the indexed book, if it has a stock count. */
+    public synchronized void adjustStock(String id, int delta) {
+        if (id == null) return;
+        if (touched != null) touched.add(id);
+        Entry e = entries.get(id);
+        if (e == null || e.book().getStockQuantity() == null) return;
+        Book next = new Book(e.book());
+        next.setStockQuantity(Math.max(0, next.getStockQuantity() + delta));
+        entries.put(id, new Entry(next, e.title(), e.author()));   // same text, same postings
+    }
+
+    /**
+     * Start remembering which ids get written, so a later {@link #reconcile} with a full
+     * read that began now does not roll those writes back.
+     */
+    public synchronized void beginReconcile() {
+        touched = new HashSet<>();
+    }
+
+    /**
+     * Bring the index in line with a full read of the table: fresh books replace indexed
+     * ones and indexed books missing from the read are dropped, except for ids written
+     * since {@link #beginReconcile} (the read may predate them). Returns the ids that changed.
+     */
+    public synchronized Set<String> reconcile(Collection<Book> fresh) {
+        Set<String> keep = touched == null ? Set.of() : touched;
+        touched = null;
+        Set<String> seen = new HashSet<>();
+        Set<String> changed = new HashSet<>();
+        for (Book b : fresh) {
+            if (b == null || b.getId() == null) continue;
+            seen.add(b.getId());
+            if (keep.contains(b.getId())) continue;
+            Entry old = entries.get(b.getId());
+            if (old == null || !sameContent(old.book(), b)) {
+                put(b);
+                changed.add(b.getId());
+            }
+        }
+        for (String id : new ArrayList<>(entries.keySet())) {
+            if (!seen.contains(id) && !keep.contains(id)) {
+                remove(id);
+                changed.add(id);
+            }
+        }
+        ready = true;
+        return changed;
+    }
+
+    /** Drop a {@link #beginReconcile} whose full read failed. */
+    public synchronized void cancelReconcile() {
+        touched = null;
+    }
+
+    /** Copy of the book currently indexed under this id, or null. */
+    public Book get(String id) {
+        Entry e = id == null ? null : entries.get(id);
+        return e == null ? null : new Book(e.book());
+    }
+
+    /** True once {@link #rebuild} has run; before that callers should not trust an empty answer. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** Case-insensitive "title or author contains text", as copies. Null/empty text matches every book. */
+    public List<Book> search(String text) {
+        String lower = text == null ? "" : text.toLowerCase();
+        List<Book> out = new ArrayList<>();
+
+        if (lower.length() < GRAM) {
+            for (Entry e : entries.values()) {
+                if (e.matches(lower)) out.add(new Book(e.book()));
+            }
+            return out;
+        }
+
+        // Rarest gram gives the smallest candidate set; verification keeps it exact.
+        Set<String> candidates = null;
+        for (int i = 0; i + GRAM <= lower.length(); i++) {
+            Set<String> p = postings.get(lower.substring(i, i + GRAM));
+            if (p == null || p.isEmpty()) return out;
+            if (candidates == null || p.size() < candidates.size()) candidates = p;
+        }
+
+        for (String id : candidates) {
+            Entry e = entries.get(id);
+            if (e != null && e.matches(lower)) out.add(new Book(e.book()));
+        }
+        return out;
+    }
+
+    // -------------------------------
+    // internals
+    // -------------------------------
+
+    private void unlink(String id, Entry e) {
+        for (String g : grams(e)) {
+            postings.computeIfPresent(g, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private static boolean sameContent(Book a, Book b) {
+        return Objects.equals(a.getTitle(), b.getTitle()) && Objects.equals(a.getAuthor(), b.getAuthor())
+                && Objects.equals(a.getGenre(), b.getGenre()) && Objects.equals(a.getAsin(), b.getAsin())
+                && Objects.equals(a.getIsbn(), b.getIsbn())
+                && Objects.equals(a.getStockQuantity(), b.getStockQuantity())
+                && (a.getPrice() == null ? b.getPrice() == null
+                    : b.getPrice() != null && a.getPrice().compareTo(b.getPrice()) == 0);
+    }
+
+    private static Set<String> grams(Entry e) {
+        Set<String> out = new HashSet<>();
+        addGrams(e.title(), out);
+        addGrams(e.author(), out);
+        return out;
+    }
+
+    private static void addGrams(String s, Set<String> out) {
+        if (s == null) return;
+        for (int i = 0; i + GRAM <= s.length(); i++) {
+            out.add(s.substring(i, i + GRAM));
+        }
+    }
+
+    private static String lower(String s) {
+        return s == null ? null : s.toLowerCase();
+    }
+}
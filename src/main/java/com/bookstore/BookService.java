@@ -1,22 +1,58 @@
 package com.bookstore;
 
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.enhanced.dynamodb.*;
 import software.amazon.awssdk.enhanced.dynamodb.model.*;
 import software.amazon.awssdk.services.dynamodb.*;
 import software.amazon.awssdk.services.dynamodb.model.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 /**
  * BookService using DynamoDB Enhanced client (v2).
  * - Uses injected DynamoDB client (configured via DynamoUsersConfig)
- * - Creates a table "Books" if missing, with GSIs for "title" and "asin"
+ * - Creates a table "Books" if missing, with GSIs for "title", "asin" and the normalized title;
+ *   on an existing table the normalized-title GSI is added and rows lacking titleLower are
+ *   backfilled in the background, with title lookups served from the search index meanwhile
  * - Provides CRUD and simple search utilities
+ * - Full-table reads use a parallel segmented scan (books.scan.segments)
+ * - Bulk imports, updates and deletes are batched (BatchGetItem/BatchWriteItem) with lookups
+ *   and partial updates spread over a bounded worker pool
  * - Includes idempotent save/update to avoid duplicate books (by title)
+ * - Keeps an in-memory title/author search index current on every write path
+ * - With books.snapshot.path set, starts from a local catalog snapshot (if younger than
+ *   books.snapshot.max-age-minutes) instead of a scan, reconciles with the table in the
+ *   background and rewrites the snapshot periodically
+ * - The index follows local writes and ids announced on the invalidation bus, without
+ *   reading the table; books.index.reconcile-minutes (0 = off, the default) adds an opt-in
+ *   full re-read as a safety net for lost invalidation messages
  */
 @Service
 public class BookService {
@@ -25,25 +61,70 @@ public class BookService {
     private final DynamoDbEnhancedClient enhancedClient;
     private final DynamoDbTable<Book> bookTable;
     private final String tableName = "Books";
+    private static final String TITLE_LOWER_INDEX = "TitleLowerIndex";
+    private static final int BATCH_WRITE_LIMIT = 25;   // DynamoDB BatchWriteItem maximum
+    private static final int BATCH_GET_LIMIT = 100;    // DynamoDB BatchGetItem maximum
+    public static final int MAX_TRANSACTION_ITEMS = 100; // DynamoDB TransactWriteItems maximum
+    private static final int TRANSACTION_MAX_ATTEMPTS = 3;
+    private final BookSearchIndex searchIndex = new BookSearchIndex();
+    private final int scanSegments;
+    private final ExecutorService scanExecutor;
+    private final ExecutorService bulkExecutor;
+    private final Path snapshotPath;
+    private final long snapshotRewriteMinutes;
+    private final Duration snapshotMaxAge;
+    private final long reconcileMinutes;
+    private ScheduledExecutorService catalogScheduler;   // snapshot + reconcile ticks, one thread
+    private volatile boolean servingSnapshot;
+    private volatile boolean titleLowerReady = true;       // false while the GSI is building
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Set<String>>> reconcileListeners = new CopyOnWriteArrayList<>();
 
     // Constructor injection - Spring provides these from DynamoUsersConfig
-    public BookService(DynamoDbClient dynamoDbClient, DynamoDbEnhancedClient enhancedClient) {
+    public BookService(DynamoDbClient dynamoDbClient, DynamoDbEnhancedClient enhancedClient,
+                       @Value("${books.scan.segments:4}") int scanSegments,
+                       @Value("${books.bulk.workers:8}") int bulkWorkers,
+                       @Value("${books.snapshot.path:}") String snapshotPath,
+                       @Value("${books.snapshot.rewrite-minutes:10}") long snapshotRewriteMinutes,
+                       @Value("${books.snapshot.max-age-minutes:60}") long snapshotMaxAgeMinutes,
+                       @Value("${books.index.reconcile-minutes:0}") long reconcileMinutes) {
         this.dynamoDbClient = dynamoDbClient;
         this.enhancedClient = enhancedClient;
         this.bookTable = enhancedClient.table(tableName, TableSchema.fromBean(Book.class));
+        this.scanSegments = Math.max(1, scanSegments);
+        this.scanExecutor = this.scanSegments > 1 ? newWorkerPool("books-scan-", this.scanSegments) : null;
+        this.bulkExecutor = newWorkerPool("books-bulk-", Math.max(1, bulkWorkers));
+        this.snapshotPath = snapshotPath == null || snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        this.snapshotRewriteMinutes = Math.max(1, snapshotRewriteMinutes);
+        this.snapshotMaxAge = Duration.ofMinutes(Math.max(1, snapshotMaxAgeMinutes));
+        this.reconcileMinutes = Math.max(0, reconcileMinutes);
         createTableIfNotExists();
     }
 
+    private static ExecutorService newWorkerPool(String prefix, int threads) {
+        AtomicInteger n = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, prefix + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
     private void createTableIfNotExists() {
         try {
-            dynamoDbClient.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
+            DescribeTableResponse existing =
+                    dynamoDbClient.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
+            boolean building = ensureTitleLowerIndex(existing.table());
+            titleLowerReady = !building;
+            bulkExecutor.submit(() -> finishTitleLowerIndex(building));
         } catch (ResourceNotFoundException e) {
             CreateTableRequest createTableRequest = CreateTableRequest.builder()
                     .tableName(tableName)
                     .attributeDefinitions(
                             AttributeDefinition.builder().attributeName("id").attributeType(ScalarAttributeType.S).build(),
                             AttributeDefinition.builder().attributeName("title").attributeType(ScalarAttributeType.S).build(),
-                            AttributeDefinition.builder().attributeName("asin").attributeType(ScalarAttributeType.S).build()
+                            AttributeDefinition.builder().attributeName("asin").attributeType(ScalarAttributeType.S).build(),
+                            AttributeDefinition.builder().attributeName("titleLower").attributeType(ScalarAttributeType.S).build()
                     )
                     .keySchema(KeySchemaElement.builder().attributeName("id").keyType(KeyType.HASH).build())
                     .provisionedThroughput(ProvisionedThroughput.builder()
@@ -62,6 +143,14 @@ public class BookService {
                                     .indexName("AsinIndex")
                                     .keySchema(KeySchemaElement.builder().attributeName("asin").keyType(KeyType.HASH).build())
                                     .projection(Projection.builder().projectionType(ProjectionType.ALL).build())
+                                    .provisionedThroughput(ProvisionedThroughput.builder()
+                                            .readCapacityUnits(5L).writeCapacityUnits(5L).build())
+                                    .build(),
+                            // Case-insensitive title lookups for upsert-by-title
+                            GlobalSecondaryIndex.builder()
+                                    .indexName(TITLE_LOWER_INDEX)
+                                    .keySchema(KeySchemaElement.builder().attributeName("titleLower").keyType(KeyType.HASH).build())
+                                    .projection(Projection.builder().projectionType(ProjectionType.ALL).build())
                                     .provisionedThroughput(ProvisionedThroughput.builder()
                                             .readCapacityUnits(5L).writeCapacityUnits(5L).build())
                                     .build()
@@ -75,6 +164,168 @@ public class BookService {
         }
     }
 
+    /**
+     * Tables created before the normalized-title GSI existed get it added in place.
+     * Returns true when the index was just requested (it is not queryable yet).
+     */
+    private boolean ensureTitleLowerIndex(TableDescription table) {
+        boolean present = table.hasGlobalSecondaryIndexes() && table.globalSecondaryIndexes().stream()
+                .anyMatch(g -> TITLE_LOWER_INDEX.equals(g.indexName()));
+        if (present) return false;
+
+        CreateGlobalSecondaryIndexAction.Builder create = CreateGlobalSecondaryIndexAction.builder()
+                .indexName(TITLE_LOWER_INDEX)
+                .keySchema(KeySchemaElement.builder().attributeName("titleLower").keyType(KeyType.HASH).build())
+                .projection(Projection.builder().projectionType(ProjectionType.ALL).build());
+        boolean onDemand = table.billingModeSummary() != null
+                && table.billingModeSummary().billingMode() == BillingMode.PAY_PER_REQUEST;
+        if (!onDemand) {
+            create.provisionedThroughput(ProvisionedThroughput.builder()
+                    .readCapacityUnits(5L).writeCapacityUnits(5L).build());
+        }
+
+        dynamoDbClient.updateTable(UpdateTableRequest.builder()
+                .tableName(tableName)
+                .attributeDefinitions(
+                        AttributeDefinition.builder().attributeName("titleLower").attributeType(ScalarAttributeType.S).build())
+                .globalSecondaryIndexUpdates(GlobalSecondaryIndexUpdate.builder().create(create.build()).build())
+                .build());
+        System.out.println("Creating " + TITLE_LOWER_INDEX + " on existing table " + tableName);
+        return true;
+    }
+
+    /**
+     * Runs on the bulk pool after construction: waits for a just-created index, then
+     * backfills every row still missing titleLower (whether or not the index is new).
+     */
+    private void finishTitleLowerIndex(boolean building) {
+        try {
+            if (building) {
+                waitForIndexActive(TITLE_LOWER_INDEX);
+                titleLowerReady = true;
+            }
+            migrateExistingBooksToNormalizedTitle();
+        } catch (RuntimeException e) {
+            System.err.println("Normalized-title backfill failed (retried on the next start): " + e.getMessage());
+        }
+    }
+
+    private void waitForIndexActive(String indexName) {
+        while (!Thread.currentThread().isInterrupted()) {
+            TableDescription t = dynamoDbClient.describeTable(
+                    DescribeTableRequest.builder().tableName(tableName).build()).table();
+            boolean active = t.hasGlobalSecondaryIndexes() && t.globalSecondaryIndexes().stream()
+                    .anyMatch(g -> indexName.equals(g.indexName()) && g.indexStatus() == IndexStatus.ACTIVE);
+            if (active) return;
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        throw new IllegalStateException("Interrupted while waiting for " + indexName);
+    }
+
+    /**
+     * Load the search index once at startup so searches never have to scan.
+     * A readable catalog snapshot is used as-is and reconciled with the table in the background.
+     */
+    @PostConstruct
+    public void buildSearchIndex() {
+        CatalogSnapshot snapshot = loadSnapshot();
+        if (snapshot != null) {
+            searchIndex.rebuild(snapshot.books());
+            searchIndex.beginReconcile();
+            servingSnapshot = true;
+            System.out.println("Search index built from catalog snapshot: " + snapshot.books().size()
+                    + " books (written " + snapshot.writtenAt() + "), reconciling in background");
+        } else {
+            List<Book> all = listAllBooks();
+            searchIndex.rebuild(all);
+            System.out.println("Search index built: " + all.size() + " books");
+        }
+
+        if (snapshotPath != null || reconcileMinutes > 0) {
+            catalogScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "catalog-sync");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        if (snapshotPath != null) {
+            catalogScheduler.scheduleWithFixedDelay(this::snapshotTick, 0, snapshotRewriteMinutes, TimeUnit.MINUTES);
+        }
+        if (reconcileMinutes > 0) {
+            catalogScheduler.scheduleWithFixedDelay(this::reconcileTick, reconcileMinutes, reconcileMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /** True while reads are answered from the startup snapshot and the reconcile scan has not finished. */
+    public boolean isServingSnapshot() {
+        return servingSnapshot;
+    }
+
+    /** Called after the background reconcile replaced snapshot data with the table's contents. */
+    public void onCatalogReloaded(Runnable listener) {
+        reloadListeners.add(listener);
+    }
+
+    /** Called with the ids a periodic reconcile found changed in the table (edited, added or deleted). */
+    public void onIndexReconciled(Consumer<Set<String>> listener) {
+        reconcileListeners.add(listener);
+    }
+
+    private CatalogSnapshot loadSnapshot() {
+        if (snapshotPath == null) return null;
+        try {
+            return CatalogSnapshot.load(snapshotPath, snapshotMaxAge);
+        } catch (IOException e) {
+            System.err.println("Ignoring catalog snapshot " + snapshotPath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // First tick reconciles a snapshot start; every tick then rewrites the snapshot from the index
+    private void snapshotTick() {
+        if (servingSnapshot) {
+            try {
+                List<Book> fresh = listAllBooks();
+                searchIndex.reconcile(fresh);
+                servingSnapshot = false;
+                System.out.println("Catalog reconciled with " + tableName + ": " + fresh.size() + " books");
+                reloadListeners.forEach(Runnable::run);
+            } catch (RuntimeException e) {
+                System.err.println("Catalog reconcile failed, still serving snapshot: " + e.getMessage());
+                return;
+            }
+        }
+        writeSnapshot();
+    }
+
+    // Opt-in safety net: a full read replaces whatever other nodes changed behind our back
+    private void reconcileTick() {
+        if (servingSnapshot) return;   // the snapshot tick's reconcile goes first
+        try {
+            searchIndex.beginReconcile();
+            List<Book> fresh = listAllBooks();
+            Set<String> changed = searchIndex.reconcile(fresh);
+            if (changed.isEmpty()) return;
+            System.out.println("Catalog reconcile: " + changed.size() + " books changed in " + tableName);
+            reconcileListeners.forEach(l -> l.accept(changed));
+        } catch (RuntimeException e) {
+            searchIndex.cancelReconcile();
+            System.err.println("Catalog reconcile failed: " + e.getMessage());
+        }
+    }
+
+    private void writeSnapshot() {
+        try {
+            CatalogSnapshot.write(snapshotPath, searchIndex.search(""));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not write catalog snapshot " + snapshotPath + ": " + e.getMessage());
+        }
+    }
+
     // -------------------------------
     // CRUD OPERATIONS
     // -------------------------------
@@ -83,14 +334,16 @@ public class BookService {
     public void saveBook(Book book) {
         book.ensureAsin();
         bookTable.putItem(book);
+        searchIndex.put(book);
     }
 
     /**
      * Inserts or updates a book (by title) to prevent duplicates.
      * If a book with the same title (case-insensitive) exists, update its price/stock.
      * Otherwise insert the incoming book (preserving its id).
+     * Returns the book as stored (the existing record when one was updated).
      */
-    public void saveOrUpdateBookByTitle(Book book) {
+    public Book saveOrUpdateBookByTitle(Book book) {
         book.ensureAsin();
 
         Optional<Book> existing = findOneByTitleIgnoreCase(book.getTitle());
@@ -102,10 +355,14 @@ public class BookService {
             old.setAuthor(book.getAuthor());
             old.setGenre(book.getGenre());
             bookTable.updateItem(old);
+            searchIndex.put(old);
             System.out.println("Updated existing book: " + old.getTitle() + " (id=" + old.getId() + ")");
+            return old;
         } else {
             bookTable.putItem(book);
+            searchIndex.put(book);
             System.out.println("Inserted new book: " + book.getTitle() + " (id=" + book.getId() + ")");
+            return book;
         }
     }
 
@@ -114,9 +371,51 @@ public class BookService {
         return bookTable.getItem(r -> r.key(k -> k.partitionValue(id)));
     }
 
+    /**
+     * Load many books by id with BatchGetItem, 100 keys per request. The enhanced client's page
+     * iterator re-requests any unprocessed keys. Missing ids are simply absent from the map.
+     */
+    public Map<String, Book> getBooksByIds(Collection<String> ids) {
+        return getBooksByIds(ids, false);
+    }
+
+    private Map<String, Book> getBooksByIds(Collection<String> ids, boolean consistentRead) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinct.removeIf(id -> id == null || id.isBlank());
+        Map<String, Book> out = new HashMap<>();
+
+        for (int from = 0; from < distinct.size(); from += BATCH_GET_LIMIT) {
+            ReadBatch.Builder<Book> batch = ReadBatch.builder(Book.class).mappedTableResource(bookTable);
+            for (String id : distinct.subList(from, Math.min(from + BATCH_GET_LIMIT, distinct.size()))) {
+                batch.addGetItem(GetItemEnhancedRequest.builder()
+                        .key(Key.builder().partitionValue(id).build())
+                        .consistentRead(consistentRead)
+                        .build());
+            }
+            ReadBatch readBatch = batch.build();
+            for (BatchGetResultPage page : enhancedClient.batchGetItem(r -> r.readBatches(readBatch))) {
+                for (Book b : page.resultsForTable(bookTable)) out.put(b.getId(), b);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Re-read these books with strongly consistent reads into the search index, after another
+     * node reported writing them. Books that no longer exist are dropped from the index.
+     */
+    public void reloadIndexed(Collection<String> ids) {
+        Map<String, Book> fresh = getBooksByIds(ids, true);
+        for (String id : ids) {
+            Book b = fresh.get(id);
+            if (b != null) searchIndex.put(b); else searchIndex.remove(id);
+        }
+    }
+
     /** Delete by ID. */
     public void deleteBook(String id) {
         bookTable.deleteItem(Key.builder().partitionValue(id).build());
+        searchIndex.remove(id);
     }
 
     /** Delete all books with the given title (exact match via GSI). Returns count deleted. */
@@ -128,11 +427,53 @@ public class BookService {
         return books.size();
     }
 
-    /** List all books (scan). */
+    /**
+     * List all books (scan).
+     * With more than one segment, each segment is scanned on its own worker and pages are
+     * appended straight into the result as they arrive.
+     */
     public List<Book> listAllBooks() {
-        return StreamSupport.stream(bookTable.scan().spliterator(), false)
-                .flatMap(page -> page.items().stream())
-                .collect(Collectors.toList());
+        if (scanExecutor == null) {
+            return StreamSupport.stream(bookTable.scan().spliterator(), false)
+                    .flatMap(page -> page.items().stream())
+                    .collect(Collectors.toList());
+        }
+
+        List<Book> out = new ArrayList<>();
+        List<Future<?>> segments = new ArrayList<>(scanSegments);
+        for (int i = 0; i < scanSegments; i++) {
+            final int segment = i;
+            segments.add(scanExecutor.submit(() -> {
+                for (Page<Book> page : bookTable.scan(r -> r.segment(segment).totalSegments(scanSegments))) {
+                    synchronized (out) {
+                        out.addAll(page.items());
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> f : segments) f.get();
+        } catch (InterruptedException e) {
+            segments.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning " + tableName, e);
+        } catch (ExecutionException e) {
+            segments.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Parallel scan of " + tableName + " failed", e.getCause());
+        }
+        return out;
+    }
+
+    /** Book as currently held by the search index (no DynamoDB read), or null. */
+    public Book indexedBook(String id) {
+        return searchIndex.get(id);
+    }
+
+    /** Books as currently held by the search index (falls back to a scan before it is built). */
+    public List<Book> indexedBooks() {
+        return searchIndex.isReady() ? searchIndex.search("") : listAllBooks();
     }
 
     /** Query by exact title (via GSI). */
@@ -145,8 +486,11 @@ public class BookService {
                 .collect(Collectors.toList());
     }
 
-    /** Search by partial match (title or author). */
+    /** Search by partial match (title or author), answered from the in-memory index. */
     public List<Book> searchByTitleOrAuthorContains(String text) {
+        if (searchIndex.isReady()) {
+            return searchIndex.search(text);
+        }
         String lower = text == null ? "" : text.toLowerCase();
         return StreamSupport.stream(bookTable.scan().spliterator(), false)
                 .flatMap(page -> page.items().stream())
@@ -159,16 +503,138 @@ public class BookService {
     // UTILITIES
     // -------------------------------
 
-    /** Find one book by title, ignoring case. */
+    /**
+     * Find one book by title, ignoring case (single query on the normalized-title GSI;
+     * from the search index while that GSI is still being built).
+     */
     public Optional<Book> findOneByTitleIgnoreCase(String title) {
-        if (title == null || title.isEmpty()) return Optional.empty();
+        String key = Book.normalizeTitle(title);
+        if (key == null) return Optional.empty();
+        if (!titleLowerReady) {
+            return searchIndex.search(key).stream()
+                    .filter(b -> key.equals(Book.normalizeTitle(b.getTitle())))
+                    .findFirst();
+        }
+
+        DynamoDbIndex<Book> titleLowerIndex = bookTable.index(TITLE_LOWER_INDEX);
+        QueryConditional qc = QueryConditional.keyEqualTo(Key.builder().partitionValue(key).build());
 
-        List<Book> all = listAllBooks();
-        return all.stream()
-                .filter(b -> b.getTitle() != null && b.getTitle().equalsIgnoreCase(title))
+        return StreamSupport.stream(titleLowerIndex.query(r -> r.queryConditional(qc).limit(1)).spliterator(), false)
+                .flatMap(page -> page.items().stream())
                 .findFirst();
     }
 
+    // -------------------------------
+    // STOCK
+    // -------------------------------
+
+    /** A cart line the store could not cover: the book is gone, or has fewer copies than requested. */
+    public record StockShortfall(String bookId, String title, int requested, int available, boolean found) {}
+
+    /**
+     * Take stock for every book in one TransactWriteItems: each line is an UpdateItem with
+     * condition {@code attribute_exists(id) AND stockQuantity >= :qty}, so either every
+     * decrement applies or none does, and concurrent checkouts cannot oversell.
+     *
+     * Returns the lines whose condition failed (empty list = stock taken). Books without a
+     * stockQuantity attribute count as out of stock.
+     */
+    public List<StockShortfall> decrementStock(Map<String, Integer> quantities) {
+        return decrementStock(quantities, Map.of());
+    }
+
+    /**
+     * Same, but each book must also keep {@code reserved} copies behind for other shoppers'
+     * holds: the condition becomes {@code stockQuantity >= :qty + reserved}.
+     */
+    public List<StockShortfall> decrementStock(Map<String, Integer> quantities, Map<String, Integer> reserved) {
+        if (quantities.isEmpty()) return List.of();
+        if (quantities.size() > MAX_TRANSACTION_ITEMS) {
+            throw new IllegalArgumentException("At most " + MAX_TRANSACTION_ITEMS + " books per transaction");
+        }
+
+        List<Map.Entry<String, Integer>> lines = new ArrayList<>(quantities.entrySet());
+        List<TransactWriteItem> items = new ArrayList<>(lines.size());
+        for (Map.Entry<String, Integer> line : lines) {
+            int qty = line.getValue();
+            int need = qty + reserved.getOrDefault(line.getKey(), 0);
+            items.add(TransactWriteItem.builder().update(Update.builder()
+                    .tableName(tableName)
+                    .key(Map.of("id", AttributeValue.fromS(line.getKey())))
+                    .updateExpression("SET stockQuantity = stockQuantity - :qty")
+                    .conditionExpression("attribute_exists(id) AND stockQuantity >= :need")
+                    .expressionAttributeValues(Map.of(
+                            ":qty", AttributeValue.fromN(Integer.toString(qty)),
+                            ":need", AttributeValue.fromN(Integer.toString(need))))
+                    .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                    .build()).build());
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                dynamoDbClient.transactWriteItems(r -> r.transactItems(items));
+                break;
+            } catch (TransactionCanceledException e) {
+                List<StockShortfall> shortfalls = shortfalls(lines, reserved, e.cancellationReasons());
+                if (!shortfalls.isEmpty()) return shortfalls;
+                // cancelled only by conflicting transactions on the same books: try again
+                if (attempt >= TRANSACTION_MAX_ATTEMPTS) {
+                    throw new IllegalStateException("Stock is being updated concurrently, please retry", e);
+                }
+                BatchRetry.backoff(attempt);
+            }
+        }
+
+        adjustIndexedStock(quantities, -1);
+        return List.of();
+    }
+
+    /** Give stock back (e.g. when the order could not be stored after stock was taken). */
+    public void restoreStock(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) return;
+        List<TransactWriteItem> items = new ArrayList<>(quantities.size());
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            items.add(TransactWriteItem.builder().update(Update.builder()
+                    .tableName(tableName)
+                    .key(Map.of("id", AttributeValue.fromS(line.getKey())))
+                    .updateExpression("ADD stockQuantity :qty")
+                    .conditionExpression("attribute_exists(id)")
+                    .expressionAttributeValues(Map.of(":qty", AttributeValue.fromN(line.getValue().toString())))
+                    .build()).build());
+        }
+        dynamoDbClient.transactWriteItems(r -> r.transactItems(items));
+        adjustIndexedStock(quantities, 1);
+    }
+
+    private List<StockShortfall> shortfalls(List<Map.Entry<String, Integer>> lines, Map<String, Integer> reserved,
+                                            List<CancellationReason> reasons) {
+        List<StockShortfall> out = new ArrayList<>();
+        if (reasons == null) return out;
+        for (int i = 0; i < reasons.size() && i < lines.size(); i++) {
+            CancellationReason reason = reasons.get(i);
+            if (!"ConditionalCheckFailed".equals(reason.code())) continue;
+
+            String bookId = lines.get(i).getKey();
+            int requested = lines.get(i).getValue();
+            Map<String, AttributeValue> old = reason.item();
+            if (old == null || old.isEmpty()) {
+                out.add(new StockShortfall(bookId, null, requested, 0, false));
+            } else {
+                AttributeValue title = old.get("title");
+                AttributeValue stock = old.get("stockQuantity");
+                int inStock = stock == null || stock.n() == null ? 0 : Integer.parseInt(stock.n());
+                int available = Math.max(0, inStock - reserved.getOrDefault(bookId, 0));
+                out.add(new StockShortfall(bookId, title == null ? null : title.s(), requested, available, true));
+            }
+        }
+        return out;
+    }
+
+    /** Keep the indexed books in step with a committed stock change. */
+    private void adjustIndexedStock(Map<String, Integer> quantities, int sign) {
+        quantities.forEach((id, qty) -> searchIndex.adjustStock(id, sign * qty));
+    }
+
     // -------------------------------
     // ASIN-RELATED OPERATIONS
     // -------------------------------
@@ -199,6 +665,7 @@ public class BookService {
             if (book.getAsin() == null || book.getAsin().isBlank()) {
                 book.ensureAsin();
                 bookTable.updateItem(book);
+                searchIndex.put(book);
                 updated++;
                 System.out.println("Added ASIN to: " + book.getTitle() + " -> " + book.getAsin());
             }
@@ -208,6 +675,30 @@ public class BookService {
         return updated;
     }
 
+    /**
+     * Backfill the normalized title on rows written without it. Only titleLower is set,
+     * so stock changed by concurrent checkouts is left alone.
+     */
+    public int migrateExistingBooksToNormalizedTitle() {
+        Expression missing = Expression.builder().expression("attribute_not_exists(titleLower)").build();
+        int updated = 0;
+
+        for (Page<Book> page : bookTable.scan(r -> r.filterExpression(missing))) {
+            for (Book book : page.items()) {
+                if (book.getTitleLower() == null) continue; // blank titles cannot be indexed
+                try {
+                    updateFields(book.getId(), Map.of("titleLower", AttributeValue.fromS(book.getTitleLower())), Map.of());
+                    updated++;
+                } catch (ConditionalCheckFailedException e) {
+                    // deleted since the scan
+                }
+            }
+        }
+
+        if (updated > 0) System.out.println("Normalized-title backfill complete: " + updated + " books updated");
+        return updated;
+    }
+
     /** Delete by ASIN */
     public boolean deleteByAsin(String asin) {
         Book book = getBookByAsin(asin);
@@ -222,76 +713,413 @@ public class BookService {
     // BULK OPERATIONS
     // -------------------------------
 
-    /** Bulk update books - returns count of successfully updated books */
-    public int bulkUpdateBooks(List<BulkUpdateRequest.BookUpdate> updates) {
-        int updated = 0;
+    /** One resolved insert of a bulk upsert: request position, item to put, and what it means. */
+    private record PendingWrite(int position, Book book, BulkWriteResult.Status status) {}
 
-        for (BulkUpdateRequest.BookUpdate update : updates) {
-            try {
-                Book book = null;
+    /**
+     * Bulk upsert-by-title for imports, with the same merge rules as saveOrUpdateBookByTitle.
+     * - duplicate titles inside the request collapse to the last occurrence
+     * - existing titles are resolved with concurrent TitleLowerIndex queries
+     * - new books go out as 25-item BatchWriteItem calls; unprocessed items are retried with backoff
+     * - existing books get a partial UpdateItem of the changed fields; stock is applied as
+     *   an ADD of (imported - read), so checkouts that land in between are not overwritten
+     * Returns one result per requested book, in request order.
+     */
+    public BulkWriteResult bulkUpsertBooks(List<Book> books) {
+        BulkWriteResult result = new BulkWriteResult(books.size());
 
-                if (update.getAsin() != null && !update.getAsin().isBlank()) {
-                    book = getBookByAsin(update.getAsin());
-                } else if (update.getId() != null && !update.getId().isBlank()) {
-                    book = getBookById(update.getId());
-                }
+        // 1) de-duplicate within the batch (last occurrence of a title wins)
+        Map<String, Integer> lastByTitle = new LinkedHashMap<>();
+        for (int i = 0; i < books.size(); i++) {
+            Book b = books.get(i);
+            String key = b == null ? null : Book.normalizeTitle(b.getTitle());
+            if (key == null) {
+                result.set(i, new BulkWriteResult.ItemResult(b == null ? null : b.getTitle(), null,
+                        BulkWriteResult.Status.FAILED, "Book requires a non-empty title"));
+                continue;
+            }
+            Integer previous = lastByTitle.put(key, i);
+            if (previous != null) {
+                result.set(previous, new BulkWriteResult.ItemResult(books.get(previous).getTitle(), null,
+                        BulkWriteResult.Status.DUPLICATE, "Superseded by item " + i + " with the same title"));
+            }
+        }
 
-                if (book == null) {
-                    System.out.println("Book not found: " +
-                            (update.getAsin() != null ? "ASIN=" + update.getAsin() : "ID=" + update.getId()));
-                    continue;
+        // 2) resolve existing books by title, concurrently
+        Map<Integer, Future<Optional<Book>>> lookups = new LinkedHashMap<>();
+        for (int i : lastByTitle.values()) {
+            String title = books.get(i).getTitle();
+            lookups.put(i, bulkExecutor.submit(() -> findOneByTitleIgnoreCase(title)));
+        }
+
+        List<PendingWrite> pending = new ArrayList<>(lookups.size());
+        List<Future<?>> updates = new ArrayList<>();
+        for (Map.Entry<Integer, Future<Optional<Book>>> e : lookups.entrySet()) {
+            int i = e.getKey();
+            Book incoming = books.get(i);
+            try {
+                Optional<Book> existing = await(e.getValue());
+                if (existing.isPresent()) {
+                    Book old = existing.get();
+                    updates.add(bulkExecutor.submit(() -> applyUpsert(old, incoming, i, result)));
+                } else {
+                    if (incoming.getId() == null || incoming.getId().isBlank()) {
+                        incoming.setId(DeterministicId.forBook(incoming.getTitle(), incoming.getAuthor()));
+                    }
+                    incoming.ensureAsin();
+                    pending.add(new PendingWrite(i, incoming, BulkWriteResult.Status.INSERTED));
                 }
+            } catch (RuntimeException ex) {
+                result.set(i, new BulkWriteResult.ItemResult(incoming.getTitle(), null,
+                        BulkWriteResult.Status.FAILED, "Lookup failed: " + ex.getMessage()));
+            }
+        }
 
-                if (update.getTitle() != null) book.setTitle(update.getTitle());
-                if (update.getAuthor() != null) book.setAuthor(update.getAuthor());
-                if (update.getGenre() != null) book.setGenre(update.getGenre());
-                if (update.getPrice() != null) book.setPrice(update.getPrice());
-                if (update.getStockQuantity() != null) book.setStockQuantity(update.getStockQuantity());
-                if (update.getIsbn() != null) book.setIsbn(update.getIsbn());
+        // 3) write in chunks; a chunk may not touch the same key twice
+        List<PendingWrite> chunk = new ArrayList<>(BATCH_WRITE_LIMIT);
+        Set<String> idsInChunk = new HashSet<>();
+        for (PendingWrite w : pending) {
+            if (chunk.size() == BATCH_WRITE_LIMIT || idsInChunk.contains(w.book().getId())) {
+                writeChunk(chunk, result);
+                chunk = new ArrayList<>(BATCH_WRITE_LIMIT);
+                idsInChunk.clear();
+            }
+            chunk.add(w);
+            idsInChunk.add(w.book().getId());
+        }
+        if (!chunk.isEmpty()) writeChunk(chunk, result);
+        for (Future<?> f : updates) await(f);
 
-                bookTable.updateItem(book);
-                updated++;
-                System.out.println("Updated: " + book.getTitle() + " (ASIN=" + book.getAsin() + ")");
+        System.out.println("Bulk upsert: " + result.count(BulkWriteResult.Status.INSERTED) + " inserted, "
+                + result.count(BulkWriteResult.Status.UPDATED) + " updated, "
+                + result.count(BulkWriteResult.Status.FAILED) + " failed");
+        return result;
+    }
 
-            } catch (Exception e) {
-                System.err.println("Error updating book: " + e.getMessage());
+    /** Merge an import row into a book read by title: only fields that differ are written. */
+    private void applyUpsert(Book old, Book incoming, int position, BulkWriteResult result) {
+        String id = old.getId();
+        Map<String, AttributeValue> set = new LinkedHashMap<>();
+        Map<String, AttributeValue> add = new LinkedHashMap<>();
+        if (incoming.getPrice() != null
+                && (old.getPrice() == null || incoming.getPrice().compareTo(old.getPrice()) != 0)) {
+            set.put("price", AttributeValue.fromN(incoming.getPrice().toPlainString()));
+        }
+        if (incoming.getAuthor() != null && !incoming.getAuthor().equals(old.getAuthor())) {
+            set.put("author", AttributeValue.fromS(incoming.getAuthor()));
+        }
+        if (incoming.getGenre() != null && !incoming.getGenre().equals(old.getGenre())) {
+            set.put("genre", AttributeValue.fromS(incoming.getGenre()));
+        }
+        Integer stock = incoming.getStockQuantity();
+        if (stock != null && old.getStockQuantity() == null) {
+            set.put("stockQuantity", AttributeValue.fromN(stock.toString()));
+        } else if (stock != null && !stock.equals(old.getStockQuantity())) {
+            add.put("stockQuantity", AttributeValue.fromN(Integer.toString(stock - old.getStockQuantity())));
+        }
+
+        if (set.isEmpty() && add.isEmpty()) {
+            searchIndex.put(old);
+            result.set(position, new BulkWriteResult.ItemResult(old.getTitle(), id,
+                    BulkWriteResult.Status.UPDATED, "Nothing to change"));
+            return;
+        }
+        try {
+            searchIndex.put(updateFields(id, set, add));
+            result.set(position, new BulkWriteResult.ItemResult(old.getTitle(), id, BulkWriteResult.Status.UPDATED, null));
+        } catch (ConditionalCheckFailedException e) {
+            result.set(position, new BulkWriteResult.ItemResult(old.getTitle(), id,
+                    BulkWriteResult.Status.FAILED, "Deleted concurrently"));
+        } catch (RuntimeException e) {
+            result.set(position, new BulkWriteResult.ItemResult(old.getTitle(), id,
+                    BulkWriteResult.Status.FAILED, e.getMessage()));
+        }
+    }
+
+    /** One BatchWriteItem call (plus retries for unprocessed items); records every outcome. */
+    private void writeChunk(List<PendingWrite> chunk, BulkWriteResult result) {
+        List<Book> books = new ArrayList<>(chunk.size());
+        chunk.forEach(w -> books.add(w.book()));
+        BatchOutcome outcome = batchWrite(books, false);
+
+        for (PendingWrite w : chunk) {
+            Book b = w.book();
+            if (outcome.failedIds().contains(b.getId())) {
+                result.set(w.position(), new BulkWriteResult.ItemResult(b.getTitle(), b.getId(),
+                        BulkWriteResult.Status.FAILED, outcome.error()));
+            } else {
+                searchIndex.put(b);
+                result.set(w.position(), new BulkWriteResult.ItemResult(b.getTitle(), b.getId(), w.status(), null));
             }
         }
+    }
 
-        return updated;
+    /** Ids of a batch that never landed, and why. */
+    private record BatchOutcome(Set<String> failedIds, String error) {}
+
+    /**
+     * Put or delete up to 25 distinct books in one BatchWriteItem, retrying unprocessed
+     * items with exponential backoff.
+     */
+    private BatchOutcome batchWrite(List<Book> books, boolean delete) {
+        BatchRetry.Outcome<List<Book>> outcome = BatchRetry.untilProcessed(books, List::isEmpty, remaining -> {
+            WriteBatch.Builder<Book> batch = WriteBatch.builder(Book.class).mappedTableResource(bookTable);
+            for (Book b : remaining) {
+                if (delete) batch.addDeleteItem(Key.builder().partitionValue(b.getId()).build());
+                else batch.addPutItem(b);
+            }
+            BatchWriteResult res = enhancedClient.batchWriteItem(r -> r.addWriteBatch(batch.build()));
+
+            Set<String> unprocessed = new HashSet<>();
+            if (delete) {
+                res.unprocessedDeleteItemsForTable(bookTable)
+                        .forEach(k -> unprocessed.add(k.partitionKeyValue().s()));
+            } else {
+                res.unprocessedPutItemsForTable(bookTable).forEach(b -> unprocessed.add(b.getId()));
+            }
+            return remaining.stream().filter(b -> unprocessed.contains(b.getId())).toList();
+        });
+
+        String error = null;
+        if (outcome.error() != null) {
+            error = outcome.error().getMessage();
+        } else if (!outcome.remaining().isEmpty()) {
+            error = "Not processed after " + BatchRetry.MAX_ATTEMPTS + " attempts (throttled)";
+        }
+        Set<String> failedIds = new HashSet<>();
+        outcome.remaining().forEach(b -> failedIds.add(b.getId()));
+        return new BatchOutcome(failedIds, error);
     }
 
-    /** Bulk delete books by IDs or ASINs - returns count deleted */
-    public int bulkDeleteBooks(List<String> ids, List<String> asins) {
-        int deleted = 0;
+    private static <T> T await(Future<T> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
 
-        if (ids != null) {
-            for (String id : ids) {
-                try {
-                    deleteBook(id);
-                    deleted++;
-                    System.out.println("Deleted book with ID: " + id);
-                } catch (Exception e) {
-                    System.err.println("Error deleting book ID " + id + ": " + e.getMessage());
-                }
+    /**
+     * Batched bulk update for price/stock/metadata pushes.
+     * - ids are resolved with BatchGetItem, ASINs with concurrent AsinIndex queries
+     * - each book gets a partial UpdateItem (SET of the supplied fields only, guarded by
+     *   attribute_exists(id)), spread over the bulk worker pool
+     * - several updates to the same book are applied in request order
+     * Returns one result per update, in request order.
+     */
+    public BulkWriteResult bulkUpdateBooks(List<BulkUpdateRequest.BookUpdate> updates) {
+        BulkWriteResult result = new BulkWriteResult(updates.size());
+
+        // 1) resolve targets: ASIN wins over id, as before
+        List<String> ids = new ArrayList<>();
+        Map<Integer, Future<Book>> asinLookups = new HashMap<>();
+        for (int i = 0; i < updates.size(); i++) {
+            BulkUpdateRequest.BookUpdate u = updates.get(i);
+            if (u == null) continue;
+            if (u.getAsin() != null && !u.getAsin().isBlank()) {
+                String asin = u.getAsin();
+                asinLookups.put(i, bulkExecutor.submit(() -> getBookByAsin(asin)));
+            } else if (u.getId() != null && !u.getId().isBlank()) {
+                ids.add(u.getId());
             }
         }
+        Map<String, Book> byId = getBooksByIds(ids);
 
-        if (asins != null) {
-            for (String asin : asins) {
-                try {
-                    boolean success = deleteByAsin(asin);
-                    if (success) {
-                        deleted++;
-                        System.out.println("Deleted book with ASIN: " + asin);
+        Map<String, List<Integer>> positionsByBook = new LinkedHashMap<>();
+        for (int i = 0; i < updates.size(); i++) {
+            BulkUpdateRequest.BookUpdate u = updates.get(i);
+            String key = updateKey(u);
+            if (key == null) {
+                result.set(i, new BulkWriteResult.ItemResult(null, null,
+                        BulkWriteResult.Status.FAILED, "Update needs an id or asin"));
+                continue;
+            }
+            Book book;
+            try {
+                Future<Book> lookup = asinLookups.get(i);
+                book = lookup != null ? await(lookup) : byId.get(u.getId());
+            } catch (RuntimeException e) {
+                result.set(i, new BulkWriteResult.ItemResult(key, null,
+                        BulkWriteResult.Status.FAILED, "Lookup failed: " + e.getMessage()));
+                continue;
+            }
+            if (book == null) {
+                result.set(i, new BulkWriteResult.ItemResult(key, null, BulkWriteResult.Status.NOT_FOUND, null));
+                continue;
+            }
+            positionsByBook.computeIfAbsent(book.getId(), k -> new ArrayList<>()).add(i);
+        }
+
+        // 2) one task per book, partial updates in request order
+        List<Future<?>> writes = new ArrayList<>(positionsByBook.size());
+        for (Map.Entry<String, List<Integer>> e : positionsByBook.entrySet()) {
+            String id = e.getKey();
+            List<Integer> positions = e.getValue();
+            writes.add(bulkExecutor.submit(() -> {
+                for (int i : positions) applyUpdate(id, updates.get(i), i, result);
+            }));
+        }
+        for (Future<?> f : writes) await(f);
+
+        System.out.println("Bulk update: " + result.count(BulkWriteResult.Status.UPDATED) + " updated, "
+                + result.count(BulkWriteResult.Status.NOT_FOUND) + " not found, "
+                + result.count(BulkWriteResult.Status.FAILED) + " failed");
+        return result;
+    }
+
+    private static String updateKey(BulkUpdateRequest.BookUpdate u) {
+        if (u == null) return null;
+        if (u.getAsin() != null && !u.getAsin().isBlank()) return u.getAsin();
+        if (u.getId() != null && !u.getId().isBlank()) return u.getId();
+        return null;
+    }
+
+    /** SET only the fields the update carries; the new image refreshes the search index. */
+    private void applyUpdate(String id, BulkUpdateRequest.BookUpdate u, int position, BulkWriteResult result) {
+        String key = updateKey(u);
+        if (u.getTitle() != null && u.getTitle().isBlank()) {
+            result.set(position, new BulkWriteResult.ItemResult(key, id,
+                    BulkWriteResult.Status.FAILED, "Title cannot be blank"));
+            return;
+        }
+
+        Map<String, AttributeValue> fields = new LinkedHashMap<>();
+        if (u.getTitle() != null) {
+            fields.put("title", AttributeValue.fromS(u.getTitle()));
+            fields.put("titleLower", AttributeValue.fromS(Book.normalizeTitle(u.getTitle())));
+        }
+        if (u.getAuthor() != null) fields.put("author", AttributeValue.fromS(u.getAuthor()));
+        if (u.getGenre() != null) fields.put("genre", AttributeValue.fromS(u.getGenre()));
+        if (u.getPrice() != null) fields.put("price", AttributeValue.fromN(u.getPrice().toPlainString()));
+        if (u.getStockQuantity() != null) fields.put("stockQuantity", AttributeValue.fromN(u.getStockQuantity().toString()));
+        if (u.getIsbn() != null) fields.put("isbn", AttributeValue.fromS(u.getIsbn()));
+
+        if (fields.isEmpty()) {
+            result.set(position, new BulkWriteResult.ItemResult(key, id,
+                    BulkWriteResult.Status.UPDATED, "Nothing to change"));
+            return;
+        }
+
+        try {
+            searchIndex.put(updateFields(id, fields, Map.of()));
+            result.set(position, new BulkWriteResult.ItemResult(key, id, BulkWriteResult.Status.UPDATED, null));
+        } catch (ConditionalCheckFailedException e) {
+            result.set(position, new BulkWriteResult.ItemResult(key, id,
+                    BulkWriteResult.Status.NOT_FOUND, "Deleted concurrently"));
+        } catch (RuntimeException e) {
+            result.set(position, new BulkWriteResult.ItemResult(key, id,
+                    BulkWriteResult.Status.FAILED, e.getMessage()));
+        }
+    }
+
+    /**
+     * UpdateItem that SETs and ADDs the given attributes of an existing book and returns its
+     * new image. Throws ConditionalCheckFailedException when the book is gone.
+     */
+    private Book updateFields(String id, Map<String, AttributeValue> set, Map<String, AttributeValue> add) {
+        Map<String, String> names = new HashMap<>();
+        Map<String, AttributeValue> values = new HashMap<>();
+        StringJoiner sets = new StringJoiner(", ", "SET ", " ").setEmptyValue("");
+        StringJoiner adds = new StringJoiner(", ", "ADD ", "").setEmptyValue("");
+        int n = 0;
+        for (Map.Entry<String, AttributeValue> f : set.entrySet()) {
+            names.put("#f" + n, f.getKey());
+            values.put(":v" + n, f.getValue());
+            sets.add("#f" + n + " = :v" + n);
+            n++;
+        }
+        for (Map.Entry<String, AttributeValue> f : add.entrySet()) {
+            names.put("#f" + n, f.getKey());
+            values.put(":v" + n, f.getValue());
+            adds.add("#f" + n + " :v" + n);
+            n++;
+        }
+        names.put("#id", "id");
+
+        UpdateItemResponse resp = dynamoDbClient.updateItem(r -> r
+                .tableName(tableName)
+                .key(Map.of("id", AttributeValue.fromS(id)))
+                .updateExpression((sets.toString() + adds).trim())
+                .conditionExpression("attribute_exists(#id)")
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .returnValues(ReturnValue.ALL_NEW));
+        return bookTable.tableSchema().mapToItem(resp.attributes());
+    }
+
+    /**
+     * Batched bulk delete by ids and/or ASINs.
+     * Ids are resolved with BatchGetItem and ASINs with concurrent AsinIndex queries, then the
+     * distinct books are removed with 25-item BatchWriteItem calls.
+     * Results are in request order: all ids first, then all ASINs.
+     */
+    public BulkWriteResult bulkDeleteBooks(List<String> ids, List<String> asins) {
+        List<String> idList = ids == null ? List.of() : ids;
+        List<String> asinList = asins == null ? List.of() : asins;
+        BulkWriteResult result = new BulkWriteResult(idList.size() + asinList.size());
+
+        List<Future<Book>> asinLookups = new ArrayList<>(asinList.size());
+        for (String asin : asinList) {
+            asinLookups.add(bulkExecutor.submit(() -> getBookByAsin(asin)));
+        }
+        Map<String, Book> byId = getBooksByIds(idList);
+
+        // distinct books to delete, with every request position that points at them
+        Map<String, Book> targets = new LinkedHashMap<>();
+        Map<String, List<Integer>> positionsByBook = new HashMap<>();
+        for (int i = 0; i < result.size(); i++) {
+            boolean isId = i < idList.size();
+            String key = isId ? idList.get(i) : asinList.get(i - idList.size());
+            Book book;
+            try {
+                book = isId ? byId.get(key) : await(asinLookups.get(i - idList.size()));
+            } catch (RuntimeException e) {
+                result.set(i, new BulkWriteResult.ItemResult(key, null,
+                        BulkWriteResult.Status.FAILED, "Lookup failed: " + e.getMessage()));
+                continue;
+            }
+            if (book == null) {
+                result.set(i, new BulkWriteResult.ItemResult(key, null, BulkWriteResult.Status.NOT_FOUND, null));
+                continue;
+            }
+            targets.putIfAbsent(book.getId(), book);
+            positionsByBook.computeIfAbsent(book.getId(), k -> new ArrayList<>()).add(i);
+        }
+
+        List<Book> books = new ArrayList<>(targets.values());
+        for (int from = 0; from < books.size(); from += BATCH_WRITE_LIMIT) {
+            List<Book> chunk = books.subList(from, Math.min(from + BATCH_WRITE_LIMIT, books.size()));
+            BatchOutcome outcome = batchWrite(chunk, true);
+
+            for (Book b : chunk) {
+                boolean ok = !outcome.failedIds().contains(b.getId());
+                if (ok) searchIndex.remove(b.getId());
+                List<Integer> positions = positionsByBook.get(b.getId());
+                for (int p = 0; p < positions.size(); p++) {
+                    int i = positions.get(p);
+                    String key = i < idList.size() ? idList.get(i) : asinList.get(i - idList.size());
+                    BulkWriteResult.ItemResult r;
+                    if (!ok) {
+                        r = new BulkWriteResult.ItemResult(key, b.getId(), BulkWriteResult.Status.FAILED, outcome.error());
+                    } else if (p == 0) {
+                        r = new BulkWriteResult.ItemResult(key, b.getId(), BulkWriteResult.Status.DELETED, null);
+                    } else {
+                        r = new BulkWriteResult.ItemResult(key, b.getId(),
+                                BulkWriteResult.Status.DUPLICATE, "Same book as item " + positions.get(0));
                     }
-                } catch (Exception e) {
-                    System.err.println("Error deleting book ASIN " + asin + ": " + e.getMessage());
+                    result.set(i, r);
                 }
             }
         }
 
-        return deleted;
+        System.out.println("Bulk delete: " + result.count(BulkWriteResult.Status.DELETED) + " deleted, "
+                + result.count(BulkWriteResult.Status.NOT_FOUND) + " not found, "
+                + result.count(BulkWriteResult.Status.FAILED) + " failed");
+        return result;
     }
 
     /** Filter books by criteria (for catalog export) */
@@ -299,17 +1127,48 @@ public class BookService {
         List<Book> allBooks = listAllBooks();
 
         return allBooks.stream()
-                .filter(book -> genre == null || genre.isBlank() ||
-                        (book.getGenre() != null && book.getGenre().equalsIgnoreCase(genre)))
-                .filter(book -> author == null || author.isBlank() ||
-                        (book.getAuthor() != null && book.getAuthor().toLowerCase().contains(author.toLowerCase())))
-                .filter(book -> minStock == null || book.getStockQuantity() >= minStock)
-                .filter(book -> maxStock == null || book.getStockQuantity() <= maxStock)
+                .filter(catalogFilter(genre, author, minStock, maxStock))
                 .collect(Collectors.toList());
     }
 
+    /** Export criteria as a predicate; null/blank criteria match everything. */
+    public static Predicate<Book> catalogFilter(String genre, String author, Integer minStock, Integer maxStock) {
+        String authorLower = author == null ? null : author.toLowerCase();
+        return book -> (genre == null || genre.isBlank() ||
+                        (book.getGenre() != null && book.getGenre().equalsIgnoreCase(genre)))
+                && (authorLower == null || authorLower.isBlank() ||
+                        (book.getAuthor() != null && book.getAuthor().toLowerCase().contains(authorLower)))
+                && (minStock == null || book.getStockQuantity() >= minStock)
+                && (maxStock == null || book.getStockQuantity() <= maxStock);
+    }
+
+    /**
+     * Stream matching books to the sink one scan page at a time, without holding the catalog.
+     * Pages are fetched lazily, so a sink that throws (e.g. client went away) stops the scan.
+     */
+    public void forEachBook(Predicate<Book> filter, Consumer<Book> sink) {
+        for (Page<Book> page : bookTable.scan()) {
+            for (Book book : page.items()) {
+                if (filter == null || filter.test(book)) sink.accept(book);
+            }
+        }
+    }
+
     /** Close client resources. */
     public void close() {
+        if (catalogScheduler != null) {
+            catalogScheduler.shutdownNow();
+            try {
+                catalogScheduler.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (snapshotPath != null && !servingSnapshot) writeSnapshot();
+        }
+        if (scanExecutor != null) {
+            scanExecutor.shutdownNow();
+        }
+        bulkExecutor.shutdownNow();
         if (dynamoDbClient != null) {
             dynamoDbClient.close();
         }
@@ -1,21 +1,41 @@
 package com.bookstore;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
- * Thread-safe, capacity-limited browsing history implemented with LinkedList.
- * Most-recent-first. Viewing the same book again moves it to the head.
+ * Thread-safe, capacity-limited browsing history. Most-recent-first.
+ * Viewing the same book again moves it to the head.
+ *
+ * Books sit in a fixed array of slots chained into a doubly linked list by slot index,
+ * with an id -> slot map, so view() is O(1): re-views unlink and relink their slot, and a
+ * full history reuses the tail slot. Writes lock only this history (one per user); reads
+ * return an immutable snapshot that is rebuilt at most once per change, without locking.
  */
 public class BrowsingHistory {
-    private final LinkedList<Book> list = new LinkedList<>();
+    private static final int NONE = -1;
+
     private final int capacity;
+    private final Book[] books;
+    private final int[] prev;
+    private final int[] next;
+    private final Map<String, Integer> slotById;
+    private int head = NONE;
+    private int tail = NONE;
+    private int used;                          // slots handed out so far, never shrinks until clear()
+    private volatile int size;
+    private volatile List<Book> recent = List.of();   // null = stale
 
     public BrowsingHistory(int capacity) {
         if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
         this.capacity = capacity;
+        this.books = new Book[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        this.slotById = new HashMap<>(capacity * 2);
     }
 
     /**
@@ -24,44 +44,87 @@ public class BrowsingHistory {
      */
     public synchronized void view(Book book) {
         Objects.requireNonNull(book, "book cannot be null");
-        // remove existing occurrence if present (by id)
-        list.removeIf(b -> b.getId().equals(book.getId()));
-        // add to front
-        list.addFirst(book);
-        // trim tail if exceed capacity
-        while (list.size() > capacity) {
-            list.removeLast();
+        Integer existing = slotById.get(book.getId());
+        int slot;
+        if (existing != null) {
+            slot = existing;
+            if (slot == head) {
+                books[slot] = book;
+                recent = null;
+                return;
+            }
+            unlink(slot);
+        } else if (used < capacity) {
+            slot = used++;
+            slotById.put(book.getId(), slot);
+            size = used;
+        } else {
+            slot = tail;                           // evict the oldest, reuse its slot
+            unlink(slot);
+            slotById.remove(books[slot].getId());
+            slotById.put(book.getId(), slot);
         }
+        books[slot] = book;
+        linkFirst(slot);
+        recent = null;
     }
 
     /**
      * Return a snapshot list of recent books, most-recent-first.
      * The returned list is unmodifiable.
      */
-    public synchronized List<Book> getRecent() {
-        return Collections.unmodifiableList(new LinkedList<>(list));
+    public List<Book> getRecent() {
+        List<Book> r = recent;
+        return r != null ? r : buildRecent();
     }
 
     /**
      * Return up to n most recent books (n <= capacity).
      */
-    public synchronized List<Book> getRecent(int n) {
-        if (n <= 0) return Collections.emptyList();
-        int limit = Math.min(n, list.size());
-        LinkedList<Book> sub = new LinkedList<>();
-        int i = 0;
-        for (Book b : list) {
-            if (i++ >= limit) break;
-            sub.add(b);
-        }
-        return Collections.unmodifiableList(sub);
+    public List<Book> getRecent(int n) {
+        if (n <= 0) return List.of();
+        List<Book> r = getRecent();
+        return n >= r.size() ? r : r.subList(0, n);
     }
 
     public synchronized void clear() {
-        list.clear();
+        Arrays.fill(books, null);
+        slotById.clear();
+        head = tail = NONE;
+        used = 0;
+        size = 0;
+        recent = List.of();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // -------------------------------
+    // slot list
+    // -------------------------------
+
+    private synchronized List<Book> buildRecent() {
+        if (recent == null) {
+            Book[] out = new Book[used];
+            int i = 0;
+            for (int s = head; s != NONE; s = next[s]) out[i++] = books[s];
+            recent = List.of(out);
+        }
+        return recent;
+    }
+
+    private void unlink(int slot) {
+        int p = prev[slot], n = next[slot];
+        if (p != NONE) next[p] = n; else head = n;
+        if (n != NONE) prev[n] = p; else tail = p;
     }
 
-    public synchronized int size() {
-        return list.size();
+    private void linkFirst(int slot) {
+        prev[slot] = NONE;
+        next[slot] = head;
+        if (head != NONE) prev[head] = slot;
+        head = slot;
+        if (tail == NONE) tail = slot;
     }
 }
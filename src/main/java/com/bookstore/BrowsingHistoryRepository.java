@@ -0,0 +1,27 @@
+package com.bookstore;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Durable copy of browsing histories: per user, book ids most-recent-first.
+ * BrowsingHistoryService reads through it on a local miss and writes to it in batches.
+ */
+public interface BrowsingHistoryRepository {
+
+    /** Stored histories of these users; users with nothing stored are absent. */
+    Map<String, List<String>> loadAll(Collection<String> users);
+
+    /** Replace the stored histories of these users. Returns the users that could not be written. */
+    Set<String> saveAll(Map<String, List<String>> histories);
+
+    /** Histories kept in memory only (tests, single node demos). */
+    static BrowsingHistoryRepository none() {
+        return new BrowsingHistoryRepository() {
+            @Override public Map<String, List<String>> loadAll(Collection<String> users) { return Map.of(); }
+            @Override public Set<String> saveAll(Map<String, List<String>> histories) { return Set.of(); }
+        };
+    }
+}
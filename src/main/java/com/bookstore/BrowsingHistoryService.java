@@ -1,34 +1,205 @@
 package com.bookstore;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Per-user browsing histories, held as compact lists of book ids (callers resolve them to
+ * books through the booksById cache when reading).
+ *
+ * Histories are evicted after browsing.history.idle-minutes without a view or read, and the
+ * whole store is capped at browsing.history.max-bytes of estimated heap, so one-off guest
+ * sessions (crawlers) cannot grow it without bound. Views run inside the store's per-user
+ * compute, so concurrent tabs of one user serialize on that user only; reads never lock.
+ *
+ * Signed-in users' histories are also kept in a {@link BrowsingHistoryRepository}:
+ * - view() only touches memory and marks the user dirty; a background flush every
+ *   browsing.history.flush-millis writes each dirty user's latest list once, in batches
+ * - getRecentIds() reads through to the repository when this node has no loaded copy
+ * - a history started by views before it was read gets the stored ids merged behind
+ *   the new ones (on read, or at the latest right before it is flushed)
+ * Guest histories ({@link #guestKey}) are session-local and never stored.
+ */
 @Service
-public class BrowsingHistoryService {
+public class BrowsingHistoryService implements MeterBinder, AutoCloseable {
+
+    private static final String GUEST_PREFIX = "guest:";
 
     private final int capacity;
-    private final Map<String, Deque<Book>> histories = new ConcurrentHashMap<>();
+    private final Cache<String, RecentIds> histories;
+    private final BrowsingHistoryRepository repository;
+    private final Map<String, RecentIds> dirty = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;     // null: flush() is called by hand (tests)
+    private final LongAdder written = new LongAdder();
+    private final LongAdder readThroughs = new LongAdder();
 
     // Spring will inject property browsing.history.capacity or fallback to 10
-    public BrowsingHistoryService(@Value("${browsing.history.capacity:10}") int capacity) {
+    @Autowired
+    public BrowsingHistoryService(@Value("${browsing.history.capacity:10}") int capacity,
+                                  @Value("${browsing.history.idle-minutes:30}") long idleMinutes,
+                                  @Value("${browsing.history.max-bytes:67108864}") long maxBytes,
+                                  @Value("${browsing.history.flush-millis:2000}") long flushMillis,
+                                  BrowsingHistoryRepository repository) {
+        this(capacity, Duration.ofMinutes(idleMinutes), maxBytes, Ticker.systemTicker(), repository, flushMillis);
+    }
+
+    BrowsingHistoryService(int capacity, Duration idle, long maxBytes, Ticker ticker,
+                           BrowsingHistoryRepository repository, long flushMillis) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
         this.capacity = capacity;
+        this.repository = repository;
+        this.histories = Caffeine.newBuilder()
+                .expireAfterAccess(idle)
+                .maximumWeight(maxBytes)
+                .weigher((String user, RecentIds ids) -> ids.retainedBytes(user))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        if (flushMillis > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "browsing-history-flush");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /** History key for a visitor who is not signed in. */
+    public static String guestKey(String sessionId) {
+        return GUEST_PREFIX + sessionId;
+    }
+
+    public void view(String user, String bookId) {
+        if (user == null || bookId == null) return;
+        boolean stored = isStored(user);
+        // compute (not get + view) so the entry is re-weighed after every change
+        histories.asMap().compute(user, (k, ids) -> {
+            if (ids == null && stored) ids = dirty.get(k);    // evicted before it was flushed
+            if (ids == null) ids = new RecentIds(capacity, !stored);
+            ids.view(bookId);
+            if (stored) dirty.put(k, ids);
+            return ids;
+        });
     }
 
     public void view(String user, Book book) {
-        histories.computeIfAbsent(user, k -> new ArrayDeque<>());
+        if (book != null) view(user, book.getId());
+    }
 
-        Deque<Book> dq = histories.get(user);
+    /** Book ids, most-recent-first, unmodifiable. */
+    public List<String> getRecentIds(String user) {
+        if (user == null) return List.of();
+        RecentIds ids = histories.getIfPresent(user);
+        if (ids == null && dirty.containsKey(user)) {
+            ids = histories.asMap().computeIfAbsent(user, dirty::get);   // evicted before it was flushed
+        }
+        if (ids != null && ids.isLoaded()) return ids.recent();
+        if (!isStored(user)) return ids == null ? List.of() : ids.recent();
+
+        readThroughs.increment();
+        List<String> stored = repository.loadAll(List.of(user)).getOrDefault(user, List.of());
+        return histories.asMap().compute(user, (k, current) -> {
+            if (current == null) current = new RecentIds(capacity, false);
+            current.appendOlder(stored);
+            return current;
+        }).recent();
+    }
+
+    /**
+     * Write every history changed since the last flush (each user once, however many views),
+     * batched by the repository. Users whose write fails stay dirty for the next flush.
+     */
+    public void flush() {
+        if (dirty.isEmpty()) return;
+        Map<String, RecentIds> batch = new HashMap<>();
+        for (String user : dirty.keySet()) {
+            RecentIds ids = dirty.remove(user);
+            if (ids != null) batch.put(user, ids);
+        }
+        try {
+            List<String> unloaded = new ArrayList<>();
+            batch.forEach((user, ids) -> { if (!ids.isLoaded()) unloaded.add(user); });
+            if (!unloaded.isEmpty()) {
+                Map<String, List<String>> stored = repository.loadAll(unloaded);
+                for (String user : unloaded) {
+                    RecentIds ids = batch.get(user);
+                    ids.appendOlder(stored.getOrDefault(user, List.of()));
+                    histories.asMap().computeIfPresent(user, (k, current) -> current); // re-weigh
+                }
+            }
+
+            Map<String, List<String>> lists = new LinkedHashMap<>();
+            batch.forEach((user, ids) -> lists.put(user, ids.recent()));
+            Set<String> failed = repository.saveAll(lists);
+            for (String user : failed) dirty.putIfAbsent(user, batch.get(user));
+            written.add(lists.size() - failed.size());
+        } catch (RuntimeException e) {
+            System.err.println("Browsing history flush failed, will retry: " + e.getMessage());
+            batch.forEach(dirty::putIfAbsent);
+        }
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("browsing.history.entries", histories, Cache::estimatedSize)
+                .description("Browsing histories held in memory").register(registry);
+        Gauge.builder("browsing.history.retained.bytes", histories,
+                        c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                .description("Estimated heap held by browsing histories").baseUnit("bytes").register(registry);
+        FunctionCounter.builder("browsing.history.evictions", histories, c -> c.stats().evictionCount())
+                .description("Histories dropped for idleness or the size cap").register(registry);
+        Gauge.builder("browsing.history.pending", dirty, Map::size)
+                .description("Users with views not yet written to the history table").register(registry);
+        FunctionCounter.builder("browsing.history.written", written, LongAdder::sum)
+                .description("Histories written by the background flush").register(registry);
+        FunctionCounter.builder("browsing.history.read.throughs", readThroughs, LongAdder::sum)
+                .description("Reads that loaded a history from the history table").register(registry);
+    }
+
+    /** Run pending expiry/eviction now (tests). */
+    void cleanUp() {
+        histories.cleanUp();
+    }
 
-        dq.removeIf(b -> b.getId().equals(book.getId()));
-        dq.addFirst(book);
-        while (dq.size() > capacity) dq.removeLast();
+    long entryCount() {
+        return histories.estimatedSize();
     }
 
-    public List<Book> getRecent(String user) {
-        Deque<Book> dq = histories.getOrDefault(user, new ArrayDeque<>());
-        return new ArrayList<>(dq);
+    private static boolean isStored(String user) {
+        return !user.startsWith(GUEST_PREFIX);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,60 @@
+package com.bookstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-item outcome of a bulk operation, reported in request order.
+ * Slots are filled by position so batches/workers can complete in any order.
+ */
+public class BulkWriteResult {
+
+    public enum Status { INSERTED, UPDATED, DELETED, DUPLICATE, NOT_FOUND, FAILED }
+
+    /** key = what the caller sent (title, id or ASIN); id = the book id actually written, when known. */
+    public record ItemResult(String key, String id, Status status, String message) {
+        public boolean isSuccess() {
+            return status == Status.INSERTED || status == Status.UPDATED || status == Status.DELETED;
+        }
+    }
+
+    private final ItemResult[] items;
+
+    public BulkWriteResult(int size) {
+        this.items = new ItemResult[size];
+    }
+
+    public synchronized void set(int position, ItemResult result) {
+        items[position] = result;
+    }
+
+    public synchronized ItemResult get(int position) {
+        return items[position];
+    }
+
+    public synchronized List<ItemResult> getItems() {
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(items)));
+    }
+
+    public synchronized int count(Status status) {
+        int n = 0;
+        for (ItemResult r : items) {
+            if (r != null && r.status() == status) n++;
+        }
+        return n;
+    }
+
+    public synchronized int getSucceeded() {
+        int n = 0;
+        for (ItemResult r : items) {
+            if (r != null && r.isSuccess()) n++;
+        }
+        return n;
+    }
+
+    public int size() {
+        return items.length;
+    }
+}
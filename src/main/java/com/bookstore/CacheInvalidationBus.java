@@ -0,0 +1,32 @@
+package com.bookstore;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Tells the other replicas which books changed, so they can drop or reload their cached
+ * copies instead of waiting for the cache TTL.
+ *
+ * Delivery is best effort: a lost message leaves that node stale until its entries expire.
+ */
+public interface CacheInvalidationBus extends AutoCloseable {
+
+    /** Announce that these book ids were written on this node. */
+    void publish(Collection<String> bookIds);
+
+    /** Handle invalidations published by other nodes (never this node's own). */
+    void subscribe(Consumer<List<String>> listener);
+
+    @Override
+    void close();
+
+    /** Single-node setup: there is nobody to tell. */
+    static CacheInvalidationBus none() {
+        return new CacheInvalidationBus() {
+            @Override public void publish(Collection<String> bookIds) { }
+            @Override public void subscribe(Consumer<List<String>> listener) { }
+            @Override public void close() { }
+        };
+    }
+}
@@ -1,13 +1,25 @@
 package com.bookstore;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 
+/**
+ * Shopping cart. Writes are synchronized and replace CartItems rather than mutating them;
+ * reads share one immutable snapshot (items + total) that is built at most once per change,
+ * so repeated getItems()/calculateTotal() calls neither lock nor copy.
+ */
 public class Cart {
     private final Map<String, CartItem> items = new LinkedHashMap<>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;   // null = stale, rebuilt on next read
+
+    private record Snapshot(Map<String, CartItem> items, BigDecimal total) {
+        static final Snapshot EMPTY = new Snapshot(Collections.unmodifiableMap(new LinkedHashMap<>()), BigDecimal.ZERO);
+    }
 
     public synchronized void addBook(Book book, int qty) {
         if (book == null || qty <= 0) return;
@@ -24,40 +36,82 @@ public class Cart {
                     qty
             ));
         } else {
-            existing.increaseQuantity(qty);
+            items.put(id, existing.withQuantity(existing.getQuantity() + qty));
         }
+        snapshot = null;
     }
 
     public synchronized void updateQuantity(String bookId, int qty) {
         CartItem item = items.get(bookId);
         if (item == null) return;
         if (qty <= 0) items.remove(bookId);
-        else item.setQuantity(qty);
+        else items.put(bookId, item.withQuantity(qty));
+        snapshot = null;
     }
 
     public synchronized void removeBook(String bookId) {
-        items.remove(bookId);
+        if (items.remove(bookId) != null) snapshot = null;
     }
 
     public synchronized void clear() {
         items.clear();
+        snapshot = Snapshot.EMPTY;
+    }
+
+    public Map<String, CartItem> getItems() {
+        return snapshot().items();
     }
 
-    public synchronized Map<String, CartItem> getItems() {
-        return Collections.unmodifiableMap(new LinkedHashMap<>(items));
+    public BigDecimal calculateTotal() {
+        return snapshot().total();
     }
 
-    public synchronized BigDecimal calculateTotal() {
-        return items.values().stream()
-                .map(CartItem::totalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    public boolean isEmpty() {
+        return snapshot().items().isEmpty();
     }
 
-    public synchronized boolean isEmpty() {
-        return items.isEmpty();
+    public Optional<CartItem> getItem(String bookId) {
+        return Optional.ofNullable(snapshot().items().get(bookId));
+    }
+
+    // -------------------------------
+    // snapshot + money
+    // -------------------------------
+
+    private Snapshot snapshot() {
+        Snapshot s = snapshot;
+        return s != null ? s : buildSnapshot();
+    }
+
+    private synchronized Snapshot buildSnapshot() {
+        if (snapshot == null) {
+            snapshot = new Snapshot(Collections.unmodifiableMap(new LinkedHashMap<>(items)), total(items.values()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Sums line totals as long cents and converts to BigDecimal once. The result keeps the
+     * widest unit-price scale, exactly as BigDecimal addition would; lines with sub-cent prices
+     * or a sum that overflows fall back to BigDecimal arithmetic.
+     */
+    static BigDecimal total(Collection<CartItem> lines) {
+        long cents = 0;
+        int scale = 0;
+        for (CartItem line : lines) {
+            long lineCents = line.totalCents();
+            if (lineCents == CartItem.NO_CENTS) return exactTotal(lines);
+            long sum = cents + lineCents;
+            if (((cents ^ sum) & (lineCents ^ sum)) < 0) return exactTotal(lines);
+            cents = sum;
+            scale = Math.max(scale, line.getUnitPrice().scale());
+        }
+        return BigDecimal.valueOf(cents, 2).setScale(scale, RoundingMode.UNNECESSARY);
     }
 
-    public synchronized Optional<CartItem> getItem(String bookId) {
-        return Optional.ofNullable(items.get(bookId));
+    private static BigDecimal exactTotal(Collection<CartItem> lines) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartItem line : lines) total = total.add(line.totalPrice());
+        return total;
     }
-}
\ No newline at end of file
+}
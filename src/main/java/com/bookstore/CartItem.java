@@ -4,11 +4,15 @@ import java.math.BigDecimal;
 import java.util.Objects;
 
 public class CartItem {
+    /** Marker for prices that cannot be held as whole cents (sub-cent digits, or too large). */
+    public static final long NO_CENTS = Long.MIN_VALUE;
+
     private final String bookId;
     private final String title;
     private final String author;      // NEW
     private final String isbn;        // NEW
     private final BigDecimal unitPrice;
+    private final long unitCents;     // unitPrice in cents, or NO_CENTS
     private int quantity;
 
     // Constructor with all fields
@@ -18,6 +22,7 @@ public class CartItem {
         this.author = author;
         this.isbn = isbn;
         this.unitPrice = unitPrice;
+        this.unitCents = toCents(unitPrice);
         this.quantity = Math.max(0, quantity);
     }
 
@@ -46,6 +51,29 @@ public class CartItem {
         return unitPrice.multiply(BigDecimal.valueOf(quantity));
     }
 
+    /** Same line with another quantity; Cart swaps items instead of changing ones it has handed out. */
+    public CartItem withQuantity(int quantity) {
+        return new CartItem(bookId, title, author, isbn, unitPrice, quantity);
+    }
+
+    /** Unit price in cents, or {@link #NO_CENTS}. */
+    public long unitPriceCents() {
+        return unitCents;
+    }
+
+    /** Line total in cents without allocating, or {@link #NO_CENTS} when it does not fit. */
+    public long totalCents() {
+        if (unitCents == NO_CENTS) return NO_CENTS;
+        long hi = Math.multiplyHigh(unitCents, quantity);
+        long lo = unitCents * quantity;
+        return (hi == 0 && lo >= 0) || (hi == -1 && lo < 0) ? lo : NO_CENTS;
+    }
+
+    static long toCents(BigDecimal price) {
+        if (price == null || price.scale() < 0 || price.scale() > 2 || price.precision() > 17) return NO_CENTS;
+        return price.movePointRight(2).longValue();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
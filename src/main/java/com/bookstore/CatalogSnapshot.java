@@ -0,0 +1,159 @@
+package com.bookstore;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary copy of the Books table for warm starts.
+ *
+ * Layout: [magic][version][count][writtenAt millis][crc32 of body] followed by one record
+ * per book (length-prefixed fields, nullable strings flagged). The file is written to a temp
+ * name and renamed into place, and read back through a read-only memory mapping in one pass.
+ * Any mismatch (magic, version, checksum, truncation), or a file older than the caller's
+ * maximum age, makes {@link #load} fail so the caller falls back to scanning DynamoDB.
+ */
+public final class CatalogSnapshot {
+
+    private static final int MAGIC = 0x424B534E; // "BKSN"
+    private static final int VERSION = 1;
+    private static final int HEADER = 4 + 4 + 4 + 8 + 4;
+
+    private final List<Book> books;
+    private final Instant writtenAt;
+
+    private CatalogSnapshot(List<Book> books, Instant writtenAt) {
+        this.books = books;
+        this.writtenAt = writtenAt;
+    }
+
+    public List<Book> books() { return books; }
+    public Instant writtenAt() { return writtenAt; }
+
+    /** Map the file and decode every book; null when there is no snapshot yet. */
+    public static CatalogSnapshot load(Path file) throws IOException {
+        return load(file, null);
+    }
+
+    /** As {@link #load(Path)}, but a snapshot written more than {@code maxAge} ago is rejected. */
+    public static CatalogSnapshot load(Path file, Duration maxAge) throws IOException {
+        if (!Files.isRegularFile(file)) return null;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER || ch.size() > Integer.MAX_VALUE) throw new IOException("Bad catalog snapshot size: " + file);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) throw new IOException("Not a catalog snapshot: " + file);
+            int count = buf.getInt();
+            Instant writtenAt = Instant.ofEpochMilli(buf.getLong());
+            if (maxAge != null && writtenAt.isBefore(Instant.now().minus(maxAge))) {
+                throw new IOException("Catalog snapshot written " + writtenAt + " is older than " + maxAge);
+            }
+            int crc = buf.getInt();
+
+            CRC32 check = new CRC32();
+            check.update(buf.duplicate());
+            if ((int) check.getValue() != crc) throw new IOException("Catalog snapshot checksum mismatch: " + file);
+
+            List<Book> books = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) books.add(readBook(buf));
+            return new CatalogSnapshot(books, writtenAt);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated catalog snapshot: " + file, e);
+        }
+    }
+
+    /** Write the books to a temp file, fsync it and atomically replace the snapshot. */
+    public static void write(Path file, Collection<Book> books) throws IOException {
+        List<byte[]> fields = new ArrayList<>(books.size() * 8);
+        int bodyLength = 0;
+        int count = 0;
+        for (Book b : books) {
+            if (b == null || b.getId() == null) continue;
+            count++;
+            for (String s : new String[]{b.getId(), b.getAsin(), b.getTitle(), b.getAuthor(), b.getGenre(),
+                    b.getPrice() == null ? null : b.getPrice().toPlainString(), b.getIsbn()}) {
+                byte[] bytes = s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+                fields.add(bytes);
+                bodyLength += 4 + (bytes == null ? 0 : bytes.length);
+            }
+            bodyLength += 5; // stock flag + value
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        int f = 0;
+        for (Book b : books) {
+            if (b == null || b.getId() == null) continue;
+            for (int k = 0; k < 7; k++) putString(body, fields.get(f++));
+            body.put((byte) (b.getStockQuantity() == null ? 0 : 1));
+            body.putInt(b.getStockQuantity() == null ? 0 : b.getStockQuantity());
+        }
+        body.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER)
+                .putInt(MAGIC).putInt(VERSION).putInt(count)
+                .putLong(System.currentTimeMillis()).putInt((int) crc.getValue());
+        header.flip();
+
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] parts = {header, body};
+            long remaining = header.remaining() + body.remaining();
+            while (remaining > 0) remaining -= ch.write(parts);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // -------------------------------
+    // internals
+    // -------------------------------
+
+    private static Book readBook(ByteBuffer buf) {
+        Book b = new Book();
+        b.setId(getString(buf));
+        b.setAsin(getString(buf));
+        b.setTitle(getString(buf));
+        b.setAuthor(getString(buf));
+        b.setGenre(getString(buf));
+        String price = getString(buf);
+        b.setPrice(price == null ? null : new BigDecimal(price));
+        b.setIsbn(getString(buf));
+        boolean hasStock = buf.get() != 0;
+        int stock = buf.getInt();
+        b.setStockQuantity(hasStock ? stock : null);
+        return b;
+    }
+
+    private static void putString(ByteBuffer buf, byte[] bytes) {
+        buf.putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) return null;
+        if (length > buf.remaining()) throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
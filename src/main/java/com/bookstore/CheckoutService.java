@@ -8,17 +8,24 @@ import java.util.Objects;
 /**
  * Handles checkout flow:
  * - validate cart not empty
+ * - take stock for every line in one conditional DynamoDB transaction (no oversell),
+ *   leaving behind what other shoppers hold in the reservation ledger
  * - create Order
- * - persist Order to repository
- * - (optional) decrement stock in BookService (demo mode)
+ * - persist Order to repository (stock is given back if that fails)
  */
 public class CheckoutService {
     private final OrderRepository orderRepo;
-    private final BookService bookService; // used for validation/stock optionally
+    private final BookService bookService; // used for stock; optional
+    private final InventoryReservations reservations; // preview holds; optional
 
     public CheckoutService(OrderRepository orderRepo, BookService bookService) {
+        this(orderRepo, bookService, null);
+    }
+
+    public CheckoutService(OrderRepository orderRepo, BookService bookService, InventoryReservations reservations) {
         this.orderRepo = Objects.requireNonNull(orderRepo);
         this.bookService = bookService; // can be null if you don't need stock checks
+        this.reservations = reservations;
     }
 
     /**
@@ -26,37 +33,48 @@ public class CheckoutService {
      * username can be null for anonymous orders in demo mode.
      */
     public Order checkout(String username, Cart cart) {
+        return checkout(username, cart, null);
+    }
+
+    /**
+     * Checkout on behalf of a reservation holder (the session that previewed the cart):
+     * its own holds are converted into the order, and released once checkout ends.
+     */
+    public Order checkout(String username, Cart cart, String holder) {
+        try {
+            return doCheckout(username, cart, holder);
+        } finally {
+            if (reservations != null && holder != null) reservations.release(holder);
+        }
+    }
+
+    private Order doCheckout(String username, Cart cart, String holder) {
         if (cart == null || cart.isEmpty()) {
             throw new IllegalArgumentException("Cart is empty");
         }
 
-        // Collect all stock validation errors
-        List<String> stockErrors = new ArrayList<>();
-
-        // validate availability (optional)
-        for (Map.Entry<String, CartItem> e : cart.getItems().entrySet()) {
-            String bookId = e.getKey();
-            CartItem item = e.getValue();
-
-            if (bookService != null) {
-                Book b = bookService.getBookById(bookId);
-                if (b == null) {
-                    throw new IllegalStateException("Book not found: " + bookId);
-                }
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (CartItem item : cart.getItems().values()) {
+            quantities.put(item.getBookId(), item.getQuantity());
+        }
 
-                // Stock check with detailed error message
-                if (b.getStockQuantity() != null && b.getStockQuantity() < item.getQuantity()) {
-                    stockErrors.add(String.format(
-                            "%s: requested %d but only %d available",
-                            b.getTitle(), item.getQuantity(), b.getStockQuantity()
-                    ));
+        // Check and decrement stock in a single round trip
+        if (bookService != null) {
+            if (quantities.size() > BookService.MAX_TRANSACTION_ITEMS) {
+                throw new IllegalStateException("Cart has more than " + BookService.MAX_TRANSACTION_ITEMS
+                        + " different books; please split the order");
+            }
+            Map<String, Integer> reserved = new HashMap<>();
+            if (reservations != null) {
+                for (String bookId : quantities.keySet()) {
+                    int held = reservations.heldByOthers(bookId, holder);
+                    if (held > 0) reserved.put(bookId, held);
                 }
             }
-        }
-
-        // If any stock errors, throw them all at once
-        if (!stockErrors.isEmpty()) {
-            throw new IllegalStateException("Insufficient stock: " + String.join("; ", stockErrors));
+            List<BookService.StockShortfall> shortfalls = bookService.decrementStock(quantities, reserved);
+            if (!shortfalls.isEmpty()) {
+                throw stockError(shortfalls);
+            }
         }
 
         BigDecimal total = cart.calculateTotal();
@@ -64,31 +82,33 @@ public class CheckoutService {
         Order order = new Order(orderId, username, cart.getItems(), total);
 
         // persist order
-        orderRepo.save(order);
-
-        // Decrement stock atomically
-        if (bookService != null) {
-            for (CartItem item : cart.getItems().values()) {
-                Book b = bookService.getBookById(item.getBookId());
-                if (b != null && b.getStockQuantity() != null) {
-                    int newStock = b.getStockQuantity() - item.getQuantity();
-                    if (newStock < 0) newStock = 0;
-                    b.setStockQuantity(newStock);
-                    bookService.saveOrUpdateBookByTitle(b); // Direct save, not saveOrUpdateByTitle
-
-                    // Log for debugging
-                    System.out.println(String.format(
-                            "Stock updated: %s (%s) - Old: %d, Sold: %d, New: %d",
-                            b.getTitle(), b.getId(), b.getStockQuantity() + item.getQuantity(),
-                            item.getQuantity(), newStock
-                    ));
-                }
-            }
+        try {
+            orderRepo.save(order);
+        } catch (RuntimeException e) {
+            if (bookService != null) bookService.restoreStock(quantities);
+            throw e;
         }
 
+        System.out.println("Stock taken for order " + orderId + ": " + quantities);
+
         // clear cart after checkout
         cart.clear();
 
         return order;
     }
+
+    /** All shortfalls in one message, as before; a missing book wins. */
+    private static IllegalStateException stockError(List<BookService.StockShortfall> shortfalls) {
+        List<String> stockErrors = new ArrayList<>();
+        for (BookService.StockShortfall s : shortfalls) {
+            if (!s.found()) {
+                return new IllegalStateException("Book not found: " + s.bookId());
+            }
+            stockErrors.add(String.format(
+                    "%s: requested %d but only %d available",
+                    s.title(), s.requested(), s.available()
+            ));
+        }
+        return new IllegalStateException("Insufficient stock: " + String.join("; ", stockErrors));
+    }
 }
@@ -0,0 +1,424 @@
+package com.bookstore;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Item-to-item "bought together" counts, updated incrementally from every saved order.
+ *
+ * - book ids are interned to ints; each book has a sparse row of co-purchase counts in a
+ *   primitive open-addressing map, plus the number of orders that contained it
+ * - a row holds at most MAX_NEIGHBOURS books; when it overflows, the weakest pairs are
+ *   dropped, so memory stays bounded and only the long tail of rare pairs is approximate
+ * - each book's strongest neighbours are kept as a packed int[] (built on first query,
+ *   dropped when an order touches the book), so a query merges a few short arrays
+ * - per user, the books they bought; their recommendations are the neighbours of those
+ * - users with new purchases are periodically written back as precomputed lists through
+ *   {@link RecommendationRepository#saveRecommendations}
+ *
+ * Orders are treated as immutable once saved (checkout never re-saves an order id). While
+ * stored orders are being bootstrapped, order ids are remembered so an order that is both
+ * saved live and read by the bootstrap is counted once.
+ * Updates take the write lock; queries share the read lock.
+ */
+public class CoPurchaseIndex implements AutoCloseable {
+
+    static final int TOP = 50;             // neighbours kept per book for queries
+    static final int MAX_NEIGHBOURS = 1000; // co-purchase counts kept per book
+    private static final int BEST_SELLERS = 100;
+    private static final String REASON = "Bought together with your past purchases";
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> idOf = new HashMap<>();
+    private final List<String> bookIds = new ArrayList<>();
+    private final List<String> titles = new ArrayList<>();
+    private final List<IntCounts> rows = new ArrayList<>();
+    private int[] orderCounts = new int[64];
+    private volatile AtomicReferenceArray<int[]> tops = new AtomicReferenceArray<>(64); // [id, count, id, count...]
+    private final Map<String, IntCounts> purchased = new HashMap<>();
+    private final Set<String> dirtyUsers = ConcurrentHashMap.newKeySet();
+    private volatile List<String> bestSellers;                          // null = stale
+    private Set<String> bootstrapSeen;                                  // order ids, only while bootstrapping
+    private ScheduledExecutorService persister;
+
+    /** Count every pair of distinct books in the order, and the buyer's purchases. */
+    public void record(Order order) {
+        if (order == null || order.getItems() == null || order.getItems().isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            if (bootstrapSeen != null && order.getOrderId() != null && !bootstrapSeen.add(order.getOrderId())) return;
+            int[] items = new int[order.getItems().size()];
+            int n = 0;
+            for (CartItem item : order.getItems().values()) {
+                if (item != null && item.getBookId() != null) items[n++] = intern(item.getBookId(), item.getTitle());
+            }
+            for (int i = 0; i < n; i++) {
+                int a = items[i];
+                orderCounts[a]++;
+                IntCounts row = rows.get(a);
+                for (int j = 0; j < n; j++) {
+                    if (j != i) row.add(items[j], 1);
+                }
+                if (row.size() > MAX_NEIGHBOURS) row.retainLargest(MAX_NEIGHBOURS / 2);
+                tops.set(a, null);
+            }
+            if (order.getUsername() != null && n > 0) {
+                IntCounts bought = purchased.computeIfAbsent(order.getUsername(), u -> new IntCounts(8));
+                for (int i = 0; i < n; i++) bought.add(items[i], 1);
+                dirtyUsers.add(order.getUsername());
+            }
+            bestSellers = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Books most often bought together with these (a cart, or one book), excluding them. */
+    public List<String> similar(Collection<String> bookIds, int k) {
+        if (bookIds == null || bookIds.isEmpty() || k <= 0) return List.of();
+        lock.readLock().lock();
+        try {
+            int[] seeds = new int[bookIds.size()];
+            int n = 0;
+            for (String id : new LinkedHashSet<>(bookIds)) {
+                Integer i = id == null ? null : idOf.get(id);
+                if (i != null) seeds[n++] = i;
+            }
+            return neighbours(Arrays.copyOf(seeds, n), k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Books bought together with what this user bought, excluding what they already own. */
+    public List<String> forUser(String user, int k) {
+        if (user == null || k <= 0) return List.of();
+        lock.readLock().lock();
+        try {
+            IntCounts bought = purchased.get(user);
+            return bought == null ? List.of() : neighbours(bought.keys(), k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Books in the most orders. */
+    public List<String> bestSellers(int k) {
+        if (k <= 0) return List.of();
+        List<String> best = bestSellers;
+        if (best == null) {
+            lock.readLock().lock();
+            try {
+                long[] ranked = new long[bookIds.size()];
+                for (int i = 0; i < ranked.length; i++) ranked[i] = pack(orderCounts[i], i);
+                best = idsByRank(ranked, ranked.length, BEST_SELLERS, new int[0]);
+                bestSellers = best;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return best.size() <= k ? best : best.subList(0, k);
+    }
+
+    /** Write the lists of users with purchases since the last call; failed users are retried next time. */
+    public int persist(RecommendationRepository repository, int k) {
+        int written = 0;
+        for (String user : new ArrayList<>(dirtyUsers)) {
+            dirtyUsers.remove(user);
+            List<String> ids = forUser(user, k);
+            if (ids.isEmpty()) continue;
+            List<Recommendation> recs = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) recs.add(new Recommendation(i + 1, ids.get(i), title(ids.get(i)), REASON));
+            try {
+                repository.saveRecommendations(user, recs);
+                written++;
+            } catch (RuntimeException e) {
+                dirtyUsers.add(user);
+                System.err.println("Co-purchase recommendations for " + user + " not saved: " + e.getMessage());
+            }
+        }
+        return written;
+    }
+
+    /** Persist changed users every few minutes on a background thread. */
+    public synchronized void startPersisting(RecommendationRepository repository, long minutes, int k) {
+        if (persister != null || minutes <= 0) return;
+        persister = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "copurchase-persist");
+            t.setDaemon(true);
+            return t;
+        });
+        persister.scheduleWithFixedDelay(() -> {
+            try {
+                int n = persist(repository, k);
+                if (n > 0) System.out.println("Co-purchase: saved recommendations for " + n + " users");
+            } catch (RuntimeException e) {
+                System.err.println("Co-purchase persist failed: " + e.getMessage());
+            }
+        }, minutes, minutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Count the orders already stored, in the background. Orders saved meanwhile are recorded
+     * by the saving path; ids are tracked from this call until the scan ends, so an order seen
+     * by both is counted once.
+     */
+    public void bootstrapAsync(OrderRepository source) {
+        beginBootstrap();
+        Thread t = new Thread(() -> scanStored(source), "copurchase-bootstrap");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Same as {@link #bootstrapAsync} on the calling thread; returns the orders counted. */
+    public int bootstrap(OrderRepository source) {
+        beginBootstrap();
+        return scanStored(source);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return bookIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (persister != null) persister.shutdownNow();
+    }
+
+    /** Number of books with a co-purchase count for this book. */
+    int neighbourCount(String bookId) {
+        lock.readLock().lock();
+        try {
+            Integer id = idOf.get(bookId);
+            return id == null ? 0 : rows.get(id).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void beginBootstrap() {
+        lock.writeLock().lock();
+        try {
+            if (bootstrapSeen == null) bootstrapSeen = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int scanStored(OrderRepository source) {
+        long start = System.nanoTime();
+        int counted = 0;
+        try {
+            String cursor = null;
+            do {
+                OrderPage page = source.findAll(500, cursor);
+                for (Order o : page.orders()) {
+                    record(o);
+                    counted++;
+                }
+                cursor = page.nextCursor();
+            } while (cursor != null);
+            System.out.println("Co-purchase: counted " + counted + " stored orders in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (RuntimeException e) {
+            System.err.println("Co-purchase bootstrap stopped after " + counted + " orders: " + e.getMessage());
+        } finally {
+            lock.writeLock().lock();
+            try {
+                bootstrapSeen = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return counted;
+    }
+
+    // -------------------------------
+    // internals (callers hold the lock)
+    // -------------------------------
+
+    private int intern(String bookId, String title) {
+        Integer existing = idOf.get(bookId);
+        if (existing != null) {
+            if (title != null) titles.set(existing, title);
+            return existing;
+        }
+        int id = bookIds.size();
+        idOf.put(bookId, id);
+        bookIds.add(bookId);
+        titles.add(title);
+        rows.add(new IntCounts(8));
+        if (id == orderCounts.length) {
+            orderCounts = Arrays.copyOf(orderCounts, id * 2);
+            AtomicReferenceArray<int[]> grown = new AtomicReferenceArray<>(id * 2);
+            for (int i = 0; i < id; i++) grown.set(i, tops.get(i));
+            tops = grown;
+        }
+        return id;
+    }
+
+    private String title(String bookId) {
+        lock.readLock().lock();
+        try {
+            Integer id = idOf.get(bookId);
+            return id == null ? null : titles.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<String> neighbours(int[] seeds, int k) {
+        if (seeds.length == 0) return List.of();
+        if (seeds.length == 1) {
+            int[] top = top(seeds[0]);
+            List<String> out = new ArrayList<>(Math.min(k, top.length / 2));
+            for (int i = 0; i < top.length && out.size() < k; i += 2) out.add(bookIds.get(top[i]));
+            return out;
+        }
+        IntCounts scores = new IntCounts(seeds.length * TOP);
+        for (int seed : seeds) {
+            int[] top = top(seed);
+            for (int i = 0; i < top.length; i += 2) scores.add(top[i], top[i + 1]);
+        }
+        long[] ranked = new long[scores.size()];
+        int n = 0;
+        for (int slot = 0; slot < scores.capacity(); slot++) {
+            int id = scores.keyAt(slot);
+            if (id >= 0) ranked[n++] = pack(scores.valueAt(slot), id);
+        }
+        return idsByRank(ranked, n, k, seeds);
+    }
+
+    /** Strongest neighbours of a book as [id, count, ...], cached until an order touches it. */
+    private int[] top(int book) {
+        AtomicReferenceArray<int[]> cache = tops;
+        int[] top = cache.get(book);
+        if (top != null) return top;
+
+        IntCounts row = rows.get(book);
+        long[] ranked = new long[row.size()];
+        int n = 0;
+        for (int slot = 0; slot < row.capacity(); slot++) {
+            int id = row.keyAt(slot);
+            if (id >= 0) ranked[n++] = pack(row.valueAt(slot), id);
+        }
+        Arrays.sort(ranked, 0, n);
+        int keep = Math.min(TOP, n);
+        top = new int[keep * 2];
+        for (int i = 0; i < keep; i++) {
+            long p = ranked[n - 1 - i];
+            top[2 * i] = unpackId(p);
+            top[2 * i + 1] = (int) (p >>> 32);
+        }
+        cache.compareAndSet(book, null, top);
+        return top;
+    }
+
+    private List<String> idsByRank(long[] ranked, int n, int k, int[] exclude) {
+        Arrays.sort(ranked, 0, n);
+        List<String> out = new ArrayList<>(Math.min(k, n));
+        for (int i = n - 1; i >= 0 && out.size() < k; i--) {
+            if ((int) (ranked[i] >>> 32) <= 0) break;
+            int id = unpackId(ranked[i]);
+            if (!contains(exclude, id)) out.add(bookIds.get(id));
+        }
+        return out;
+    }
+
+    /** Higher count sorts later; on equal counts the earlier-interned book sorts later. */
+    private static long pack(int count, int id) {
+        return ((long) count << 32) | (Integer.MAX_VALUE - id);
+    }
+
+    private static int unpackId(long packed) {
+        return Integer.MAX_VALUE - (int) packed;
+    }
+
+    private static boolean contains(int[] ids, int id) {
+        for (int i : ids) if (i == id) return true;
+        return false;
+    }
+
+    /** int -> int counts with open addressing (linear probing); keys are non-negative. */
+    static final class IntCounts {
+        private static final int FREE = -1;
+        private int[] keys;
+        private int[] values;
+        private int size;
+
+        IntCounts(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2) - 1) << 1;
+            keys = new int[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, FREE);
+        }
+
+        void add(int key, int delta) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    values[i] += delta;
+                    return;
+                }
+                if (keys[i] == FREE) {
+                    keys[i] = key;
+                    values[i] = delta;
+                    if (++size * 2 > keys.length) grow();
+                    return;
+                }
+            }
+        }
+
+        int size() { return size; }
+        int capacity() { return keys.length; }
+        int keyAt(int slot) { return keys[slot]; }
+        int valueAt(int slot) { return values[slot]; }
+
+        /** Drop all but the {@code keep} largest counts (ties broken arbitrarily). */
+        void retainLargest(int keep) {
+            if (size <= keep) return;
+            long[] ranked = new long[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != FREE) ranked[n++] = ((long) values[i] << 32) | (keys[i] & 0xFFFFFFFFL);
+            }
+            Arrays.sort(ranked);
+            Arrays.fill(keys, FREE);
+            size = 0;
+            for (int i = n - keep; i < n; i++) add((int) ranked[i], (int) (ranked[i] >>> 32));
+        }
+
+        int[] keys() {
+            int[] out = new int[size];
+            int n = 0;
+            for (int k : keys) if (k != FREE) out[n++] = k;
+            return out;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys, oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            Arrays.fill(keys, FREE);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != FREE) add(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.bookstore;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Feeds every successfully saved order into the {@link CoPurchaseIndex}; everything else
+ * is delegated unchanged.
+ */
+public class CoPurchaseRecordingOrderRepository implements OrderRepository, AutoCloseable {
+
+    private final OrderRepository delegate;
+    private final CoPurchaseIndex coPurchases;
+
+    public CoPurchaseRecordingOrderRepository(OrderRepository delegate, CoPurchaseIndex coPurchases) {
+        this.delegate = delegate;
+        this.coPurchases = coPurchases;
+    }
+
+    @Override
+    public void save(Order order) {
+        delegate.save(order);
+        coPurchases.record(order);
+    }
+
+    @Override
+    public Optional<Order> findById(String orderId) {
+        return delegate.findById(orderId);
+    }
+
+    @Override
+    public List<Order> findByUser(String username) {
+        return delegate.findByUser(username);
+    }
+
+    @Override
+    public List<Order> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public OrderPage findByUser(String username, int limit, String cursor) {
+        return delegate.findByUser(username, limit, cursor);
+    }
+
+    @Override
+    public OrderPage findAll(int limit, String cursor) {
+        return delegate.findAll(limit, cursor);
+    }
+
+    @Override
+    public long unitsSold(String bookId) {
+        return delegate.unitsSold(bookId);
+    }
+
+    @Override
+    public void close() {
+        if (!(delegate instanceof AutoCloseable closeable)) return;
+        try {
+            closeable.close();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to close order repository", e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.bookstore;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.*;
+
+/**
+ * Browsing histories in DynamoDB, one item per user:
+ * username (hash key), bookIds (list, most recent first), updatedAt (epoch millis).
+ *
+ * Reads are BatchGetItem (100 keys per call), writes BatchWriteItem (25 puts per call);
+ * unprocessed keys/items are retried with exponential backoff ({@link BatchRetry}).
+ */
+public class DynamoDbBrowsingHistoryRepository implements BrowsingHistoryRepository {
+
+    private static final int GET_BATCH = 100;
+    private static final int WRITE_BATCH = 25;
+
+    private final DynamoDbClient client;
+    private final String tableName;
+
+    public DynamoDbBrowsingHistoryRepository(DynamoDbClient client, String tableName) {
+        this.client = client;
+        this.tableName = tableName;
+        createTableIfNotExists();
+    }
+
+    private void createTableIfNotExists() {
+        try {
+            client.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
+        } catch (ResourceNotFoundException e) {
+            client.createTable(CreateTableRequest.builder()
+                    .tableName(tableName)
+                    .attributeDefinitions(AttributeDefinition.builder().attributeName("username").attributeType(ScalarAttributeType.S).build())
+                    .keySchema(KeySchemaElement.builder().attributeName("username").keyType(KeyType.HASH).build())
+                    .billingMode(BillingMode.PAY_PER_REQUEST)
+                    .build());
+            client.waiter().waitUntilTableExists(DescribeTableRequest.builder().tableName(tableName).build());
+            System.out.println("Created table " + tableName);
+        }
+    }
+
+    @Override
+    public Map<String, List<String>> loadAll(Collection<String> users) {
+        Map<String, List<String>> out = new HashMap<>();
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(users));
+        for (int from = 0; from < distinct.size(); from += GET_BATCH) {
+            List<Map<String, AttributeValue>> keys = new ArrayList<>();
+            for (String user : distinct.subList(from, Math.min(distinct.size(), from + GET_BATCH))) {
+                keys.add(Map.of("username", AttributeValue.fromS(user)));
+            }
+            Map<String, KeysAndAttributes> request = Map.of(tableName, KeysAndAttributes.builder().keys(keys).build());
+            BatchRetry.Outcome<Map<String, KeysAndAttributes>> outcome =
+                    BatchRetry.untilProcessed(request, Map::isEmpty, pending -> {
+                        BatchGetItemResponse resp = client.batchGetItem(BatchGetItemRequest.builder().requestItems(pending).build());
+                        for (Map<String, AttributeValue> item : resp.responses().getOrDefault(tableName, List.of())) {
+                            out.put(item.get("username").s(), bookIds(item));
+                        }
+                        return resp.unprocessedKeys();
+                    });
+            if (outcome.error() != null) throw outcome.error();
+            if (!outcome.remaining().isEmpty()) {
+                throw new IllegalStateException("History reads not processed after " + BatchRetry.MAX_ATTEMPTS + " attempts");
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public Set<String> saveAll(Map<String, List<String>> histories) {
+        Set<String> failed = new HashSet<>();
+        List<Map.Entry<String, List<String>>> entries = new ArrayList<>(histories.entrySet());
+        String now = Long.toString(System.currentTimeMillis());
+        for (int from = 0; from < entries.size(); from += WRITE_BATCH) {
+            List<WriteRequest> writes = new ArrayList<>();
+            for (Map.Entry<String, List<String>> e : entries.subList(from, Math.min(entries.size(), from + WRITE_BATCH))) {
+                List<AttributeValue> ids = new ArrayList<>(e.getValue().size());
+                for (String id : e.getValue()) ids.add(AttributeValue.fromS(id));
+                writes.add(WriteRequest.builder().putRequest(PutRequest.builder().item(Map.of(
+                        "username", AttributeValue.fromS(e.getKey()),
+                        "bookIds", AttributeValue.fromL(ids),
+                        "updatedAt", AttributeValue.fromN(now))).build()).build());
+            }
+            BatchRetry.Outcome<List<WriteRequest>> outcome = BatchRetry.untilProcessed(writes, List::isEmpty, pending -> {
+                BatchWriteItemResponse resp = client.batchWriteItem(BatchWriteItemRequest.builder()
+                        .requestItems(Map.of(tableName, pending)).build());
+                return resp.unprocessedItems().getOrDefault(tableName, List.of());
+            });
+            if (outcome.error() != null) {
+                System.err.println("Browsing history write failed: " + outcome.error().getMessage());
+            }
+            for (WriteRequest w : outcome.remaining()) failed.add(w.putRequest().item().get("username").s());
+        }
+        return failed;
+    }
+
+    private static List<String> bookIds(Map<String, AttributeValue> item) {
+        AttributeValue ids = item.get("bookIds");
+        if (ids == null || !ids.hasL()) return List.of();
+        List<String> out = new ArrayList<>(ids.l().size());
+        for (AttributeValue v : ids.l()) out.add(v.s());
+        return out;
+    }
+}
@@ -0,0 +1,404 @@
+package com.bookstore;
+
+import software.amazon.awssdk.core.pagination.sync.SdkIterable;
+import software.amazon.awssdk.enhanced.dynamodb.*;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.*;
+import software.amazon.awssdk.enhanced.dynamodb.model.*;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders persisted in DynamoDB.
+ *
+ * - Table keyed on orderId; GSI UserCreatedAtIndex (username + createdAt) serves a
+ *   user's history newest first, paged with the same opaque cursor as the in-memory store
+ * - createdAt is stored as fixed-width ISO-8601 (nanosecond precision) so it sorts as a string
+ * - Line items are a list of small maps with one-letter attribute names
+ *
+ * findAll pages walk the table in storage order (a global time order would need a
+ * hot-partition index).
+ *
+ * unitsSold is persisted, not recomputed: every save adds the change in units per book to a
+ * counters table (bookId -> units) with an atomic ADD, so all replicas and restarts share one
+ * count. Reads come from a local copy: scanned once at startup, updated by this node's own
+ * saves (the ADD returns the shared total, so other replicas' sales of that book come along),
+ * and for the TOP_REFRESH best sellers re-read with one BatchGetItem every refresh interval.
+ * The full scan is only repeated every full-refresh interval (hours), so the periodic cost
+ * does not grow with the catalog. Counting starts when the counters table is created;
+ * orders saved earlier are not backfilled. A failed ADD is logged and the order still saved.
+ */
+public class DynamoDbOrderRepository implements OrderRepository, AutoCloseable {
+
+    static final String USER_CREATED_AT_INDEX = "UserCreatedAtIndex";
+    static final int TOP_REFRESH = 100;   // BatchGetItem maximum
+    private static final DateTimeFormatter CREATED_AT =
+            DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSSSSS'Z'").withZone(ZoneOffset.UTC);
+
+    private final DynamoDbClient client;
+    private final String tableName;
+    private final DynamoDbTable<OrderDdb> table;
+    private final DynamoDbIndex<OrderDdb> byUser;
+    private final String countersTable;
+    private final ConcurrentHashMap<String, Long> unitsSold = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService countersRefresh;
+
+    public DynamoDbOrderRepository(DynamoDbClient client, DynamoDbEnhancedClient enhancedClient, String tableName) {
+        this(client, enhancedClient, tableName, tableName + "UnitsSold", 60, 360);
+    }
+
+    public DynamoDbOrderRepository(DynamoDbClient client, DynamoDbEnhancedClient enhancedClient, String tableName,
+                                   String countersTable, long countersRefreshSeconds, long countersFullRefreshMinutes) {
+        this.client = client;
+        this.tableName = tableName;
+        this.table = enhancedClient.table(tableName, TableSchema.fromBean(OrderDdb.class));
+        this.byUser = table.index(USER_CREATED_AT_INDEX);
+        this.countersTable = countersTable;
+        createTableIfNotExists();
+        createCountersTableIfNotExists();
+        loadUnitsSold();
+        if (countersRefreshSeconds > 0 || countersFullRefreshMinutes > 0) {
+            countersRefresh = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "units-sold-refresh");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            countersRefresh = null;
+        }
+        if (countersRefreshSeconds > 0) {
+            countersRefresh.scheduleWithFixedDelay(this::refreshTopSellers,
+                    countersRefreshSeconds, countersRefreshSeconds, TimeUnit.SECONDS);
+        }
+        if (countersFullRefreshMinutes > 0) {
+            countersRefresh.scheduleWithFixedDelay(this::refreshUnitsSold,
+                    countersFullRefreshMinutes, countersFullRefreshMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    private void createTableIfNotExists() {
+        try {
+            client.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
+        } catch (ResourceNotFoundException e) {
+            client.createTable(CreateTableRequest.builder()
+                    .tableName(tableName)
+                    .attributeDefinitions(
+                            AttributeDefinition.builder().attributeName("orderId").attributeType(ScalarAttributeType.S).build(),
+                            AttributeDefinition.builder().attributeName("username").attributeType(ScalarAttributeType.S).build(),
+                            AttributeDefinition.builder().attributeName("createdAt").attributeType(ScalarAttributeType.S).build())
+                    .keySchema(KeySchemaElement.builder().attributeName("orderId").keyType(KeyType.HASH).build())
+                    .globalSecondaryIndexes(GlobalSecondaryIndex.builder()
+                            .indexName(USER_CREATED_AT_INDEX)
+                            .keySchema(
+                                    KeySchemaElement.builder().attributeName("username").keyType(KeyType.HASH).build(),
+                                    KeySchemaElement.builder().attributeName("createdAt").keyType(KeyType.RANGE).build())
+                            .projection(Projection.builder().projectionType(ProjectionType.ALL).build())
+                            .build())
+                    .billingMode(BillingMode.PAY_PER_REQUEST)
+                    .build());
+            client.waiter().waitUntilTableExists(DescribeTableRequest.builder().tableName(tableName).build());
+            System.out.println("Created table " + tableName);
+        }
+    }
+
+    private void createCountersTableIfNotExists() {
+        try {
+            client.describeTable(DescribeTableRequest.builder().tableName(countersTable).build());
+        } catch (ResourceNotFoundException e) {
+            client.createTable(CreateTableRequest.builder()
+                    .tableName(countersTable)
+                    .attributeDefinitions(AttributeDefinition.builder().attributeName("bookId").attributeType(ScalarAttributeType.S).build())
+                    .keySchema(KeySchemaElement.builder().attributeName("bookId").keyType(KeyType.HASH).build())
+                    .billingMode(BillingMode.PAY_PER_REQUEST)
+                    .build());
+            client.waiter().waitUntilTableExists(DescribeTableRequest.builder().tableName(countersTable).build());
+            System.out.println("Created table " + countersTable);
+        }
+    }
+
+    @Override
+    public void save(Order order) {
+        PutItemEnhancedResponse<OrderDdb> resp = table.putItemWithResponse(
+                PutItemEnhancedRequest.builder(OrderDdb.class)
+                        .item(toDdb(order))
+                        .returnValues(ReturnValue.ALL_OLD)
+                        .build());
+        Map<String, Long> delta = new HashMap<>();
+        if (resp.attributes() != null) countUnits(toOrder(resp.attributes()), -1, delta);
+        countUnits(order, 1, delta);
+        delta.forEach(this::addUnits);
+    }
+
+    @Override
+    public Optional<Order> findById(String orderId) {
+        if (orderId == null) return Optional.empty();
+        return Optional.ofNullable(toOrder(table.getItem(Key.builder().partitionValue(orderId).build())));
+    }
+
+    /** All orders of the user, newest first. */
+    @Override
+    public List<Order> findByUser(String username) {
+        if (username == null) return List.of();
+        List<Order> out = new ArrayList<>();
+        for (Page<OrderDdb> page : byUser.query(r -> r
+                .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(username)))
+                .scanIndexForward(false))) {
+            page.items().forEach(d -> out.add(toOrder(d)));
+        }
+        return out;
+    }
+
+    /** All orders, newest first (full table scan; prefer the paged variant). */
+    @Override
+    public List<Order> findAll() {
+        List<Order> out = new ArrayList<>();
+        table.scan().items().forEach(d -> out.add(toOrder(d)));
+        out.sort(Comparator.comparing(Order::getCreatedAt).reversed());
+        return out;
+    }
+
+    @Override
+    public OrderPage findByUser(String username, int limit, String cursor) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+        if (username == null) return new OrderPage(List.of(), null);
+
+        QueryEnhancedRequest.Builder req = QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.keyEqualTo(k -> k.partitionValue(username)))
+                .scanIndexForward(false)
+                .limit(limit);
+        if (cursor != null && !cursor.isBlank()) {
+            OrderPage.Position p = OrderPage.decode(cursor);
+            req.exclusiveStartKey(Map.of(
+                    "orderId", AttributeValue.fromS(p.orderId()),
+                    "username", AttributeValue.fromS(username),
+                    "createdAt", AttributeValue.fromS(CREATED_AT.format(p.createdAt()))));
+        }
+        return firstPage(byUser.query(req.build()), limit);
+    }
+
+    /** All orders one page at a time, in table (not time) order. */
+    @Override
+    public OrderPage findAll(int limit, String cursor) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+        ScanEnhancedRequest.Builder req = ScanEnhancedRequest.builder().limit(limit);
+        if (cursor != null && !cursor.isBlank()) {
+            req.exclusiveStartKey(Map.of("orderId", AttributeValue.fromS(OrderPage.decode(cursor).orderId())));
+        }
+        return firstPage(table.scan(req.build()), limit);
+    }
+
+    @Override
+    public long unitsSold(String bookId) {
+        if (bookId == null) return 0L;
+        return unitsSold.getOrDefault(bookId, 0L);
+    }
+
+    // -------------------------------
+    // internals
+    // -------------------------------
+
+    private static OrderPage firstPage(SdkIterable<Page<OrderDdb>> pages, int limit) {
+        Iterator<Page<OrderDdb>> it = pages.iterator();
+        if (!it.hasNext()) return new OrderPage(List.of(), null);
+        Page<OrderDdb> page = it.next();
+
+        List<Order> orders = new ArrayList<>(page.items().size());
+        page.items().forEach(d -> orders.add(toOrder(d)));
+        boolean more = page.lastEvaluatedKey() != null && !page.lastEvaluatedKey().isEmpty();
+        String next = more && !orders.isEmpty() ? OrderPage.cursorAfter(orders.get(orders.size() - 1)) : null;
+        return new OrderPage(orders, next);
+    }
+
+    private static void countUnits(Order order, int sign, Map<String, Long> delta) {
+        for (CartItem item : order.getItems().values()) {
+            if (item.getBookId() == null) continue;
+            delta.merge(item.getBookId(), (long) sign * item.getQuantity(), Long::sum);
+        }
+    }
+
+    // Atomic ADD on the shared counter; the returned total also refreshes the local copy
+    private void addUnits(String bookId, long units) {
+        if (units == 0) return;
+        try {
+            UpdateItemResponse resp = client.updateItem(UpdateItemRequest.builder()
+                    .tableName(countersTable)
+                    .key(Map.of("bookId", AttributeValue.fromS(bookId)))
+                    .updateExpression("ADD units :d")
+                    .expressionAttributeValues(Map.of(":d", AttributeValue.fromN(Long.toString(units))))
+                    .returnValues(ReturnValue.UPDATED_NEW)
+                    .build());
+            unitsSold.put(bookId, Long.parseLong(resp.attributes().get("units").n()));
+        } catch (RuntimeException e) {
+            unitsSold.merge(bookId, units, Long::sum);
+            System.err.println("Units sold for " + bookId + " not persisted: " + e.getMessage());
+        }
+    }
+
+    private void loadUnitsSold() {
+        for (ScanResponse page : client.scanPaginator(ScanRequest.builder().tableName(countersTable).build())) {
+            for (Map<String, AttributeValue> item : page.items()) {
+                AttributeValue units = item.get("units");
+                if (units != null) unitsSold.put(item.get("bookId").s(), Long.parseLong(units.n()));
+            }
+        }
+    }
+
+    /**
+     * Re-read the counters of the books this node ranks highest, in one BatchGetItem.
+     * Unprocessed keys keep their local value until the next round.
+     */
+    void refreshTopSellers() {
+        List<String> top = unitsSold.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(TOP_REFRESH)
+                .map(Map.Entry::getKey)
+                .toList();
+        if (top.isEmpty()) return;
+        List<Map<String, AttributeValue>> keys = new ArrayList<>(top.size());
+        top.forEach(id -> keys.add(Map.of("bookId", AttributeValue.fromS(id))));
+        try {
+            BatchGetItemResponse resp = client.batchGetItem(BatchGetItemRequest.builder()
+                    .requestItems(Map.of(countersTable, KeysAndAttributes.builder().keys(keys).build()))
+                    .build());
+            for (Map<String, AttributeValue> item : resp.responses().getOrDefault(countersTable, List.of())) {
+                AttributeValue units = item.get("units");
+                if (units != null) unitsSold.put(item.get("bookId").s(), Long.parseLong(units.n()));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Units sold refresh failed: " + e.getMessage());
+        }
+    }
+
+    // full re-read, for books that sell on other replicas but are not (yet) top sellers here
+    private void refreshUnitsSold() {
+        try {
+            loadUnitsSold();
+        } catch (RuntimeException e) {
+            System.err.println("Units sold refresh failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (countersRefresh != null) countersRefresh.shutdownNow();
+    }
+
+    static OrderDdb toDdb(Order o) {
+        OrderDdb d = new OrderDdb();
+        d.setOrderId(o.getOrderId());
+        d.setUsername(o.getUsername());
+        d.setCreatedAt(CREATED_AT.format(o.getCreatedAt()));
+        d.setTotal(o.getTotal());
+        List<LineDdb> lines = new ArrayList<>(o.getItems().size());
+        for (CartItem i : o.getItems().values()) {
+            LineDdb l = new LineDdb();
+            l.setBookId(i.getBookId());
+            l.setTitle(i.getTitle());
+            l.setAuthor(i.getAuthor());
+            l.setIsbn(i.getIsbn());
+            l.setUnitPrice(i.getUnitPrice());
+            l.setQuantity(i.getQuantity());
+            lines.add(l);
+        }
+        d.setItems(lines);
+        return d;
+    }
+
+    static Order toOrder(OrderDdb d) {
+        if (d == null) return null;
+        Map<String, CartItem> items = new LinkedHashMap<>();
+        if (d.getItems() != null) {
+            for (LineDdb l : d.getItems()) {
+                items.put(l.getBookId(), new CartItem(l.getBookId(), l.getTitle(), l.getAuthor(), l.getIsbn(),
+                        l.getUnitPrice(), l.getQuantity() == null ? 0 : l.getQuantity()));
+            }
+        }
+        Instant createdAt = d.getCreatedAt() == null ? Instant.EPOCH : Instant.parse(d.getCreatedAt());
+        return new Order(d.getOrderId(), d.getUsername(), items, d.getTotal(), createdAt);
+    }
+
+    // DynamoDB item for one order
+    @DynamoDbBean
+    public static class OrderDdb {
+        private String orderId;
+        private String username;
+        private String createdAt;
+        private BigDecimal total;
+        private List<LineDdb> items;
+
+        @DynamoDbPartitionKey
+        @DynamoDbAttribute("orderId")
+        public String getOrderId() { return orderId; }
+        public void setOrderId(String orderId) { this.orderId = orderId; }
+
+        @DynamoDbAttribute("username")
+        @DynamoDbSecondaryPartitionKey(indexNames = {USER_CREATED_AT_INDEX})
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+
+        @DynamoDbAttribute("createdAt")
+        @DynamoDbSecondarySortKey(indexNames = {USER_CREATED_AT_INDEX})
+        public String getCreatedAt() { return createdAt; }
+        public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
+
+        @DynamoDbAttribute("total")
+        public BigDecimal getTotal() { return total; }
+        public void setTotal(BigDecimal total) { this.total = total; }
+
+        @DynamoDbAttribute("items")
+        @DynamoDbIgnoreNulls
+        public List<LineDdb> getItems() { return items; }
+        public void setItems(List<LineDdb> items) { this.items = items; }
+    }
+
+    // One line item, stored with short attribute names to keep orders small
+    @DynamoDbBean
+    public static class LineDdb {
+        private String bookId;
+        private String title;
+        private String author;
+        private String isbn;
+        private BigDecimal unitPrice;
+        private Integer quantity;
+
+        @DynamoDbAttribute("b")
+        public String getBookId() { return bookId; }
+        public void setBookId(String bookId) { this.bookId = bookId; }
+
+        @DynamoDbAttribute("t")
+        public String getTitle() { return title; }
+        public void setTitle(String title) { this.title = title; }
+
+        @DynamoDbAttribute("a")
+        public String getAuthor() { return author; }
+        public void setAuthor(String author) { this.author = author; }
+
+        @DynamoDbAttribute("i")
+        public String getIsbn() { return isbn; }
+        public void setIsbn(String isbn) { this.isbn = isbn; }
+
+        @DynamoDbAttribute("p")
+        public BigDecimal getUnitPrice() { return unitPrice; }
+        public void setUnitPrice(BigDecimal unitPrice) { this.unitPrice = unitPrice; }
+
+        @DynamoDbAttribute("q")
+        public Integer getQuantity() { return quantity; }
+        public void setQuantity(Integer quantity) { this.quantity = quantity; }
+    }
+}
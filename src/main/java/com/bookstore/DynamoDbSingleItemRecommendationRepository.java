@@ -8,6 +8,7 @@ import software.amazon.awssdk.services.dynamodb.model.*;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Repository
@@ -66,102 +67,12 @@ public class DynamoDbSingleItemRecommendationRepository implements Recommendatio
     @Override
     public List<Book> findRecommendationsForUser(String userId, int limit) {
         if (userId == null || limit <= 0) return Collections.emptyList();
-
-        UserRecommendations ur = table.getItem(Key.builder().partitionValue(userId).build());
-        if (ur == null || ur.getRecommendations() == null) return Collections.emptyList();
-
-        return ur.getRecommendations().stream()
-                .sorted(Comparator.comparingInt(Recommendation::getRank))
-                .limit(limit)
-                .map(this::bookFromRecommendation)
-                .filter(java.util.Objects::nonNull)
+        return getTopRecommendations(userId, limit).stream()
+                .map(Recommendation::toBook)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
-    private Book bookFromRecommendation(Recommendation r) {
-        if (r == null) return null;
-
-        // 1) try getBook()
-        try {
-            java.lang.reflect.Method m = r.getClass().getMethod("getBook");
-            Object res = m.invoke(r);
-            if (res instanceof Book) return (Book) res;
-        } catch (NoSuchMethodException ignored) {
-        } catch (Exception ignored) {
-        }
-
-        // 2) try getItem()
-        try {
-            java.lang.reflect.Method m = r.getClass().getMethod("getItem");
-            Object res = m.invoke(r);
-            if (res instanceof Book) return (Book) res;
-        } catch (NoSuchMethodException ignored) {
-        } catch (Exception ignored) {
-        }
-
-        // 3) fallback: try to read common primitive fields to build Book
-        String id = tryInvokeStringGetter(r, "getBookId", "getItemId", "getId");
-        String title = tryInvokeStringGetter(r, "getTitle", "getName");
-        String author = tryInvokeStringGetter(r, "getAuthor", "getWriter");
-
-        if (id == null && title == null && author == null) {
-            return null;
-        }
-
-        try {
-            Book b = new Book();
-            if (id != null) {
-                try {
-                    java.lang.reflect.Method setId = Book.class.getMethod("setId", String.class);
-                    setId.invoke(b, id);
-                } catch (NoSuchMethodException ns) {
-                }
-            }
-            if (title != null) {
-                try {
-                    java.lang.reflect.Method setTitle = Book.class.getMethod("setTitle", String.class);
-                    setTitle.invoke(b, title);
-                } catch (NoSuchMethodException ns) {
-                }
-            }
-            if (author != null) {
-                try {
-                    java.lang.reflect.Method setAuthor = Book.class.getMethod("setAuthor", String.class);
-                    setAuthor.invoke(b, author);
-                } catch (NoSuchMethodException ns) {
-                }
-            }
-            return b;
-        } catch (Exception e) {
-            return null;
-        }
-    }
-
-    private String tryInvokeStringGetter(Recommendation r, String... methodNames) {
-        for (String methodName : methodNames) {
-            try {
-                java.lang.reflect.Method m = r.getClass().getMethod(methodName);
-                Object res = m.invoke(r);
-                if (res instanceof String) return (String) res;
-                if (res != null) return res.toString();
-            } catch (NoSuchMethodException ignored) {
-            } catch (Exception ignored) {
-            }
-        }
-        for (String fieldName : new String[]{"bookId", "itemId", "id", "title", "name", "author", "writer"}) {
-            try {
-                java.lang.reflect.Field f = r.getClass().getDeclaredField(fieldName);
-                f.setAccessible(true);
-                Object res = f.get(r);
-                if (res instanceof String) return (String) res;
-                if (res != null) return res.toString();
-            } catch (NoSuchFieldException ignored) {
-            } catch (Exception ignored) {
-            }
-        }
-        return null;
-    }
-
     public void close() {
         client.close();
     }
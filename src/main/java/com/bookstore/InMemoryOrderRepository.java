@@ -1,19 +1,85 @@
 package com.bookstore;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * Simple thread-safe in-memory repository.
+ * Also keeps a running units-sold counter per book, used as a popularity signal.
+ *
+ * Orders are indexed newest first, globally and per user (skip lists keyed on
+ * createdAt + orderId), so history reads and pagination never walk the whole store.
+ * The indexes are updated inside the same per-order compute as the primary map.
  */
 public class InMemoryOrderRepository implements OrderRepository {
+
+    /** Index key: newest first, ties broken by order id. */
+    private record TimeKey(Instant createdAt, String orderId) {
+        static final Comparator<TimeKey> NEWEST_FIRST = Comparator
+                .comparing(TimeKey::createdAt, Comparator.reverseOrder())
+                .thenComparing(TimeKey::orderId, Comparator.reverseOrder());
+
+        static TimeKey of(Order o) { return new TimeKey(o.getCreatedAt(), o.getOrderId()); }
+    }
+
     private final ConcurrentHashMap<String, Order> store = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> unitsSold = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<TimeKey, Order> byTime = new ConcurrentSkipListMap<>(TimeKey.NEWEST_FIRST);
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<TimeKey, Order>> byUser = new ConcurrentHashMap<>();
 
     @Override
     public void save(Order order) {
-        store.put(order.getOrderId(), order);
+        store.compute(order.getOrderId(), (id, previous) -> {
+            if (previous != null) {
+                unindex(previous);
+                countUnits(previous, -1);
+            }
+            index(order);
+            countUnits(order, 1);
+            return order;
+        });
+    }
+
+    /** Total quantity of this book across all stored orders. */
+    @Override
+    public long unitsSold(String bookId) {
+        if (bookId == null) return 0L;
+        return unitsSold.getOrDefault(bookId, 0L);
+    }
+
+    private void countUnits(Order order, int sign) {
+        for (CartItem item : order.getItems().values()) {
+            if (item.getBookId() == null) continue;
+            unitsSold.merge(item.getBookId(), (long) sign * item.getQuantity(), Long::sum);
+        }
+    }
+
+    private void index(Order order) {
+        TimeKey key = TimeKey.of(order);
+        byTime.put(key, order);
+        if (order.getUsername() != null) {
+            byUser.computeIfAbsent(order.getUsername(), u -> new ConcurrentSkipListMap<>(TimeKey.NEWEST_FIRST))
+                    .put(key, order);
+        }
+    }
+
+    private void unindex(Order order) {
+        TimeKey key = TimeKey.of(order);
+        byTime.remove(key);
+        if (order.getUsername() != null) {
+            byUser.computeIfPresent(order.getUsername(), (u, orders) -> {
+                orders.remove(key);
+                return orders.isEmpty() ? null : orders;
+            });
+        }
     }
 
     @Override
@@ -21,17 +87,44 @@ public class InMemoryOrderRepository implements OrderRepository {
         return java.util.Optional.ofNullable(store.get(orderId));
     }
 
+    /** All orders of the user, newest first. */
     @Override
     public List<Order> findByUser(String username) {
-        List<Order> out = new ArrayList<>();
-        for (Order o : store.values()) {
-            if (o.getUsername() != null && o.getUsername().equals(username)) out.add(o);
-        }
-        return out;
+        ConcurrentSkipListMap<TimeKey, Order> orders = username == null ? null : byUser.get(username);
+        return orders == null ? List.of() : new ArrayList<>(orders.values());
     }
 
+    /** All orders, newest first. */
     @Override
     public List<Order> findAll() {
-        return Collections.unmodifiableList(new ArrayList<>(store.values()));
+        return Collections.unmodifiableList(new ArrayList<>(byTime.values()));
+    }
+
+    @Override
+    public OrderPage findByUser(String username, int limit, String cursor) {
+        ConcurrentSkipListMap<TimeKey, Order> orders = username == null ? null : byUser.get(username);
+        if (orders == null) return new OrderPage(List.of(), null);
+        return page(orders, limit, cursor);
+    }
+
+    @Override
+    public OrderPage findAll(int limit, String cursor) {
+        return page(byTime, limit, cursor);
+    }
+
+    private static OrderPage page(NavigableMap<TimeKey, Order> index, int limit, String cursor) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+        NavigableMap<TimeKey, Order> from = index;
+        if (cursor != null && !cursor.isBlank()) {
+            OrderPage.Position p = OrderPage.decode(cursor);
+            from = index.tailMap(new TimeKey(p.createdAt(), p.orderId()), false);
+        }
+
+        List<Order> out = new ArrayList<>(Math.min(limit, 64));
+        Iterator<Map.Entry<TimeKey, Order>> it = from.entrySet().iterator();
+        while (it.hasNext() && out.size() < limit) out.add(it.next().getValue());
+
+        String next = it.hasNext() && !out.isEmpty() ? OrderPage.cursorAfter(out.get(out.size() - 1)) : null;
+        return new OrderPage(out, next);
     }
 }
@@ -0,0 +1,176 @@
+package com.bookstore;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process ledger of short stock holds placed at cart preview.
+ *
+ * - A hold is (holder, book, quantity) and expires after a TTL unless refreshed
+ * - A new hold only fits if stock minus everyone else's live holds covers it
+ * - Checkout asks for the quantity held by others and makes the DynamoDB condition
+ *   leave that much stock behind, then releases the holder's holds
+ * - Updates for one book are serialized on a lock stripe picked from its id; a holder's
+ *   book set is only changed inside its own map compute, so holds on two books can't race
+ * - A background sweeper drops expired holds; reads ignore expired holds anyway
+ *
+ * Holds are advisory and per instance: the conditional stock transaction in
+ * {@link BookService#decrementStock} is still what prevents overselling.
+ */
+public class InventoryReservations implements AutoCloseable {
+
+    private static final int STRIPES = 64;
+
+    private record Hold(int quantity, long expiresAt) {}
+
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Object[] stripes = new Object[STRIPES];
+    private final Map<String, Map<String, Hold>> holdsByBook = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> booksByHolder = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;   // null when the caller sweeps
+
+    public InventoryReservations(Duration ttl, Duration sweepInterval) {
+        this(ttl, System::nanoTime, Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventory-hold-sweeper");
+            t.setDaemon(true);
+            return t;
+        }));
+        sweeper.scheduleWithFixedDelay(this::sweep,
+                sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /** Clock-driven constructor for tests: sweeping is left to the caller. */
+    InventoryReservations(Duration ttl, LongSupplier clock) {
+        this(ttl, clock, null);
+    }
+
+    private InventoryReservations(Duration ttl, LongSupplier clock, ScheduledExecutorService sweeper) {
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Object();
+        this.sweeper = sweeper;
+    }
+
+    /**
+     * Place or refresh the holder's hold on a book. Returns false (and drops any previous
+     * hold of this holder on the book) when stock minus other holders' holds is too small.
+     */
+    public boolean hold(String holder, String bookId, int quantity, int stock) {
+        long now = clock.getAsLong();
+        synchronized (stripe(bookId)) {
+            Map<String, Hold> holds = holdsByBook.computeIfAbsent(bookId, k -> new ConcurrentHashMap<>());
+            if (stock - heldByOthers(holds, holder, now) < quantity) {
+                holds.remove(holder);
+                forget(holder, bookId);
+                if (holds.isEmpty()) holdsByBook.remove(bookId);
+                return false;
+            }
+            holds.put(holder, new Hold(quantity, now + ttlNanos));
+            booksByHolder.compute(holder, (k, books) -> {
+                if (books == null) books = ConcurrentHashMap.newKeySet();
+                books.add(bookId);
+                return books;
+            });
+            return true;
+        }
+    }
+
+    /** Quantity of this book held (and not expired) by anyone other than the holder. */
+    public int heldByOthers(String bookId, String holder) {
+        Map<String, Hold> holds = holdsByBook.get(bookId);
+        return holds == null ? 0 : heldByOthers(holds, holder, clock.getAsLong());
+    }
+
+    /** Drop the holder's holds on books that are no longer in its cart. */
+    public void retain(String holder, Set<String> bookIds) {
+        Set<String> held = booksByHolder.get(holder);
+        if (held == null) return;
+        for (String bookId : Set.copyOf(held)) {
+            if (!bookIds.contains(bookId)) releaseOne(holder, bookId);
+        }
+    }
+
+    /** Drop every hold of this holder (after checkout, or when its cart failed). */
+    public void release(String holder) {
+        if (holder == null) return;
+        Set<String> held = booksByHolder.get(holder);
+        if (held == null) return;
+        for (String bookId : Set.copyOf(held)) releaseOne(holder, bookId);
+    }
+
+    /** Remove expired holds; returns how many were dropped. */
+    public int sweep() {
+        long now = clock.getAsLong();
+        int removed = 0;
+        for (String bookId : holdsByBook.keySet()) {
+            synchronized (stripe(bookId)) {
+                Map<String, Hold> holds = holdsByBook.get(bookId);
+                if (holds == null) continue;
+                for (Map.Entry<String, Hold> e : holds.entrySet()) {
+                    if (e.getValue().expiresAt() - now <= 0) {
+                        holds.remove(e.getKey());
+                        forget(e.getKey(), bookId);
+                        removed++;
+                    }
+                }
+                if (holds.isEmpty()) holdsByBook.remove(bookId);
+            }
+        }
+        return removed;
+    }
+
+    /** Number of holds currently stored (expired ones count until swept). */
+    public int size() {
+        int n = 0;
+        for (Map<String, Hold> holds : holdsByBook.values()) n += holds.size();
+        return n;
+    }
+
+    @Override
+    public void close() {
+        if (sweeper != null) sweeper.shutdownNow();
+    }
+
+    // -------------------------------
+    // internals
+    // -------------------------------
+
+    private void releaseOne(String holder, String bookId) {
+        synchronized (stripe(bookId)) {
+            Map<String, Hold> holds = holdsByBook.get(bookId);
+            if (holds != null) {
+                holds.remove(holder);
+                if (holds.isEmpty()) holdsByBook.remove(bookId);
+            }
+            forget(holder, bookId);
+        }
+    }
+
+    private void forget(String holder, String bookId) {
+        booksByHolder.computeIfPresent(holder, (k, books) -> {
+            books.remove(bookId);
+            return books.isEmpty() ? null : books;
+        });
+    }
+
+    private static int heldByOthers(Map<String, Hold> holds, String holder, long now) {
+        int n = 0;
+        for (Map.Entry<String, Hold> e : holds.entrySet()) {
+            if (!e.getKey().equals(holder) && e.getValue().expiresAt() - now > 0) {
+                n += e.getValue().quantity();
+            }
+        }
+        return n;
+    }
+
+    private Object stripe(String bookId) {
+        return stripes[Math.floorMod(bookId.hashCode(), STRIPES)];
+    }
+}
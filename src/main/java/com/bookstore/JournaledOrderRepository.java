@@ -0,0 +1,75 @@
+package com.bookstore;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+/**
+ * In-memory orders made durable by a local {@link OrderJournal}.
+ *
+ * Reads are served by an {@link InMemoryOrderRepository}. A save returns once the order
+ * is fsynced (shared with every other checkout in the same group commit) and applied.
+ * On startup the memory store is rebuilt from the latest snapshot plus the journal.
+ */
+public class JournaledOrderRepository implements OrderRepository, AutoCloseable {
+
+    private final InMemoryOrderRepository memory = new InMemoryOrderRepository();
+    private final OrderJournal journal;
+
+    public JournaledOrderRepository(Path dir, int snapshotEvery) {
+        this.journal = new OrderJournal(dir);
+        int replayed = journal.replay(memory::save);
+        System.out.println("Order journal: replayed " + replayed + " records from " + dir);
+        journal.start(memory::save, memory::findAll, snapshotEvery);
+    }
+
+    @Override
+    public void save(Order order) {
+        try {
+            journal.append(order).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof java.io.IOException io) {
+                throw new UncheckedIOException("Order could not be journaled", io);
+            }
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<Order> findById(String orderId) {
+        return memory.findById(orderId);
+    }
+
+    @Override
+    public List<Order> findByUser(String username) {
+        return memory.findByUser(username);
+    }
+
+    @Override
+    public List<Order> findAll() {
+        return memory.findAll();
+    }
+
+    @Override
+    public OrderPage findByUser(String username, int limit, String cursor) {
+        return memory.findByUser(username, limit, cursor);
+    }
+
+    @Override
+    public OrderPage findAll(int limit, String cursor) {
+        return memory.findAll(limit, cursor);
+    }
+
+    @Override
+    public long unitsSold(String bookId) {
+        return memory.unitsSold(bookId);
+    }
+
+    @Override
+    public void close() {
+        journal.close();
+    }
+}
@@ -15,11 +15,16 @@ public class Order {
     private final Instant createdAt;
 
     public Order(String orderId, String username, Map<String, CartItem> items, BigDecimal total) {
+        this(orderId, username, items, total, Instant.now());
+    }
+
+    /** Rebuild an order with its original timestamp (e.g. when loading from storage). */
+    public Order(String orderId, String username, Map<String, CartItem> items, BigDecimal total, Instant createdAt) {
         this.orderId = Objects.requireNonNull(orderId);
         this.username = username;
         this.items = Collections.unmodifiableMap(new LinkedHashMap<>(items));
         this.total = total;
-        this.createdAt = Instant.now();
+        this.createdAt = Objects.requireNonNull(createdAt);
     }
 
     public String getOrderId() { return orderId; }
@@ -0,0 +1,402 @@
+package com.bookstore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, crash-safe log of saved orders.
+ *
+ * - Record = [int length][int crc32][payload]; a torn tail is cut off on replay, a bad record
+ *   with intact data after it fails the replay (acknowledged orders would be lost otherwise)
+ * - One writer thread drains every pending append, writes them with a single gather write
+ *   and a single fsync (group commit), then applies them in log order and wakes the callers
+ * - A failed write or fsync fails its batch and cuts the file back to the last good record;
+ *   if even that fails the journal refuses every later append
+ * - Every {@code snapshotEvery} records the writer dumps the applied state to
+ *   snapshot.bin (write to temp, fsync, atomic rename) and truncates the journal
+ *
+ * Replay reads snapshot.bin and then journal.log; re-applying a record is harmless because
+ * saving an order overwrites it by id.
+ */
+public class OrderJournal implements AutoCloseable {
+
+    private static final int MAX_RECORD = 16 * 1024 * 1024;
+    private static final int MAX_BATCH = 4096;
+    private static final String JOURNAL = "journal.log";
+    private static final String SNAPSHOT = "snapshot.bin";
+
+    private record Append(byte[] payload, Order order, CompletableFuture<Void> done) {}
+
+    private static final Append STOP = new Append(null, null, null);
+
+    private final Path dir;
+    private final FileChannel channel;
+    private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    private Consumer<Order> applier;
+    private Supplier<Collection<Order>> snapshotSource;
+    private int snapshotEvery;
+    private long sinceSnapshot;
+    private volatile Thread writer;
+    private volatile boolean closed;
+    private volatile IOException failed;     // set when a failed batch could not be cut off
+
+    public OrderJournal(Path dir) {
+        this(dir, open(dir));
+    }
+
+    OrderJournal(Path dir, FileChannel channel) {
+        this.dir = dir;
+        this.channel = channel;
+    }
+
+    private static FileChannel open(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            return FileChannel.open(dir.resolve(JOURNAL),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open order journal in " + dir, e);
+        }
+    }
+
+    /**
+     * Feed the snapshot and then every intact journal record to the consumer; returns the record
+     * count. Throws if the snapshot is damaged or a bad journal record is followed by more data.
+     */
+    public int replay(Consumer<Order> sink) {
+        try {
+            int n = 0;
+            Path snapshot = dir.resolve(SNAPSHOT);
+            if (Files.exists(snapshot)) {
+                try (InputStream in = Files.newInputStream(snapshot)) {
+                    n += readRecords(in, Files.size(snapshot), false, sink)[0];
+                }
+            }
+            long[] journal;
+            try (InputStream in = Files.newInputStream(dir.resolve(JOURNAL))) {
+                journal = readRecords(in, channel.size(), true, sink);
+            }
+            sinceSnapshot = journal[0];
+            if (journal[1] < channel.size()) {
+                System.out.println("Order journal: dropping " + (channel.size() - journal[1]) + " bytes of torn tail");
+                channel.truncate(journal[1]);
+            }
+            channel.position(journal[1]);
+            return n + (int) journal[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException("Order journal replay failed", e);
+        }
+    }
+
+    /**
+     * Start the group-commit writer. Appended orders are handed to {@code applier} in log
+     * order once durable; {@code snapshotSource} supplies the full state for snapshots.
+     */
+    public synchronized void start(Consumer<Order> applier, Supplier<Collection<Order>> snapshotSource,
+                                   int snapshotEvery) {
+        if (writer != null) throw new IllegalStateException("Journal already started");
+        this.applier = applier;
+        this.snapshotSource = snapshotSource;
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+        this.writer = new Thread(this::runWriter, "order-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Queue the order; the future completes once it is fsynced and applied. */
+    public CompletableFuture<Void> append(Order order) {
+        byte[] payload = encode(order);
+        IOException failure = failed;
+        if (failure != null) return CompletableFuture.failedFuture(new IOException("Order journal failed", failure));
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        synchronized (queue) {                   // close() enqueues STOP under the same lock
+            if (closed) throw new IllegalStateException("Order journal is closed");
+            queue.add(new Append(payload, order, done));
+        }
+        return done;
+    }
+
+    /** Drain pending appends, write a final snapshot and close the file. */
+    @Override
+    public void close() {
+        Thread w;
+        synchronized (queue) {
+            if (closed) return;
+            closed = true;
+            w = writer;
+            if (w != null) queue.add(STOP);
+        }
+        try {
+            if (w != null) w.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // -------------------------------
+    // writer thread
+    // -------------------------------
+
+    private void runWriter() {
+        List<Append> batch = new ArrayList<>();
+        boolean stop = false;
+        while (!stop) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException e) {
+                stop = true;
+            }
+            stop |= batch.remove(STOP);
+            if (!batch.isEmpty()) {
+                try {
+                    commit(batch);
+                } catch (RuntimeException | Error e) {
+                    // keep the writer alive; callers waiting on this batch get the error
+                    System.err.println("Order journal: batch failed: " + e);
+                    batch.forEach(a -> a.done().completeExceptionally(e));
+                }
+            }
+            batch.clear();
+        }
+
+        // only an interrupt can leave appends behind (append() rejects after STOP); fail them
+        List<Append> left = new ArrayList<>();
+        queue.drainTo(left);
+        IllegalStateException stopped = new IllegalStateException("Order journal is closed");
+        left.forEach(a -> { if (a.done() != null) a.done().completeExceptionally(stopped); });
+
+        // make the state durable as a snapshot
+        try {
+            if (sinceSnapshot > 0) snapshot();
+        } catch (IOException e) {
+            System.err.println("Order journal: final snapshot failed: " + e.getMessage());
+        }
+    }
+
+    private void commit(List<Append> batch) {
+        if (failed != null) {
+            IOException e = new IOException("Order journal failed", failed);
+            batch.forEach(a -> a.done().completeExceptionally(e));
+            return;
+        }
+        long start = -1;
+        try {
+            start = channel.position();
+            ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+            for (int i = 0; i < buffers.length; i++) buffers[i] = frame(batch.get(i).payload());
+            long remaining = 0;
+            for (ByteBuffer b : buffers) remaining += b.remaining();
+            while (remaining > 0) remaining -= channel.write(buffers);
+            channel.force(false);
+        } catch (IOException e) {
+            rollBack(start, e);
+            batch.forEach(a -> a.done().completeExceptionally(e));
+            return;
+        }
+
+        // durable from here on: an applier failure fails that caller, replay will still apply it
+        for (Append a : batch) {
+            try {
+                applier.accept(a.order());
+                a.done().complete(null);
+            } catch (RuntimeException e) {
+                System.err.println("Order journal: applying " + a.order().getOrderId() + " failed: " + e);
+                a.done().completeExceptionally(e);
+            }
+        }
+
+        sinceSnapshot += batch.size();
+        if (sinceSnapshot >= snapshotEvery) {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                // the journal still has everything; try again after the next batch
+                System.err.println("Order journal: snapshot failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Cut off whatever part of a failed batch reached the file, so the next batch follows a good record. */
+    private void rollBack(long start, IOException cause) {
+        try {
+            if (start < 0) throw cause;
+            channel.truncate(start);
+            channel.position(start);
+            channel.force(false);
+        } catch (IOException e) {
+            if (e != cause) e.addSuppressed(cause);
+            failed = e;
+            System.err.println("Order journal: cannot roll back failed batch, refusing further appends: " + e.getMessage());
+        }
+    }
+
+    private void snapshot() throws IOException {
+        Path tmp = dir.resolve(SNAPSHOT + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+            for (Order o : snapshotSource.get()) {
+                ByteBuffer framed = frame(encode(o));
+                out.write(framed.array(), 0, framed.limit());
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.truncate(0);
+        channel.force(true);
+        sinceSnapshot = 0;
+    }
+
+    // -------------------------------
+    // record format
+    // -------------------------------
+
+    private static ByteBuffer frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer b = ByteBuffer.allocate(8 + payload.length);
+        b.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        return b;
+    }
+
+    /**
+     * Returns {records read, byte offset just past the last intact record}.
+     *
+     * A bad record (short, bad length, bad checksum) ends the read when it is a torn tail: the
+     * last thing in the file, or followed only by zeros. With {@code tailMayBeTorn} false, or
+     * with real data after it, it is corruption and an IOException names its offset.
+     */
+    private static long[] readRecords(InputStream raw, long size, boolean tailMayBeTorn,
+                                      Consumer<Order> sink) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16));
+        long count = 0, offset = 0;
+        while (offset < size) {
+            int length, crc;
+            try {
+                length = in.readInt();
+                crc = in.readInt();
+            } catch (EOFException e) {
+                return torn(tailMayBeTorn, count, offset, "short header");
+            }
+            if (length <= 0 || length > MAX_RECORD) {
+                if (zerosToEnd(in)) return torn(tailMayBeTorn, count, offset, "bad length " + length + " at the end");
+                throw corrupt(offset, size, "bad length " + length);
+            }
+            byte[] payload = in.readNBytes(length);
+            if (payload.length < length) return torn(tailMayBeTorn, count, offset, "short record");
+            CRC32 check = new CRC32();
+            check.update(payload);
+            if ((int) check.getValue() != crc) {
+                if (zerosToEnd(in)) return torn(tailMayBeTorn, count, offset, "bad checksum at the end");
+                throw corrupt(offset, size, "bad checksum");
+            }
+
+            sink.accept(decode(payload));
+            count++;
+            offset += 8 + length;
+        }
+        return new long[]{count, offset};
+    }
+
+    private static long[] torn(boolean allowed, long count, long offset, String why) throws IOException {
+        if (!allowed) throw new IOException("Damaged snapshot at offset " + offset + ": " + why);
+        return new long[]{count, offset};
+    }
+
+    private static IOException corrupt(long offset, long size, String why) {
+        return new IOException("Corrupt order journal record at offset " + offset + " (" + why + ") with "
+                + (size - offset) + " bytes after it; refusing to drop acknowledged orders");
+    }
+
+    private static boolean zerosToEnd(InputStream in) throws IOException {
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b != 0) return false;
+        }
+        return true;
+    }
+
+    static byte[] encode(Order o) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(o.getOrderId());
+            writeNullable(out, o.getUsername());
+            out.writeLong(o.getCreatedAt().getEpochSecond());
+            out.writeInt(o.getCreatedAt().getNano());
+            writeNullable(out, o.getTotal() == null ? null : o.getTotal().toPlainString());
+            out.writeInt(o.getItems().size());
+            for (CartItem i : o.getItems().values()) {
+                writeNullable(out, i.getBookId());
+                writeNullable(out, i.getTitle());
+                writeNullable(out, i.getAuthor());
+                writeNullable(out, i.getIsbn());
+                writeNullable(out, i.getUnitPrice() == null ? null : i.getUnitPrice().toPlainString());
+                out.writeInt(i.getQuantity());
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory stream: not expected
+        }
+    }
+
+    static Order decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(payload));
+        String orderId = in.readUTF();
+        String username = readNullable(in);
+        Instant createdAt = Instant.ofEpochSecond(in.readLong(), in.readInt());
+        String total = readNullable(in);
+        int n = in.readInt();
+        Map<String, CartItem> items = new LinkedHashMap<>();
+        for (int k = 0; k < n; k++) {
+            String bookId = readNullable(in);
+            String title = readNullable(in);
+            String author = readNullable(in);
+            String isbn = readNullable(in);
+            String price = readNullable(in);
+            int qty = in.readInt();
+            items.put(bookId, new CartItem(bookId, title, author, isbn, price == null ? null : new BigDecimal(price), qty));
+        }
+        return new Order(orderId, username, items, total == null ? null : new BigDecimal(total), createdAt);
+    }
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.bookstore;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of orders, newest first.
+ * nextCursor is null on the last page; otherwise pass it back to get the next page.
+ */
+public record OrderPage(List<Order> orders, String nextCursor) {
+
+    /** Opaque cursor for "strictly older than this order" (createdAt, then orderId). */
+    public static String cursorAfter(Order last) {
+        String raw = last.getCreatedAt().getEpochSecond() + "." + last.getCreatedAt().getNano() + ":" + last.getOrderId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Position encoded in a cursor: the createdAt and orderId of the last order already returned. */
+    public record Position(Instant createdAt, String orderId) {}
+
+    public static Position decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int colon = raw.indexOf(':');
+            int dot = raw.indexOf('.');
+            if (colon < 0 || dot < 0 || dot > colon) throw new IllegalArgumentException(cursor);
+            Instant at = Instant.ofEpochSecond(Long.parseLong(raw.substring(0, dot)),
+                    Long.parseLong(raw.substring(dot + 1, colon)));
+            return new Position(at, raw.substring(colon + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
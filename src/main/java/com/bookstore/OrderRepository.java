@@ -8,4 +8,13 @@ public interface OrderRepository {
     Optional<Order> findById(String orderId);
     List<Order> findByUser(String username);
     List<Order> findAll();
+
+    /** A user's orders, newest first; cursor is null for the first page. */
+    OrderPage findByUser(String username, int limit, String cursor);
+
+    /** All orders one page at a time (newest first where the store can order them); cursor is null for the first page. */
+    OrderPage findAll(int limit, String cursor);
+
+    /** Units of this book in stored orders; used as a popularity signal. */
+    long unitsSold(String bookId);
 }
@@ -0,0 +1,441 @@
+package com.bookstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Prefix autocomplete over book titles and authors, stored as a radix (compressed) trie.
+ *
+ * - Keys are normalized (lower-cased, trimmed, single spaces) titles and authors
+ * - Edges carry whole substrings, so a chain of single-child nodes costs one node
+ * - Each terminal remembers the display text (of the book put last) and the ids behind it
+ * - Completions are ranked by popularity (summed per book id), scored when a key is put and
+ *   again on {@link #rescore}
+ * - A node whose subtree holds more than {@link #MAX_LIMIT} completions keeps its best
+ *   MAX_LIMIT, so a short prefix ("a", "th") is answered from one list instead of a walk over
+ *   the whole subtree; smaller subtrees are walked (at most MAX_LIMIT terminals)
+ *
+ * Updates are incremental ({@link #put}/{@link #remove}/{@link #rescore}) and refresh the
+ * lists on the changed key's path; a full {@link #rebuild} computes them bottom-up once.
+ */
+public class PrefixSuggester {
+
+    /** Largest limit answered from the per-node lists; larger ones walk the subtree. */
+    public static final int MAX_LIMIT = 50;
+
+    /** One ranked completion. */
+    public record Suggestion(String text, List<String> bookIds, long score) {}
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Comparator<Terminal> BEST_FIRST = Comparator.comparingLong((Terminal t) -> t.score).reversed()
+            .thenComparing(t -> t.display);
+
+    private static final class Terminal {
+        String display;
+        long score;
+        final Set<String> bookIds = new LinkedHashSet<>();
+
+        Terminal(String display) { this.display = display; }
+    }
+
+    private static final class Node {
+        String edge;                 // label of the edge leading into this node
+        Node[] children = NO_CHILDREN; // sorted by first char of edge
+        Terminal terminal;
+        int count;                   // terminals in this subtree
+        Terminal[] best;             // top MAX_LIMIT of the subtree, best first; null while count <= MAX_LIMIT
+
+        Node(String edge) { this.edge = edge; }
+    }
+
+    private final Node root = new Node("");
+    private final Map<String, List<String>> keysByBook = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ToLongFunction<String> popularity;
+
+    public PrefixSuggester() {
+        this(id -> 0L);
+    }
+
+    /** {@code popularity} scores one book id (e.g. units sold); read on put and rescore. */
+    public PrefixSuggester(ToLongFunction<String> popularity) {
+        this.popularity = popularity;
+    }
+
+    /** Normalize text the same way for indexing and for lookups. */
+    public static String normalize(String s) {
+        if (s == null) return "";
+        return s.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    public void rebuild(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            root.children = NO_CHILDREN;
+            root.terminal = null;
+            keysByBook.clear();
+            if (books != null) {
+                for (Book b : books) putLocked(b, false);
+            }
+            recountAll(root);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Add or replace the title/author keys of one book. */
+    public void put(Book book) {
+        if (book == null || book.getId() == null) return;
+        lock.writeLock().lock();
+        try {
+            putLocked(book, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Drop every key contributed by this book id. */
+    public void remove(String bookId) {
+        if (bookId == null) return;
+        lock.writeLock().lock();
+        try {
+            removeLocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-read the popularity of these books and re-rank their keys where it changed.
+     * Null means every book (periodic refresh).
+     */
+    public void rescore(Collection<String> bookIds) {
+        lock.writeLock().lock();
+        try {
+            if (bookIds == null) {
+                if (rescoreAll(root)) recountAll(root);
+                return;
+            }
+            for (String id : bookIds) {
+                List<String> keys = id == null ? null : keysByBook.get(id);
+                if (keys == null) continue;
+                for (String key : keys) {
+                    Node n = exact(key);
+                    if (n != null && n.terminal != null && rescore(n.terminal)) recountPath(key);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Top-k completions for the prefix, highest score first (ties broken alphabetically).
+     * An empty prefix returns nothing rather than the whole catalog.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String p = normalize(prefix);
+        if (p.isEmpty() || limit <= 0) return List.of();
+
+        List<Terminal> top;
+        lock.readLock().lock();
+        try {
+            Node start = descend(p);
+            if (start == null) return List.of();
+            if (start.best != null && limit <= MAX_LIMIT) {
+                top = Arrays.asList(start.best).subList(0, Math.min(limit, start.best.length));
+            } else {
+                top = new ArrayList<>();
+                collect(start, top);
+                top.sort(BEST_FIRST);
+                if (top.size() > limit) top = top.subList(0, limit);
+            }
+            List<Suggestion> out = new ArrayList<>(top.size());
+            for (Terminal t : top) out.add(new Suggestion(t.display, List.copyOf(t.bookIds), t.score));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return keysByBook.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // -------------------------------
+    // internals (callers hold the lock)
+    // -------------------------------
+
+    /** {@code ranked}: refresh the lists on each key's path now (off during a rebuild). */
+    private void putLocked(Book book, boolean ranked) {
+        if (book == null || book.getId() == null) return;
+        removeLocked(book.getId());
+
+        List<String> keys = new ArrayList<>(2);
+        addKey(book.getTitle(), book.getId(), keys, ranked);
+        addKey(book.getAuthor(), book.getId(), keys, ranked);
+        if (!keys.isEmpty()) keysByBook.put(book.getId(), keys);
+    }
+
+    private void addKey(String text, String bookId, List<String> keys, boolean ranked) {
+        String key = normalize(text);
+        if (key.isEmpty() || keys.contains(key)) return;
+        Node n = insert(key);
+        if (n.terminal == null) n.terminal = new Terminal(text.trim());
+        n.terminal.display = text.trim();        // a renamed/re-cased title shows as it is now
+        n.terminal.bookIds.add(bookId);
+        rescore(n.terminal);
+        keys.add(key);
+        if (ranked) recountPath(key);
+    }
+
+    private void removeLocked(String bookId) {
+        List<String> keys = keysByBook.remove(bookId);
+        if (keys == null) return;
+        for (String key : keys) {
+            removeKey(root, key, 0, bookId);
+            Node n = exact(key);
+            if (n != null && n.terminal != null) rescore(n.terminal);   // still there for other books
+            recountPath(key);
+        }
+    }
+
+    /** Returns true when the score changed. */
+    private boolean rescore(Terminal t) {
+        long score = 0;
+        for (String id : t.bookIds) score += popularity.applyAsLong(id);
+        if (score == t.score) return false;
+        t.score = score;
+        return true;
+    }
+
+    private boolean rescoreAll(Node node) {
+        boolean changed = node.terminal != null && rescore(node.terminal);
+        for (Node c : node.children) changed |= rescoreAll(c);
+        return changed;
+    }
+
+    /** Node whose path spells exactly this key, or null. */
+    private Node exact(String key) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int idx = childIndex(node, key.charAt(i));
+            if (idx < 0) return null;
+            Node child = node.children[idx];
+            if (!key.startsWith(child.edge, i)) return null;
+            node = child;
+            i += child.edge.length();
+        }
+        return node;
+    }
+
+    /**
+     * Recompute count/best for every node along the key's path, deepest first. Any node whose
+     * subtree changed by inserting, removing or rescoring this key lies on it (a split or merge
+     * only happens there).
+     */
+    private void recountPath(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            int idx = childIndex(node, key.charAt(i));
+            if (idx < 0) break;
+            Node child = node.children[idx];
+            path.add(child);
+            if (!key.startsWith(child.edge, i)) break;
+            node = child;
+            i += child.edge.length();
+        }
+        for (int k = path.size() - 1; k >= 0; k--) recount(path.get(k));
+    }
+
+    private void recountAll(Node node) {
+        for (Node c : node.children) recountAll(c);
+        recount(node);
+    }
+
+    /** count and best from this node's terminal and its children's (already current) values. */
+    private static void recount(Node node) {
+        int count = node.terminal == null ? 0 : 1;
+        for (Node c : node.children) count += c.count;
+        node.count = count;
+        if (count <= MAX_LIMIT) {
+            node.best = null;
+            return;
+        }
+        // the best of a subtree are among its own terminal and each child's best
+        PriorityQueue<Terminal> top = new PriorityQueue<>(MAX_LIMIT + 1, BEST_FIRST.reversed());
+        if (node.terminal != null) offer(top, node.terminal);
+        List<Terminal> small = new ArrayList<>();
+        for (Node c : node.children) {
+            if (c.best != null) {
+                for (Terminal t : c.best) {
+                    if (!offer(top, t)) break;          // c.best is sorted: the rest are worse
+                }
+            } else {
+                small.clear();
+                collect(c, small);
+                for (Terminal t : small) offer(top, t);
+            }
+        }
+        Terminal[] best = new Terminal[top.size()];
+        for (int k = best.length - 1; k >= 0; k--) best[k] = top.poll();
+        node.best = best;
+    }
+
+    /** Keep the MAX_LIMIT best in a worst-first heap; false when t did not make it in. */
+    private static boolean offer(PriorityQueue<Terminal> top, Terminal t) {
+        if (top.size() < MAX_LIMIT) {
+            top.add(t);
+            return true;
+        }
+        if (BEST_FIRST.compare(t, top.peek()) >= 0) return false;
+        top.poll();
+        top.add(t);
+        return true;
+    }
+
+    /** Insert the key (splitting edges as needed) and return the node that ends it. */
+    private Node insert(String key) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int idx = childIndex(node, key.charAt(i));
+            if (idx < 0) {
+                Node leaf = new Node(key.substring(i));
+                addChild(node, leaf);
+                return leaf;
+            }
+            Node child = node.children[idx];
+            int common = commonPrefix(child.edge, key, i);
+            if (common == child.edge.length()) {
+                node = child;
+                i += common;
+                continue;
+            }
+            // split: node -> mid(common) -> child(rest)
+            Node mid = new Node(child.edge.substring(0, common));
+            child.edge = child.edge.substring(common);
+            mid.children = new Node[]{child};
+            node.children[idx] = mid;
+            i += common;
+            if (i == key.length()) return mid;
+            Node leaf = new Node(key.substring(i));
+            addChild(mid, leaf);
+            return leaf;
+        }
+        return node;
+    }
+
+    /** Returns true when the caller should unlink {@code node} from its parent. */
+    private boolean removeKey(Node node, String key, int i, String bookId) {
+        if (i == key.length()) {
+            if (node.terminal != null) {
+                node.terminal.bookIds.remove(bookId);
+                if (node.terminal.bookIds.isEmpty()) node.terminal = null;
+            }
+        } else {
+            int idx = childIndex(node, key.charAt(i));
+            if (idx < 0) return false;
+            Node child = node.children[idx];
+            if (!key.startsWith(child.edge, i)) return false;
+            if (removeKey(child, key, i + child.edge.length(), bookId)) {
+                removeChild(node, idx);
+            }
+        }
+        if (node == root) return false;
+        if (node.terminal == null && node.children.length == 0) return true;
+        if (node.terminal == null && node.children.length == 1) {
+            // merge the single child back into this edge to stay compressed
+            Node only = node.children[0];
+            node.edge = node.edge + only.edge;
+            node.children = only.children;
+            node.terminal = only.terminal;
+        }
+        return false;
+    }
+
+    /** Walk the prefix; it may end in the middle of an edge, in which case that child is the subtree. */
+    private Node descend(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int idx = childIndex(node, prefix.charAt(i));
+            if (idx < 0) return null;
+            Node child = node.children[idx];
+            int common = commonPrefix(child.edge, prefix, i);
+            if (i + common == prefix.length()) return child;
+            if (common < child.edge.length()) return null;
+            node = child;
+            i += common;
+        }
+        return node;
+    }
+
+    private static void collect(Node node, List<Terminal> out) {
+        if (node.terminal != null) out.add(node.terminal);
+        for (Node c : node.children) collect(c, out);
+    }
+
+    private static int childIndex(Node node, char c) {
+        Node[] ch = node.children;
+        int lo = 0, hi = ch.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = ch[mid].edge.charAt(0);
+            if (m < c) lo = mid + 1;
+            else if (m > c) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private static void addChild(Node parent, Node child) {
+        Node[] ch = parent.children;
+        char c = child.edge.charAt(0);
+        int pos = 0;
+        while (pos < ch.length && ch[pos].edge.charAt(0) < c) pos++;
+        Node[] out = Arrays.copyOf(ch, ch.length + 1);
+        System.arraycopy(ch, pos, out, pos + 1, ch.length - pos);
+        out[pos] = child;
+        parent.children = out;
+    }
+
+    private static void removeChild(Node parent, int idx) {
+        Node[] ch = parent.children;
+        if (ch.length == 1) {
+            parent.children = NO_CHILDREN;
+            return;
+        }
+        Node[] out = new Node[ch.length - 1];
+        System.arraycopy(ch, 0, out, 0, idx);
+        System.arraycopy(ch, idx + 1, out, idx, ch.length - idx - 1);
+        parent.children = out;
+    }
+
+    private static int commonPrefix(String edge, String key, int from) {
+        int n = Math.min(edge.length(), key.length() - from);
+        int i = 0;
+        while (i < n && edge.charAt(i) == key.charAt(from + i)) i++;
+        return i;
+    }
+}
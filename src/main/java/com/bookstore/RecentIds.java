@@ -0,0 +1,142 @@
+package com.bookstore;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Most-recent-first list of book ids with a fixed capacity, kept by BrowsingHistoryService.
+ *
+ * Same slot layout as {@link BrowsingHistory}: a fixed array of slots linked by index plus an
+ * id -> slot map, so a view is O(1) and a full list reuses its oldest slot. Only ids are kept;
+ * books are resolved when the history is read. Reads return an immutable snapshot without
+ * locking; it is rebuilt at most once per change.
+ *
+ * A list created by a view before the stored history was read is not "loaded"; the stored ids
+ * are appended behind the new ones once they arrive ({@link #appendOlder}).
+ */
+final class RecentIds {
+    private static final int NONE = -1;
+    // Rough heap cost with compressed oops: the object, its three arrays and the empty map shell,
+    // then per slot and per id (HashMap node + table slot). Strings: header + hash + Latin-1 bytes.
+    private static final int FIXED_BYTES = 96;
+    private static final int SLOT_BYTES = 12;
+    private static final int ID_BYTES = 36;
+    private static final int STRING_BYTES = 40;
+
+    private final int capacity;
+    private final String[] ids;
+    private final int[] prev;
+    private final int[] next;
+    private final Map<String, Integer> slotById;
+    private int head = NONE;
+    private int tail = NONE;
+    private int used;
+    private int idBytes;
+    private volatile boolean loaded;
+    private volatile List<String> recent = List.of();   // null = stale
+
+    RecentIds(int capacity, boolean loaded) {
+        this.capacity = capacity;
+        this.loaded = loaded;
+        this.ids = new String[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        this.slotById = new HashMap<>(capacity * 2);
+    }
+
+    /** Move the id to the front, adding it (and evicting the oldest when full) if new. */
+    synchronized void view(String id) {
+        Integer existing = slotById.get(id);
+        int slot;
+        if (existing != null) {
+            slot = existing;
+            if (slot == head) return;
+            unlink(slot);
+        } else {
+            if (used < capacity) {
+                slot = used++;
+            } else {
+                slot = tail;                       // evict the oldest, reuse its slot
+                unlink(slot);
+                slotById.remove(ids[slot]);
+                idBytes -= ID_BYTES + stringBytes(ids[slot]);
+            }
+            ids[slot] = id;
+            slotById.put(id, slot);
+            idBytes += ID_BYTES + stringBytes(id);
+        }
+        linkFirst(slot);
+        recent = null;
+    }
+
+    /** Merge the stored history behind what was viewed since, once; later calls are no-ops. */
+    synchronized void appendOlder(List<String> stored) {
+        if (loaded) return;
+        loaded = true;
+        for (String id : stored) {
+            if (used == capacity) break;
+            if (id == null || slotById.containsKey(id)) continue;
+            int slot = used++;
+            ids[slot] = id;
+            slotById.put(id, slot);
+            idBytes += ID_BYTES + stringBytes(id);
+            linkLast(slot);
+        }
+        recent = null;
+    }
+
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    List<String> recent() {
+        List<String> r = recent;
+        return r != null ? r : buildRecent();
+    }
+
+    /** Estimated heap retained by this list and the user key it is stored under. */
+    synchronized int retainedBytes(String user) {
+        return FIXED_BYTES + capacity * SLOT_BYTES + idBytes + stringBytes(user);
+    }
+
+    // -------------------------------
+    // internals
+    // -------------------------------
+
+    private synchronized List<String> buildRecent() {
+        if (recent == null) {
+            String[] out = new String[used];
+            int i = 0;
+            for (int s = head; s != NONE; s = next[s]) out[i++] = ids[s];
+            recent = List.of(out);
+        }
+        return recent;
+    }
+
+    private void unlink(int slot) {
+        int p = prev[slot], n = next[slot];
+        if (p != NONE) next[p] = n; else head = n;
+        if (n != NONE) prev[n] = p; else tail = p;
+    }
+
+    private void linkFirst(int slot) {
+        prev[slot] = NONE;
+        next[slot] = head;
+        if (head != NONE) prev[head] = slot;
+        head = slot;
+        if (tail == NONE) tail = slot;
+    }
+
+    private void linkLast(int slot) {
+        next[slot] = NONE;
+        prev[slot] = tail;
+        if (tail != NONE) next[tail] = slot;
+        tail = slot;
+        if (head == NONE) head = slot;
+    }
+
+    private static int stringBytes(String s) {
+        return s == null ? 0 : STRING_BYTES + s.length();
+    }
+}
@@ -30,6 +30,11 @@ public class Recommendation {
     public String getReason() { return reason; }
     public void setReason(String reason) { this.reason = reason; }
 
+    /** The book as saved with this recommendation (id and title only); null without a book id. */
+    public Book toBook() {
+        return bookId == null ? null : new Book(bookId, title, null, null, null, null);
+    }
+
     @Override
     public String toString() {
         return String.format("%d. %s (bookId=%s) %s",
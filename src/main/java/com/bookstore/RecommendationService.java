@@ -1,7 +1,9 @@
 package com.bookstore;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
 
 public class RecommendationService {
     private final RecommendationRepository repository;
@@ -14,6 +16,22 @@ public class RecommendationService {
         return repository.findRecommendationsForUser(userId, limit);
     }
 
+    /**
+     * Saved recommendations resolved to live books (current price and stock) with one batched
+     * lookup, in rank order. Books no longer in the catalogue are skipped.
+     */
+    public List<Book> recommendForUser(String userId, int limit,
+                                       Function<List<String>, List<Book>> booksInOrder) {
+        if (userId == null || limit <= 0) return List.of();
+        List<Recommendation> top = repository.getTopRecommendations(userId, limit);
+        if (top == null || top.isEmpty()) return List.of();
+        List<String> ids = new ArrayList<>(top.size());
+        for (Recommendation r : top) {
+            if (r != null && r.getBookId() != null) ids.add(r.getBookId());
+        }
+        return ids.isEmpty() ? List.of() : booksInOrder.apply(ids);
+    }
+
     // convenience if used by demos/tests
     public List<Book> recommendForUser(String userId) {
         return recommendForUser(userId, 5);
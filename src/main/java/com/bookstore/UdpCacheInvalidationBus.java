@@ -0,0 +1,148 @@
+package com.bookstore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Invalidation bus over plain UDP datagrams between a fixed list of peers.
+ *
+ * - Message = "BKINV1\n" + origin node id + "\n" + one book id per line
+ * - Large id lists are split so each datagram stays under {@link #MAX_PAYLOAD} bytes
+ * - A receiver thread hands ids from other origins to the subscribers; a node listed
+ *   among its own peers ignores its echo
+ *
+ * Works on loopback with port 0 (ephemeral), which is how it is tested.
+ */
+public class UdpCacheInvalidationBus implements CacheInvalidationBus {
+
+    static final int MAX_PAYLOAD = 1200;
+    private static final String MAGIC = "BKINV1";
+
+    private final String origin = UUID.randomUUID().toString();
+    private final DatagramSocket socket;
+    private final List<InetSocketAddress> peers;
+    private final List<Consumer<List<String>>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread receiver;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+
+    public UdpCacheInvalidationBus(int port, List<InetSocketAddress> peers) {
+        try {
+            this.socket = new DatagramSocket(port);
+        } catch (SocketException e) {
+            throw new UncheckedIOException("Cannot bind cache invalidation port " + port, e);
+        }
+        this.peers = List.copyOf(peers);
+        this.receiver = new Thread(this::receive, "cache-invalidation-rx");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /** Parse "host:port,host:port" (blank entries ignored). */
+    public static List<InetSocketAddress> parsePeers(String peers) {
+        List<InetSocketAddress> out = new ArrayList<>();
+        if (peers == null) return out;
+        for (String p : peers.split(",")) {
+            String s = p.trim();
+            if (s.isEmpty()) continue;
+            int colon = s.lastIndexOf(':');
+            if (colon <= 0) throw new IllegalArgumentException("Peer must be host:port: " + s);
+            out.add(new InetSocketAddress(s.substring(0, colon), Integer.parseInt(s.substring(colon + 1))));
+        }
+        return out;
+    }
+
+    public int localPort() {
+        return socket.getLocalPort();
+    }
+
+    public long sentCount() { return sent.sum(); }
+    public long receivedCount() { return received.sum(); }
+
+    @Override
+    public void publish(Collection<String> bookIds) {
+        if (bookIds == null || bookIds.isEmpty() || peers.isEmpty()) return;
+        for (byte[] payload : encode(bookIds)) {
+            for (InetSocketAddress peer : peers) {
+                try {
+                    socket.send(new DatagramPacket(payload, payload.length, peer));
+                    sent.increment();
+                } catch (IOException e) {
+                    System.err.println("Cache invalidation to " + peer + " failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<List<String>> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        socket.close(); // unblocks receive()
+    }
+
+    // -------------------------------
+    // internals
+    // -------------------------------
+
+    private List<byte[]> encode(Collection<String> bookIds) {
+        String header = MAGIC + "\n" + origin;
+        List<byte[]> out = new ArrayList<>();
+        StringBuilder sb = new StringBuilder(header);
+        int size = header.length();
+        for (String id : bookIds) {
+            if (id == null || id.isEmpty()) continue;
+            int idBytes = id.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (size + idBytes > MAX_PAYLOAD && sb.length() > header.length()) {
+                out.add(sb.toString().getBytes(StandardCharsets.UTF_8));
+                sb = new StringBuilder(header);
+                size = header.length();
+            }
+            sb.append('\n').append(id);
+            size += idBytes;
+        }
+        if (sb.length() > header.length()) out.add(sb.toString().getBytes(StandardCharsets.UTF_8));
+        return out;
+    }
+
+    private void receive() {
+        byte[] buf = new byte[65_507];
+        while (!socket.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buf, buf.length);
+            try {
+                socket.receive(packet);
+            } catch (IOException e) {
+                if (socket.isClosed()) return;
+                System.err.println("Cache invalidation receive failed: " + e.getMessage());
+                continue;
+            }
+
+            String[] lines = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8).split("\n");
+            if (lines.length < 3 || !MAGIC.equals(lines[0]) || origin.equals(lines[1])) continue;
+            List<String> ids = List.of(lines).subList(2, lines.length);
+            received.increment();
+            for (Consumer<List<String>> l : listeners) {
+                try {
+                    l.accept(ids);
+                } catch (RuntimeException e) {
+                    System.err.println("Cache invalidation handler failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
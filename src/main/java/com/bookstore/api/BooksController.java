@@ -3,27 +3,46 @@ package com.bookstore.api;
 import com.bookstore.Book;
 import com.bookstore.BulkDeleteRequest;
 import com.bookstore.BulkUpdateRequest;
+import com.bookstore.BulkWriteResult;
 import com.bookstore.DeterministicId;
+import com.bookstore.PrefixSuggester;
 import com.bookstore.spring.BookServiceAdapter;
 import com.bookstore.spring.SessionAuth;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/books")
 public class BooksController {
 
+    private static final int EXPORT_BUFFER = 16 * 1024;
+
     private final BookServiceAdapter adapter;
     private final SessionAuth sessionAuth;
+    private final ObjectMapper objectMapper;
 
-    public BooksController(BookServiceAdapter adapter, SessionAuth sessionAuth) {
+    public BooksController(BookServiceAdapter adapter, SessionAuth sessionAuth, ObjectMapper objectMapper) {
         this.adapter = adapter;
         this.sessionAuth = sessionAuth;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
@@ -39,6 +58,14 @@ public class BooksController {
         return adapter.search(q);
     }
 
+    // Autocomplete: top-k title/author completions for the typed prefix
+    @GetMapping("/suggest")
+    public List<PrefixSuggester.Suggestion> suggest(
+            @RequestParam(value = "prefix", required = false, defaultValue = "") String prefix,
+            @RequestParam(value = "limit", required = false, defaultValue = "10") int limit) {
+        return adapter.suggest(prefix, Math.max(1, Math.min(limit, 50)));
+    }
+
     @GetMapping("/by-title")
     public List<Book> byTitle(@RequestParam("title") String title) {
         return adapter.findByTitle(title);
@@ -68,7 +95,6 @@ public class BooksController {
         if (!sessionAuth.isAdmin(session)) return ResponseEntity.status(403).body("Forbidden: admin only");
         if (books == null || books.isEmpty()) return ResponseEntity.badRequest().body("No books provided");
 
-        int count = 0;
         for (Book b : books) {
             if (b == null || b.getTitle() == null || b.getTitle().isBlank())
                 return ResponseEntity.badRequest().body("Each book needs a non-empty title");
@@ -80,11 +106,15 @@ public class BooksController {
 
             // Ensure ASIN
             b.ensureAsin();
-
-            adapter.save(b);
-            count++;
         }
-        return ResponseEntity.ok(Map.of("count", count));
+
+        // One batched pipeline (and one cache eviction) for the whole request
+        BulkWriteResult result = adapter.bulkUpsert(books);
+        return ResponseEntity.ok(Map.of(
+                "count", result.getSucceeded(),
+                "requested", books.size(),
+                "results", result.getItems()
+        ));
     }
 
     // ADMIN: Migrate existing books to have ASINs (run once)
@@ -100,6 +130,19 @@ public class BooksController {
         ));
     }
 
+    // ADMIN: Backfill the normalized title used by TitleLowerIndex (run once after upgrading)
+    @PostMapping("/migrate-title-index")
+    public ResponseEntity<?> migrateTitleIndex(HttpSession session) {
+        if (!sessionAuth.isAdmin(session))
+            return ResponseEntity.status(403).body("Forbidden: admin only");
+
+        int updated = adapter.migrateToNormalizedTitle();
+        return ResponseEntity.ok(Map.of(
+                "message", "Migration complete",
+                "booksUpdated", updated
+        ));
+    }
+
     // NEW: Get book by ASIN
     @GetMapping("/asin/{asin}")
     public ResponseEntity<Book> getByAsin(@PathVariable String asin) {
@@ -147,11 +190,12 @@ public class BooksController {
             return ResponseEntity.badRequest().body("No updates provided");
         }
 
-        int updated = adapter.bulkUpdate(request.getUpdates());
+        BulkWriteResult result = adapter.bulkUpdate(request.getUpdates());
         return ResponseEntity.ok(Map.of(
                 "message", "Bulk update complete",
-                "updated", updated,
-                "requested", request.getUpdates().size()
+                "updated", result.count(BulkWriteResult.Status.UPDATED),
+                "requested", request.getUpdates().size(),
+                "results", result.getItems()
         ));
     }
 
@@ -166,68 +210,96 @@ public class BooksController {
             return ResponseEntity.badRequest().body("No IDs or ASINs provided");
         }
 
-        int deleted = adapter.bulkDelete(request.getIds(), request.getAsins());
+        BulkWriteResult result = adapter.bulkDelete(request.getIds(), request.getAsins());
         return ResponseEntity.ok(Map.of(
                 "message", "Bulk delete complete",
-                "deleted", deleted
+                "deleted", result.count(BulkWriteResult.Status.DELETED),
+                "requested", result.size(),
+                "results", result.getItems()
         ));
     }
 
-    // ADMIN: Download catalog with filters (JSON)
+    // ADMIN: Download catalog with filters (JSON), streamed page by page
     @GetMapping("/export/json")
-    public ResponseEntity<?> exportJson(
+    public ResponseEntity<StreamingResponseBody> exportJson(
             HttpSession session,
             @RequestParam(required = false) String genre,
             @RequestParam(required = false) String author,
             @RequestParam(required = false) Integer minStock,
-            @RequestParam(required = false) Integer maxStock) {
+            @RequestParam(required = false) Integer maxStock,
+            @RequestParam(required = false, defaultValue = "false") boolean gzip) {
 
         if (!sessionAuth.isAdmin(session))
-            return ResponseEntity.status(403).body("Forbidden: admin only");
-
-        List<Book> books = adapter.filterBooks(genre, author, minStock, maxStock);
+            return forbiddenExport();
+
+        ObjectWriter bookWriter = objectMapper.writerFor(Book.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(exportStream(out, gzip))) {
+                json.writeStartArray();
+                adapter.forEachFiltered(genre, author, minStock, maxStock, book -> {
+                    try {
+                        bookWriter.writeValue(json, book);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                json.writeEndArray();
+            }
+        };
 
-        return ResponseEntity.ok()
-                .header("Content-Disposition", "attachment; filename=catalog.json")
-                .header("Content-Type", "application/json")
-                .body(books);
+        return exportResponse("catalog.json", "application/json", gzip, body);
     }
 
-    // ADMIN: Download catalog as CSV
+    // ADMIN: Download catalog as CSV, streamed page by page
     @GetMapping("/export/csv")
-    public ResponseEntity<?> exportCsv(
+    public ResponseEntity<StreamingResponseBody> exportCsv(
             HttpSession session,
             @RequestParam(required = false) String genre,
             @RequestParam(required = false) String author,
             @RequestParam(required = false) Integer minStock,
-            @RequestParam(required = false) Integer maxStock) {
+            @RequestParam(required = false) Integer maxStock,
+            @RequestParam(required = false, defaultValue = "false") boolean gzip) {
 
         if (!sessionAuth.isAdmin(session))
-            return ResponseEntity.status(403).body("Forbidden: admin only");
+            return forbiddenExport();
+
+        StreamingResponseBody body = out -> {
+            try (Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(exportStream(out, gzip), StandardCharsets.UTF_8), EXPORT_BUFFER)) {
+                CatalogCsvWriter csv = new CatalogCsvWriter(writer);
+                csv.writeHeader();
+                adapter.forEachFiltered(genre, author, minStock, maxStock, book -> {
+                    try {
+                        csv.writeRow(book);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
 
-        List<Book> books = adapter.filterBooks(genre, author, minStock, maxStock);
-
-        // Convert to CSV
-        StringBuilder csv = new StringBuilder();
-        csv.append("ASIN,ID,Title,Author,Genre,Price,Stock,ISBN\n");
-
-        for (Book book : books) {
-            csv.append(String.format("\"%s\",\"%s\",\"%s\",\"%s\",\"%s\",%.2f,%d,\"%s\"\n",
-                    book.getAsin() != null ? book.getAsin() : "",
-                    book.getId() != null ? book.getId() : "",
-                    book.getTitle() != null ? book.getTitle().replace("\"", "\"\"") : "",
-                    book.getAuthor() != null ? book.getAuthor().replace("\"", "\"\"") : "",
-                    book.getGenre() != null ? book.getGenre() : "",
-                    book.getPrice() != null ? book.getPrice() : 0.0,
-                    book.getStockQuantity() != null ? book.getStockQuantity() : 0,
-                    book.getIsbn() != null ? book.getIsbn() : ""
-            ));
-        }
+        return exportResponse("catalog.csv", "text/csv", gzip, body);
+    }
+
+    // Streaming endpoints need a streaming body on every path, including the 403
+    private static ResponseEntity<StreamingResponseBody> forbiddenExport() {
+        return ResponseEntity.status(403)
+                .header("Content-Type", "text/plain")
+                .body(out -> out.write("Forbidden: admin only".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static OutputStream exportStream(OutputStream out, boolean gzip) throws IOException {
+        return gzip ? new GZIPOutputStream(out, EXPORT_BUFFER) : out;
+    }
 
+    private static ResponseEntity<StreamingResponseBody> exportResponse(String filename, String contentType,
+                                                                        boolean gzip, StreamingResponseBody body) {
         return ResponseEntity.ok()
-                .header("Content-Disposition", "attachment; filename=catalog.csv")
-                .header("Content-Type", "text/csv")
-                .body(csv.toString());
+                .header("Content-Disposition", "attachment; filename=" + filename + (gzip ? ".gz" : ""))
+                .header("Content-Type", gzip ? "application/gzip" : contentType)
+                .body(body);
     }
 
 }
\ No newline at end of file
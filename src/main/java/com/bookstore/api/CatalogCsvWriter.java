@@ -0,0 +1,64 @@
+package com.bookstore.api;
+
+import com.bookstore.Book;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Minimal CSV writer for catalog exports.
+ * Writes straight into the (buffered) writer: no per-row String.format or intermediate strings.
+ * Text columns are always quoted, with embedded quotes doubled.
+ */
+class CatalogCsvWriter {
+
+    static final String HEADER = "ASIN,ID,Title,Author,Genre,Price,Stock,ISBN\n";
+
+    private final Writer out;
+
+    CatalogCsvWriter(Writer out) {
+        this.out = out;
+    }
+
+    void writeHeader() throws IOException {
+        out.write(HEADER);
+    }
+
+    void writeRow(Book book) throws IOException {
+        quoted(book.getAsin());
+        out.write(',');
+        quoted(book.getId());
+        out.write(',');
+        quoted(book.getTitle());
+        out.write(',');
+        quoted(book.getAuthor());
+        out.write(',');
+        quoted(book.getGenre());
+        out.write(',');
+        BigDecimal price = book.getPrice() != null ? book.getPrice() : BigDecimal.ZERO;
+        out.write(price.setScale(2, RoundingMode.HALF_UP).toPlainString());
+        out.write(',');
+        out.write(Integer.toString(book.getStockQuantity() != null ? book.getStockQuantity() : 0));
+        out.write(',');
+        quoted(book.getIsbn());
+        out.write('\n');
+    }
+
+    private void quoted(String value) throws IOException {
+        out.write('"');
+        if (value != null) {
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) == '"') {
+                    out.write(value, start, i - start + 1);
+                    out.write('"');
+                    start = i + 1;
+                }
+            }
+            out.write(value, start, value.length() - start);
+        }
+        out.write('"');
+    }
+}
@@ -1,20 +1,30 @@
 package com.bookstore.config;
 
+import com.bookstore.CacheInvalidationBus;
+import com.bookstore.UdpCacheInvalidationBus;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.support.NullValue;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
+    // books.cache.ttl-minutes can be raised a lot once replicas share a cache.invalidation bus
     @Bean
-    public CacheManager cacheManager() {
+    public CacheManager cacheManager(@Value("${books.cache.ttl-minutes:10}") long ttlMinutes,
+                                     @Value("${books.cache.lookup-ttl-seconds:300}") long lookupTtlSeconds,
+                                     @Value("${books.cache.negative-ttl-seconds:30}") long negativeTtlSeconds) {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
 
         // ✅ Explicitly register cache names
@@ -23,9 +33,51 @@ public class CacheConfig {
         // ✅ Configure Caffeine cache settings (optional but recommended)
         cacheManager.setCaffeine(Caffeine.newBuilder()
                 .maximumSize(1000)  // Max 1000 entries per cache
-                .expireAfterWrite(10, TimeUnit.MINUTES)  // Auto-expire after 10 minutes
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)  // Auto-expire (default 10 minutes)
                 .recordStats());  // Enable statistics for monitoring
 
+        // ASIN → id and title → ids lookups; "not found" answers are kept for a shorter time
+        cacheManager.registerCustomCache("bookIdByAsin",
+                lookupCache(Duration.ofSeconds(lookupTtlSeconds), Duration.ofSeconds(negativeTtlSeconds)));
+        cacheManager.registerCustomCache("bookIdsByTitle",
+                lookupCache(Duration.ofSeconds(lookupTtlSeconds), Duration.ofSeconds(negativeTtlSeconds)));
+
         return cacheManager;
     }
+
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> lookupCache(Duration ttl, Duration negativeTtl) {
+        return Caffeine.newBuilder()
+                .maximumSize(50_000)
+                .expireAfter(new Expiry<Object, Object>() {
+                    @Override
+                    public long expireAfterCreate(Object key, Object value, long currentTime) {
+                        boolean negative = value instanceof NullValue || (value instanceof Collection<?> c && c.isEmpty());
+                        return (negative ? negativeTtl : ttl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    // cache.invalidation.transport: none (single node) or udp (peers listed in cache.invalidation.udp.peers)
+    @Bean
+    public CacheInvalidationBus cacheInvalidationBus(
+            @Value("${cache.invalidation.transport:none}") String transport,
+            @Value("${cache.invalidation.udp.port:47800}") int port,
+            @Value("${cache.invalidation.udp.peers:}") String peers) {
+        if ("udp".equalsIgnoreCase(transport)) {
+            return new UdpCacheInvalidationBus(port, UdpCacheInvalidationBus.parsePeers(peers));
+        }
+        return CacheInvalidationBus.none();
+    }
 }
\ No newline at end of file
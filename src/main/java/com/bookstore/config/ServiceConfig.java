@@ -1,9 +1,15 @@
 package com.bookstore.config;
 
 import com.bookstore.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.nio.file.Path;
+import java.time.Duration;
 
 @Configuration
 public class ServiceConfig {
@@ -13,14 +19,69 @@ public class ServiceConfig {
         return new InMemoryUserRepository();
     }
 
+    // orders.store=dynamodb (default) survives restarts; journal keeps them in memory backed by a
+    // local fsynced log; memory is for demos and tests. Every store feeds the co-purchase index.
+    @Bean
+    public OrderRepository orderRepository(
+            @Value("${orders.store:dynamodb}") String store,
+            @Value("${dynamodb.table.orders:Orders}") String tableName,
+            @Value("${dynamodb.table.units-sold:BookUnitsSold}") String unitsSoldTable,
+            @Value("${orders.units-sold.refresh-seconds:60}") long unitsSoldRefreshSeconds,
+            @Value("${orders.units-sold.full-refresh-minutes:360}") long unitsSoldFullRefreshMinutes,
+            @Value("${orders.journal.dir:data/orders}") String journalDir,
+            @Value("${orders.journal.snapshot-every:50000}") int snapshotEvery,
+            @Value("${recommendations.copurchase.bootstrap:true}") boolean bootstrapCoPurchases,
+            DynamoDbClient client,
+            DynamoDbEnhancedClient enhancedClient,
+            CoPurchaseIndex coPurchaseIndex) {
+        OrderRepository orders;
+        if ("memory".equalsIgnoreCase(store)) {
+            orders = new InMemoryOrderRepository();
+        } else if ("journal".equalsIgnoreCase(store)) {
+            orders = new JournaledOrderRepository(Path.of(journalDir), snapshotEvery);
+        } else {
+            orders = new DynamoDbOrderRepository(client, enhancedClient, tableName, unitsSoldTable,
+                    unitsSoldRefreshSeconds, unitsSoldFullRefreshMinutes);
+        }
+        if (bootstrapCoPurchases) coPurchaseIndex.bootstrapAsync(orders);
+        return new CoPurchaseRecordingOrderRepository(orders, coPurchaseIndex);
+    }
+
+    // bought-together counts from orders; users with new purchases get their lists saved
+    // to the recommendations table every recommendations.copurchase.persist-minutes
+    @Bean
+    public CoPurchaseIndex coPurchaseIndex(
+            RecommendationRepository recommendationRepository,
+            @Value("${recommendations.copurchase.persist-minutes:5}") long persistMinutes) {
+        CoPurchaseIndex index = new CoPurchaseIndex();
+        index.startPersisting(recommendationRepository, persistMinutes, 10);
+        return index;
+    }
+
+    // browsing.history.store=dynamodb (default) keeps signed-in users' histories across restarts
+    // and replicas; memory keeps them on this node only
+    @Bean
+    public BrowsingHistoryRepository browsingHistoryRepository(
+            @Value("${browsing.history.store:dynamodb}") String store,
+            @Value("${dynamodb.table.history:BrowsingHistory}") String tableName,
+            DynamoDbClient client) {
+        if ("memory".equalsIgnoreCase(store)) {
+            return BrowsingHistoryRepository.none();
+        }
+        return new DynamoDbBrowsingHistoryRepository(client, tableName);
+    }
+
     @Bean
-    public InMemoryOrderRepository orderRepository() {
-        return new InMemoryOrderRepository();
+    public InventoryReservations inventoryReservations(
+            @Value("${inventory.hold.ttl-seconds:120}") long ttlSeconds,
+            @Value("${inventory.hold.sweep-seconds:15}") long sweepSeconds) {
+        return new InventoryReservations(Duration.ofSeconds(ttlSeconds), Duration.ofSeconds(sweepSeconds));
     }
 
     @Bean
-    public CheckoutService checkoutService(InMemoryOrderRepository orderRepository, BookService bookService) {
-        return new CheckoutService(orderRepository, bookService);
+    public CheckoutService checkoutService(OrderRepository orderRepository, BookService bookService,
+                                           InventoryReservations inventoryReservations) {
+        return new CheckoutService(orderRepository, bookService, inventoryReservations);
     }
 
     @Bean
@@ -3,89 +3,527 @@ package com.bookstore.spring;
 import com.bookstore.Book;
 import com.bookstore.BookService;
 import com.bookstore.BulkUpdateRequest;
+import com.bookstore.BulkWriteResult;
+import com.bookstore.CacheInvalidationBus;
+import com.bookstore.OrderRepository;
+import com.bookstore.PrefixSuggester;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * Spring-managed adapter that wraps the legacy BookService (which creates its own DynamoDB client).
  * Keeps a single BookService instance for the Spring app and ensures it is closed on shutdown.
+ * Also owns the title/author autocomplete trie, updated alongside the caches.
+ *
+ * Writes no longer flush the caches: the touched ids are written through to booksById and
+ * patched into the cached booksAll list (see {@link #refresh}).
+ * While BookService is still serving its startup catalog snapshot, listAll/findById are
+ * answered from it; the caches are flushed once the background reconcile finishes.
+ *
+ * booksAll is built from BookService's in-memory search index, never by a table scan, so a
+ * reload costs no DynamoDB reads. Loads are single-flight (concurrent misses wait for one) and
+ * refreshed ahead: once older than books.cache.all-refresh-seconds the cached list is still
+ * served while one background rebuild replaces it. booksById loads are coalesced per id (sync = true).
+ * Load/coalesce/refresh counts are published as books.cache.all.* meters.
+ *
+ * Every write-through is also published on the {@link CacheInvalidationBus}; ids announced by
+ * other nodes are re-read into the search index and written through here the same way.
  */
 @Service("bookServiceAdapter")
-public class BookServiceAdapter {
+public class BookServiceAdapter implements MeterBinder {
 
     private final BookService bookService;
+    private final OrderRepository orderRepo;
+    private final CacheManager cacheManager;
+    private final CacheInvalidationBus invalidationBus;
+    private final LongAdder remoteInvalidations = new LongAdder();
+    private final PrefixSuggester suggester;
+    private final ScheduledExecutorService rescoreScheduler;
+    private static final String ALL_KEY = "all";
+    private final Object booksAllLock = new Object();
+    private long booksAllVersion; // guarded by booksAllLock, bumped by every patch/clear
+
+    /** Cached booksAll value: the immutable list plus when it was built. */
+    private record CatalogList(List<Book> books, long loadedAt) {}
+
+    private final long allRefreshNanos;
+    private final AtomicReference<CompletableFuture<List<Book>>> allLoad = new AtomicReference<>();
+    private final ExecutorService refreshExecutor;
+    private final LongAdder allLoads = new LongAdder();
+    private final LongAdder allCoalesced = new LongAdder();
+    private final LongAdder allRefreshes = new LongAdder();
+    private final LongAdder allStaleServed = new LongAdder();
 
     // GOOD - gets BookService from Spring (which uses proper endpoint)
-    public BookServiceAdapter(BookService bookService) {
+    public BookServiceAdapter(BookService bookService, OrderRepository orderRepo,
+                              CacheManager cacheManager,
+                              CacheInvalidationBus invalidationBus,
+                              @Value("${books.cache.all-refresh-seconds:60}") long allRefreshSeconds,
+                              @Value("${books.suggest.rescore-seconds:60}") long rescoreSeconds) {
         this.bookService = bookService;
+        this.orderRepo = orderRepo;
+        this.suggester = new PrefixSuggester(orderRepo::unitsSold);
+        this.cacheManager = cacheManager;
+        this.invalidationBus = invalidationBus;
+        this.allRefreshNanos = TimeUnit.SECONDS.toNanos(Math.max(0, allRefreshSeconds));
+        this.refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "books-all-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        // checkouts on this node rescore their books at once (refresh); this catches the rest
+        if (rescoreSeconds > 0) {
+            this.rescoreScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "suggest-rescore");
+                t.setDaemon(true);
+                return t;
+            });
+            rescoreScheduler.scheduleWithFixedDelay(() -> suggester.rescore(null),
+                    rescoreSeconds, rescoreSeconds, TimeUnit.SECONDS);
+        } else {
+            this.rescoreScheduler = null;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("books.cache.all.loads", allLoads, LongAdder::sum)
+                .description("Catalog loads (from the search index) run to fill or refresh booksAll").register(registry);
+        FunctionCounter.builder("books.cache.all.coalesced", allCoalesced, LongAdder::sum)
+                .description("booksAll misses that waited for an in-flight load instead of starting one").register(registry);
+        FunctionCounter.builder("books.cache.all.refreshes", allRefreshes, LongAdder::sum)
+                .description("Background refresh-ahead loads started").register(registry);
+        FunctionCounter.builder("books.cache.all.stale.served", allStaleServed, LongAdder::sum)
+                .description("booksAll hits served while a refresh was due").register(registry);
+        FunctionCounter.builder("books.cache.invalidations.received", remoteInvalidations, LongAdder::sum)
+                .description("Book ids invalidated by other nodes").register(registry);
+    }
+
+    @PostConstruct
+    public void buildSuggester() {
+        suggester.rebuild(bookService.indexedBooks());
+        bookService.onCatalogReloaded(this::catalogReloaded);
+        bookService.onIndexReconciled(this::applyIndexed);   // every node reconciles itself; no publish
+        invalidationBus.subscribe(this::onRemoteInvalidation);
     }
 
     // reads
-    @org.springframework.cache.annotation.Cacheable("booksAll")
+
+    /**
+     * Whole catalog through the booksAll cache. The cached list is immutable and write paths
+     * patch it copy-on-write; a load that overlapped a patch is returned but not cached.
+     * A miss joins the rebuild already in flight, if any; a hit past the refresh age is served
+     * as is and triggers one background rebuild from the search index.
+     */
     public List<Book> listAll() {
-        return bookService.listAllBooks();
+        Cache cache = cacheManager.getCache("booksAll");
+        Cache.ValueWrapper hit = cache == null ? null : cache.get(ALL_KEY);
+        if (hit != null && hit.get() instanceof CatalogList cached) {
+            if (System.nanoTime() - cached.loadedAt() >= allRefreshNanos) {
+                allStaleServed.increment();
+                refreshAllAsync();
+            }
+            return cached.books();
+        }
+        try {
+            return loadAllShared(null).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    // Single-flight: the first caller loads, everyone arriving meanwhile gets the same future
+    private CompletableFuture<List<Book>> loadAllShared(Executor executor) {
+        CompletableFuture<List<Book>> mine = new CompletableFuture<>();
+        CompletableFuture<List<Book>> running = allLoad.compareAndExchange(null, mine);
+        if (running != null) {
+            if (executor == null) allCoalesced.increment();
+            return running;
+        }
+        if (executor == null) {
+            loadAllInto(mine);
+        } else {
+            try {
+                executor.execute(() -> loadAllInto(mine));
+                allRefreshes.increment();
+            } catch (RejectedExecutionException e) {
+                allLoad.set(null); // shutting down; keep serving what we have
+                mine.completeExceptionally(e);
+            }
+        }
+        return mine;
     }
 
-    @org.springframework.cache.annotation.Cacheable(value = "booksById", key = "#id")
+    private void refreshAllAsync() {
+        loadAllShared(refreshExecutor);
+    }
+
+    private void loadAllInto(CompletableFuture<List<Book>> result) {
+        try {
+            long version;
+            synchronized (booksAllLock) {
+                version = booksAllVersion;
+            }
+            allLoads.increment();
+            List<Book> loaded = List.copyOf(bookService.indexedBooks());
+            Cache cache = cacheManager.getCache("booksAll");
+            if (cache != null) {
+                synchronized (booksAllLock) {
+                    if (version == booksAllVersion) cache.put(ALL_KEY, new CatalogList(loaded, System.nanoTime()));
+                }
+            }
+            allLoad.set(null);
+            result.complete(loaded);
+        } catch (RuntimeException e) {
+            allLoad.set(null);
+            result.completeExceptionally(e);
+        }
+    }
+
+    @org.springframework.cache.annotation.Cacheable(value = "booksById", key = "#id", sync = true)
     public Optional<Book> findById(String id) {
+        if (bookService.isServingSnapshot()) {
+            Book indexed = bookService.indexedBook(id);
+            if (indexed != null) return Optional.of(new Book(indexed));
+        }
         return Optional.ofNullable(bookService.getBookById(id));
     }
 
+    /**
+     * Many books at once through the same booksById cache as findById: hits come from the
+     * cache, all misses from one BatchGetItem (then cached, including "not found").
+     * Returns found books keyed by id, in request order.
+     */
+    public Map<String, Book> findAllById(Collection<String> ids) {
+        Cache cache = cacheManager.getCache("booksById");
+        Map<String, Book> found = new LinkedHashMap<>();
+        List<String> misses = new ArrayList<>();
+
+        for (String id : new LinkedHashSet<>(ids)) {
+            Cache.ValueWrapper hit = cache == null ? null : cache.get(id);
+            if (hit == null) {
+                misses.add(id);
+                found.put(id, null); // keep the slot so the result stays in request order
+            } else if (hit.get() instanceof Book b) {
+                found.put(id, b);
+            }
+        }
+
+        if (!misses.isEmpty() && bookService.isServingSnapshot()) {
+            misses.removeIf(id -> {
+                Book indexed = bookService.indexedBook(id);
+                if (indexed != null) found.put(id, new Book(indexed));
+                return indexed != null;
+            });
+        }
+        if (!misses.isEmpty()) {
+            Map<String, Book> loaded = bookService.getBooksByIds(misses);
+            for (String id : misses) {
+                Book b = loaded.get(id);
+                if (cache != null) cache.put(id, b);
+                if (b != null) found.put(id, b); else found.remove(id);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Live books for the ids as a list in id order (repeats kept), via findAllById;
+     * unknown ids are dropped.
+     */
+    public List<Book> findAllByIdInOrder(List<String> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<String, Book> found = findAllById(ids);
+        List<Book> out = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Book b = found.get(id);
+            if (b != null) out.add(b);
+        }
+        return out;
+    }
+
+    /**
+     * Exact-title lookup through the bookIdsByTitle cache (title → ids, empty list cached as a
+     * miss). Books themselves come from booksById. An entry whose books are gone or renamed
+     * is treated as a miss and re-queried.
+     */
+    @SuppressWarnings("unchecked")
     public List<Book> findByTitle(String title) {
-        return bookService.findByTitle(title);
+        Cache cache = cacheManager.getCache("bookIdsByTitle");
+        Cache.ValueWrapper hit = cache == null || title == null ? null : cache.get(title);
+        if (hit != null && hit.get() instanceof List<?> ids) {
+            Map<String, Book> found = findAllById((List<String>) ids);
+            if (found.size() == ids.size() && found.values().stream().allMatch(b -> title.equals(b.getTitle()))) {
+                return new ArrayList<>(found.values());
+            }
+        }
+
+        List<Book> books = bookService.findByTitle(title);
+        if (cache != null && title != null) {
+            cache.put(title, books.stream().map(Book::getId).toList());
+            cacheBooks(books);
+        }
+        return books;
     }
 
     public List<Book> search(String q) {
         return bookService.searchByTitleOrAuthorContains(q);
     }
 
+    /** Top-k title/author completions, most-ordered books first. */
+    public List<PrefixSuggester.Suggestion> suggest(String prefix, int limit) {
+        return suggester.suggest(prefix, limit);
+    }
+
     public int migrateToAsin() {
         return bookService.migrateExistingBooksToAsin();
     }
 
+    public int migrateToNormalizedTitle() {
+        return bookService.migrateExistingBooksToNormalizedTitle();
+    }
+
+    /**
+     * ASIN lookup through the bookIdByAsin cache (asin → id, null cached for unknown ASINs
+     * with a shorter TTL). A cached id whose book is gone or re-labelled is re-queried.
+     */
     public Book findByAsin(String asin) {
-        return bookService.getBookByAsin(asin);
+        Cache cache = cacheManager.getCache("bookIdByAsin");
+        Cache.ValueWrapper hit = cache == null || asin == null ? null : cache.get(asin);
+        if (hit != null) {
+            if (!(hit.get() instanceof String id)) return null; // known missing
+            Book b = findAllById(List.of(id)).get(id);
+            if (b != null && asin.equals(b.getAsin())) return b;
+        }
+
+        Book b = bookService.getBookByAsin(asin);
+        if (cache != null && asin != null) {
+            cache.put(asin, b == null ? null : b.getId());
+            if (b != null) cacheBooks(List.of(b));
+        }
+        return b;
     }
 
     public boolean deleteByAsin(String asin) {
-        return bookService.deleteByAsin(asin);
+        Book book = findByAsin(asin);
+        if (book == null) return false;
+        deleteById(book.getId());
+        return true;
     }
 
-    // writes (admin add/update/delete/bulk) → evict caches
-    @org.springframework.cache.annotation.CacheEvict(value={"booksAll","booksById"}, allEntries=true)
+    // writes (admin add/update/delete/bulk) → write through to the caches for the touched ids
     public void save(Book book) {
         // choose idempotent upsert to avoid duplicates when called from web
-        bookService.saveOrUpdateBookByTitle(book);
+        Book stored = bookService.saveOrUpdateBookByTitle(book);
+        Book saved = stored != null ? stored : book;
+        suggester.put(saved);
+        refresh(List.of(saved.getId()));
     }
 
-    @org.springframework.cache.annotation.CacheEvict(value={"booksAll","booksById"}, allEntries=true)
     public void deleteById(String id) {
         bookService.deleteBook(id);
+        suggester.remove(id);
+        refresh(List.of(id));
     }
 
     public int deleteByTitle(String title) {
-        return bookService.deleteByTitle(title);
+        List<Book> books = bookService.findByTitle(title);
+        for (Book book : books) deleteById(book.getId());
+        return books.size();
     }
 
     // Bulk operations
-    public int bulkUpdate(List<BulkUpdateRequest.BookUpdate> updates) {
-        return bookService.bulkUpdateBooks(updates);
+    public BulkWriteResult bulkUpsert(List<Book> books) {
+        BulkWriteResult result = bookService.bulkUpsertBooks(books);
+        List<String> touched = new ArrayList<>();
+        for (BulkWriteResult.ItemResult r : result.getItems()) {
+            if (r != null && r.isSuccess()) {
+                suggester.put(bookService.indexedBook(r.id()));
+                touched.add(r.id());
+            }
+        }
+        refresh(touched);
+        return result;
+    }
+
+    public BulkWriteResult bulkUpdate(List<BulkUpdateRequest.BookUpdate> updates) {
+        BulkWriteResult result = bookService.bulkUpdateBooks(updates);
+        List<String> touched = new ArrayList<>();
+        for (BulkWriteResult.ItemResult r : result.getItems()) {
+            if (r != null && r.isSuccess()) {
+                suggester.put(bookService.indexedBook(r.id()));
+                touched.add(r.id());
+            }
+        }
+        refresh(touched);
+        return result;
     }
 
-    public int bulkDelete(List<String> ids, List<String> asins) {
-        return bookService.bulkDeleteBooks(ids, asins);
+    public BulkWriteResult bulkDelete(List<String> ids, List<String> asins) {
+        BulkWriteResult result = bookService.bulkDeleteBooks(ids, asins);
+        List<String> touched = new ArrayList<>();
+        for (BulkWriteResult.ItemResult r : result.getItems()) {
+            if (r != null && r.isSuccess()) {
+                suggester.remove(r.id());
+                touched.add(r.id());
+            }
+        }
+        refresh(touched);
+        return result;
     }
 
     public List<Book> filterBooks(String genre, String author, Integer minStock, Integer maxStock) {
         return bookService.filterBooks(genre, author, minStock, maxStock);
     }
 
+    /** Streaming variant of filterBooks for exports: books are handed over page by page. */
+    public void forEachFiltered(String genre, String author, Integer minStock, Integer maxStock, Consumer<Book> sink) {
+        bookService.forEachBook(BookService.catalogFilter(genre, author, minStock, maxStock), sink);
+    }
+
+    /**
+     * Write-through for books changed on this node (admin writes, checkout stock): booksById
+     * gets a copy of each book as the search index now holds it, or loses the entry when the
+     * book is gone, and the cached booksAll list is patched copy-on-write. No table reads.
+     * The ids are then published so the other nodes do the same.
+     */
+    public void refresh(Collection<String> ids) {
+        suggester.rescore(ids);                 // a checkout sold these
+        List<String> touched = writeThrough(ids);
+        if (!touched.isEmpty()) invalidationBus.publish(touched);
+    }
+
+    // Another node wrote these books: re-read them, then update caches and suggester locally
+    private void onRemoteInvalidation(List<String> ids) {
+        remoteInvalidations.add(ids.size());
+        try {
+            bookService.reloadIndexed(ids);
+        } catch (RuntimeException e) {
+            // could not re-read: drop our copies so the next read goes to DynamoDB
+            System.err.println("Reload after remote invalidation failed: " + e.getMessage());
+            Cache byId = cacheManager.getCache("booksById");
+            Cache all = cacheManager.getCache("booksAll");
+            synchronized (booksAllLock) {
+                booksAllVersion++;
+                if (all != null) all.evict(ALL_KEY);
+            }
+            if (byId != null) ids.forEach(byId::evict);
+            return;
+        }
+        applyIndexed(ids);
+    }
+
+    // The index already holds the new state of these books: bring suggester and caches in line
+    private void applyIndexed(Collection<String> ids) {
+        for (String id : ids) {
+            Book b = bookService.indexedBook(id);
+            if (b != null) suggester.put(b); else suggester.remove(id);
+        }
+        writeThrough(ids);
+    }
+
+    private List<String> writeThrough(Collection<String> ids) {
+        Cache byId = cacheManager.getCache("booksById");
+        Map<String, Book> changed = new LinkedHashMap<>();
+        for (String id : ids) {
+            if (id == null) continue;
+            Book copy = bookService.indexedBook(id);
+            changed.put(id, copy);
+            if (byId != null) {
+                Cache.ValueWrapper old = byId.get(id);
+                if (old != null && old.get() instanceof Book before) evictLookups(before);
+                if (copy == null) byId.evict(id); else byId.put(id, copy);
+            }
+            if (copy != null) evictLookups(copy); // may replace a cached "not found"
+        }
+        if (!changed.isEmpty()) patchAll(changed);
+        return List.copyOf(changed.keySet());
+    }
+
+    // ASIN/title lookups that may name this book (stale positives are also caught on read)
+    private void evictLookups(Book b) {
+        Cache byAsin = cacheManager.getCache("bookIdByAsin");
+        Cache byTitle = cacheManager.getCache("bookIdsByTitle");
+        if (byAsin != null && b.getAsin() != null) byAsin.evict(b.getAsin());
+        if (byTitle != null && b.getTitle() != null) byTitle.evict(b.getTitle());
+    }
+
+    private void cacheBooks(Collection<Book> books) {
+        Cache byId = cacheManager.getCache("booksById");
+        if (byId == null) return;
+        for (Book b : books) byId.putIfAbsent(b.getId(), b);
+    }
+
+    // Replace/remove/append the changed books in a new booksAll list (null value = removed)
+    private void patchAll(Map<String, Book> changed) {
+        Cache cache = cacheManager.getCache("booksAll");
+        synchronized (booksAllLock) {
+            booksAllVersion++;
+            Cache.ValueWrapper hit = cache == null ? null : cache.get(ALL_KEY);
+            if (hit == null || !(hit.get() instanceof CatalogList current)) return;
+
+            Map<String, Book> pending = new LinkedHashMap<>(changed);
+            List<Book> next = new ArrayList<>(current.books().size() + pending.size());
+            for (Book b : current.books()) {
+                if (!pending.containsKey(b.getId())) {
+                    next.add(b);
+                } else {
+                    Book replacement = pending.remove(b.getId());
+                    if (replacement != null) next.add(replacement);
+                }
+            }
+            for (Book added : pending.values()) {
+                if (added != null) next.add(added);
+            }
+            cache.put(ALL_KEY, new CatalogList(Collections.unmodifiableList(next), current.loadedAt()));
+        }
+    }
+
+    // snapshot data may have been cached before the reconcile; start over from the table's view
+    private void catalogReloaded() {
+        synchronized (booksAllLock) {
+            booksAllVersion++;
+            for (String name : List.of("booksAll", "booksById")) {
+                Cache cache = cacheManager.getCache(name);
+                if (cache != null) cache.clear();
+            }
+        }
+        suggester.rebuild(bookService.indexedBooks());
+    }
+
     @PreDestroy
     public void shutdown() {
+        refreshExecutor.shutdownNow();
+        if (rescoreScheduler != null) rescoreScheduler.shutdownNow();
         try {
             bookService.close();
         } catch (Exception ignored) {}
@@ -1,24 +1,25 @@
 package com.bookstore.spring;
 
 import com.bookstore.Book;
-import com.bookstore.BookService;
 import com.bookstore.BrowsingHistoryService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/history")
 public class BrowsingHistoryController {
 
     private final BrowsingHistoryService historyService;
-    private final BookService bookService;
+    private final BookServiceAdapter books;
 
     public BrowsingHistoryController(BrowsingHistoryService historyService,
-                                     BookService bookService) {
+                                     BookServiceAdapter books) {
         this.historyService = historyService;
-        this.bookService = bookService;
+        this.books = books;
     }
 
     // accept only a bookId to avoid fragile JSON mapping issues
@@ -30,21 +31,24 @@ public class BrowsingHistoryController {
         if (req == null || req.bookId() == null || req.bookId().isBlank()) {
             return ResponseEntity.badRequest().body("Missing bookId");
         }
-        Book b = bookService.getBookById(req.bookId());
-        if (b == null) return ResponseEntity.badRequest().body("Book not found: " + req.bookId());
+        if (books.findById(req.bookId()).isEmpty()) {
+            return ResponseEntity.badRequest().body("Book not found: " + req.bookId());
+        }
 
         // use real username if logged in; else per-session guest key
         String username = (String) session.getAttribute("username");
-        String key = (username != null && !username.isBlank()) ? username : "guest:" + session.getId();
+        String key = (username != null && !username.isBlank()) ? username : BrowsingHistoryService.guestKey(session.getId());
 
-        historyService.view(key, b);
+        historyService.view(key, req.bookId());
         return ResponseEntity.ok().build();
     }
 
     @GetMapping
     public ResponseEntity<?> recent(HttpSession session) {
         String username = (String) session.getAttribute("username");
-        String key = (username != null && !username.isBlank()) ? username : "guest:" + session.getId();
-        return ResponseEntity.ok(historyService.getRecent(key));
+        String key = (username != null && !username.isBlank()) ? username : BrowsingHistoryService.guestKey(session.getId());
+        // history keeps ids only; books (live price/stock) come from the booksById cache
+        List<Book> recent = books.findAllByIdInOrder(historyService.getRecentIds(key));
+        return ResponseEntity.ok(recent);
     }
 }
\ No newline at end of file
@@ -1,43 +1,47 @@
 package com.bookstore.spring;
 
 import com.bookstore.Book;
-import com.bookstore.BookService;
 import com.bookstore.Cart;
 import com.bookstore.CheckoutService;
-import com.bookstore.InMemoryOrderRepository;
+import com.bookstore.OrderRepository;
+import com.bookstore.InventoryReservations;
 import com.bookstore.Order;
-import org.springframework.cache.CacheManager;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpSession;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Controller for cart preview and checkout.
  *
+ * Preview by a signed-in session places short stock holds (see InventoryReservations);
+ * checkout by the same session converts them. Anonymous previews only check stock, so
+ * an unauthenticated client can't lock up the catalog.
+ *
  * DTOs are declared as nested records to avoid separate files.
  */
 @RestController
 @RequestMapping("/api/cart")
 public class CartController {
 
-    private final BookService bookService;
+    private final BookServiceAdapter books;
     private final CheckoutService checkoutService;
-    private final InMemoryOrderRepository orderRepo;
-    private final CacheManager cacheManager;
+    private final OrderRepository orderRepo;
+    private final InventoryReservations reservations;
 
-    public CartController(BookService bookService,
+    public CartController(BookServiceAdapter books,
                           CheckoutService checkoutService,
-                          InMemoryOrderRepository orderRepo,
-                          CacheManager cacheManager) {
-        this.bookService = bookService;
+                          OrderRepository orderRepo,
+                          InventoryReservations reservations) {
+        this.books = books;
         this.checkoutService = checkoutService;
         this.orderRepo = orderRepo;
-        this.cacheManager = cacheManager;
+        this.reservations = reservations;
     }
 
     // Nested DTOs (keeps this file self-contained)
@@ -46,20 +50,24 @@ public class CartController {
 
     /**
      * Preview the cart: returns items (CartItem list) and total.
+     * Holds the previewed copies for a signed-in session until checkout or TTL expiry.
      * POST /api/cart/preview
      */
     @PostMapping("/preview")
-    public ResponseEntity<?> preview(@RequestBody CartRequest cartReq) {
+    public ResponseEntity<?> preview(HttpSession session, @RequestBody CartRequest cartReq) {
         if (cartReq == null || cartReq.items() == null) {
             return ResponseEntity.badRequest().body("Invalid cart payload");
         }
 
+        if (cartReq.items().stream().anyMatch(it -> it == null || it.bookId() == null)) {
+            return ResponseEntity.badRequest().body("Invalid cart item");
+        }
+        Map<String, Book> found = resolveBooks(cartReq);
+
         Cart cart = new Cart();
+        Map<String, Book> inCart = new LinkedHashMap<>();
         for (CartItemRequest it : cartReq.items()) {
-            if (it == null || it.bookId() == null) {
-                return ResponseEntity.badRequest().body("Invalid cart item");
-            }
-            Book b = bookService.getBookById(it.bookId());
+            Book b = found.get(it.bookId());
             if (b == null) return ResponseEntity.badRequest().body("Book not found: " + it.bookId());
 
             // Validate quantity
@@ -67,13 +75,26 @@ public class CartController {
                 return ResponseEntity.badRequest().body("Quantity must be >= 1 for " + b.getTitle());
             }
 
-            // Enforce stock at preview time (fail fast)
-            if (b.getStockQuantity() < it.quantity()) {
+            cart.addBook(b, it.quantity());
+            inCart.put(b.getId(), b);
+        }
+
+        // Enforce stock at preview time (fail fast), net of other sessions' holds
+        String holder = session.getId();
+        String username = (String) session.getAttribute("username");
+        boolean mayHold = username != null && !username.isBlank();
+        for (Book b : inCart.values()) {
+            int stock = b.getStockQuantity() == null ? 0 : b.getStockQuantity();
+            int wanted = cart.getItems().get(b.getId()).getQuantity();
+            boolean fits = mayHold
+                    ? reservations.hold(holder, b.getId(), wanted, stock)
+                    : stock - reservations.heldByOthers(b.getId(), holder) >= wanted;
+            if (!fits) {
+                reservations.release(holder);
                 return ResponseEntity.status(409).body("Insufficient stock for: " + b.getTitle());
             }
-
-            cart.addBook(b, it.quantity());
         }
+        if (mayHold) reservations.retain(holder, inCart.keySet());
 
         Map<String, Object> resp = new HashMap<>();
         resp.put("items", cart.getItems().values());
@@ -106,21 +127,24 @@ public class CartController {
             }
         }
 
+        if (cartReq.items().stream().anyMatch(it -> it == null || it.bookId() == null)) {
+            return ResponseEntity.badRequest().body("Invalid cart item");
+        }
+        Map<String, Book> found = resolveBooks(cartReq);
+
         Cart cart = new Cart();
         for (CartItemRequest it : cartReq.items()) {
-            if (it == null || it.bookId() == null) {
-                return ResponseEntity.badRequest().body("Invalid cart item");
-            }
-            Book b = bookService.getBookById(it.bookId());
+            Book b = found.get(it.bookId());
             if (b == null) return ResponseEntity.badRequest().body("Book not found: " + it.bookId());
             cart.addBook(b, it.quantity());
         }
 
+        List<String> bookIds = List.copyOf(cart.getItems().keySet()); // checkout empties the cart
         try {
-            Order order = checkoutService.checkout(username, cart);
+            Order order = checkoutService.checkout(username, cart, session.getId());
 
-            // Clear caches after successful checkout
-            clearBookCaches();
+            // Stock changed for these books only: write them through to the caches
+            books.refresh(bookIds);
 
             return ResponseEntity.ok(order);
         } catch (IllegalStateException ise) {
@@ -131,31 +155,11 @@ public class CartController {
     }
 
     /**
-     * Helper method to clear book-related caches.
-     * Called after checkout to ensure catalog shows updated stock.
+     * All cart books in one go: booksById cache hits plus a single BatchGetItem for misses.
+     * Stock itself is enforced by holds and the checkout transaction.
      */
-    private void clearBookCaches() {
-        try {
-            org.springframework.cache.Cache booksAllCache = cacheManager.getCache("booksAll");
-            org.springframework.cache.Cache booksByIdCache = cacheManager.getCache("booksById");
-
-            if (booksAllCache != null) {
-                booksAllCache.clear();
-                System.out.println("Cleared 'booksAll' cache");
-            } else {
-                System.out.println("'booksAll' cache not found");
-            }
-
-            if (booksByIdCache != null) {
-                booksByIdCache.clear();
-                System.out.println("Cleared 'booksById' cache");
-            } else {
-                System.out.println("'booksById' cache not found");
-            }
-        } catch (Exception e) {
-            System.err.println("Failed to clear cache: " + e.getMessage());
-            e.printStackTrace();
-            // Don't fail the checkout if cache clearing fails
-        }
+    private Map<String, Book> resolveBooks(CartRequest cartReq) {
+        List<String> ids = cartReq.items().stream().map(CartItemRequest::bookId).toList();
+        return books.findAllById(ids);
     }
 }
\ No newline at end of file
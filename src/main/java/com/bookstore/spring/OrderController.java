@@ -1,6 +1,6 @@
 package com.bookstore.spring;
 
-import com.bookstore.InMemoryOrderRepository;
+import com.bookstore.OrderRepository;
 import com.bookstore.Order;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.http.ResponseEntity;
@@ -12,26 +12,52 @@ import java.util.List;
 @RestController
 @RequestMapping("/api/orders")
 public class OrderController {
-    private final InMemoryOrderRepository repo;
+    private static final int MAX_PAGE = 200;
+    private static final int DEFAULT_PAGE = 50;
 
-    public OrderController(InMemoryOrderRepository repo) {
+    private final OrderRepository repo;
+
+    public OrderController(OrderRepository repo) {
         this.repo = repo;
     }
 
-    // admin/testing list of all orders
+    // admin/testing list of orders, newest first; a plain list of the newest DEFAULT_PAGE
+    // orders without paging params (never a full scan), an OrderPage when limit or cursor is given
     @GetMapping
-    public List<Order> list() {
-        return repo.findAll();
+    public ResponseEntity<?> list(@RequestParam(required = false) Integer limit,
+                                  @RequestParam(required = false) String cursor) {
+        if (limit == null && cursor == null) {
+            List<Order> orders = repo.findAll(DEFAULT_PAGE, null).orders();
+            return ResponseEntity.ok(orders);
+        }
+        try {
+            return ResponseEntity.ok(repo.findAll(clamp(limit == null ? DEFAULT_PAGE : limit), cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
-    // current user's orders
+    // current user's orders, newest first; paged when limit or cursor is given
     @GetMapping("/me")
-    public ResponseEntity<?> listMyOrders(HttpSession session) {
+    public ResponseEntity<?> listMyOrders(HttpSession session,
+                                          @RequestParam(required = false) Integer limit,
+                                          @RequestParam(required = false) String cursor) {
         String username = (String) session.getAttribute("username");
         if (username == null || username.isBlank()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("No user is logged in");
         }
-        List<Order> orders = repo.findByUser(username);
-        return ResponseEntity.ok(orders);
+        if (limit == null && cursor == null) {
+            List<Order> orders = repo.findByUser(username);
+            return ResponseEntity.ok(orders);
+        }
+        try {
+            return ResponseEntity.ok(repo.findByUser(username, clamp(limit == null ? 20 : limit), cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    private static int clamp(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE));
     }
-}
\ No newline at end of file
+}
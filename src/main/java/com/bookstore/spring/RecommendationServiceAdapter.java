@@ -2,57 +2,29 @@ package com.bookstore.spring;
 
 import com.bookstore.Book;
 import com.bookstore.RecommendationService;
+import org.springframework.stereotype.Service;
 
-import java.lang.reflect.Method;
-import java.util.Collections;
 import java.util.List;
 
 /**
- * Safe adapter that attempts to call a recommendation method on RecommendationService using reflection.
+ * Saved recommendations as live books: ids come from RecommendationService, books from the
+ * booksById cache (one batch for the whole list), so price and stock are current.
  */
+@Service
 public class RecommendationServiceAdapter {
     private final RecommendationService svc;
+    private final BookServiceAdapter books;
 
-    public RecommendationServiceAdapter(RecommendationService svc) {
+    public RecommendationServiceAdapter(RecommendationService svc, BookServiceAdapter books) {
         this.svc = svc;
+        this.books = books;
     }
 
-    @SuppressWarnings("unchecked")
-    public List<Book> recommendForUser(String user) {
-        if (svc == null) return Collections.emptyList();
-
-        String[] candidateNames = new String[] {
-                "recommendForUser",
-                "getRecommendationsForUser",
-                "recommendationsFor",
-                "getForUser",
-                "recommend",
-                "findRecommendations",
-                "getRecommendations"
-        };
-
-        for (String name : candidateNames) {
-            try {
-                Method m = svc.getClass().getMethod(name, String.class);
-                Object result = m.invoke(svc, user);
-                if (result instanceof List) {
-                    return (List<Book>) result;
-                }
-            } catch (NoSuchMethodException ignored) {
-            } catch (Exception e) {
-                System.err.println("Recommendation adapter: invocation of " + name + " failed: " + e.getMessage());
-            }
-        }
-
-        // Try zero-arg fallback
-        try {
-            Method m = svc.getClass().getMethod("getRecommendations");
-            Object result = m.invoke(svc);
-            if (result instanceof List) {
-                return (List<Book>) result;
-            }
-        } catch (Exception ignored) {}
+    public List<Book> recommendForUser(String user, int limit) {
+        return svc.recommendForUser(user, limit, books::findAllByIdInOrder);
+    }
 
-        return Collections.emptyList();
+    public List<Book> recommendForUser(String user) {
+        return recommendForUser(user, 5);
     }
-}
\ No newline at end of file
+}
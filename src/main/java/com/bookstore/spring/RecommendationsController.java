@@ -1,23 +1,25 @@
 package com.bookstore.spring;
 
 import com.bookstore.Book;
-import com.bookstore.RecommendationService;
-import com.bookstore.BookService; // for fallback picks
+import com.bookstore.CoPurchaseIndex;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/recommendations")
 public class RecommendationsController {
 
-    private final RecommendationService svc;
-    private final BookService bookService;
+    private final RecommendationServiceAdapter recommendations;
+    private final CoPurchaseIndex coPurchases;
+    private final BookServiceAdapter books;
 
-    public RecommendationsController(RecommendationService svc, BookService bookService) {
-        this.svc = svc;
-        this.bookService = bookService;
+    public RecommendationsController(RecommendationServiceAdapter recommendations, CoPurchaseIndex coPurchases, BookServiceAdapter books) {
+        this.recommendations = recommendations;
+        this.coPurchases = coPurchases;
+        this.books = books;
     }
 
     @GetMapping
@@ -31,13 +33,19 @@ public class RecommendationsController {
                 ? sessionUser
                 : (userParam != null && !userParam.isBlank() ? userParam : "demoUser");
 
-        List<Book> recs = svc.recommendForUser(user, limit);
-        // Optional: friendly fallback when no data present
-        if (recs == null || recs.isEmpty()) {
-            // pick top 'limit' books as a fallback (you can sort by stock, price, etc.)
-            List<Book> all = bookService.listAllBooks();
-            recs = all.stream().limit(limit).toList();
-        }
+        List<Book> recs = recommendations.recommendForUser(user, limit);
+        // saved lists lag behind by up to one persist interval: ask the live index, then best sellers
+        if (recs.isEmpty()) recs = books.findAllByIdInOrder(coPurchases.forUser(user, limit));
+        if (recs.isEmpty()) recs = books.findAllByIdInOrder(coPurchases.bestSellers(limit));
+        if (recs.isEmpty()) recs = books.listAll().stream().limit(limit).toList();
         return ResponseEntity.ok(recs);
     }
-}
\ No newline at end of file
+
+    /** "Bought together": one book (?bookId=) or a whole cart (repeat bookId). */
+    @GetMapping("/similar")
+    public ResponseEntity<List<Book>> similar(
+            @RequestParam(name = "bookId") List<String> bookIds,
+            @RequestParam(name = "limit", required = false, defaultValue = "5") int limit) {
+        return ResponseEntity.ok(books.findAllByIdInOrder(coPurchases.similar(bookIds, Math.max(0, Math.min(limit, 50)))));
+    }
+}
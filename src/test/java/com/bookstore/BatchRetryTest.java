@@ -0,0 +1,53 @@
+package com.bookstore;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRetryTest {
+
+    @Test
+    void testUntilProcessed_retriesOnlyWhatIsLeft() {
+        List<List<String>> calls = new ArrayList<>();
+        BatchRetry.Outcome<List<String>> outcome = BatchRetry.untilProcessed(List.of("a", "b", "c"), List::isEmpty,
+                pending -> {
+                    calls.add(pending);
+                    return pending.subList(1, pending.size());   // one item lands per call
+                });
+
+        assertEquals(List.of(List.of("a", "b", "c"), List.of("b", "c"), List.of("c")), calls);
+        assertTrue(outcome.remaining().isEmpty());
+        assertNull(outcome.error());
+    }
+
+    @Test
+    void testUntilProcessed_givesUpAfterMaxAttempts() {
+        AtomicInteger calls = new AtomicInteger();
+        BatchRetry.Outcome<List<String>> outcome = BatchRetry.untilProcessed(List.of("a"), List::isEmpty,
+                pending -> {
+                    calls.incrementAndGet();
+                    return pending;                                   // throttled every time
+                });
+
+        assertEquals(BatchRetry.MAX_ATTEMPTS, calls.get());
+        assertEquals(List.of("a"), outcome.remaining());
+        assertNull(outcome.error());
+    }
+
+    @Test
+    void testUntilProcessed_reportsFailureWithPendingWork() {
+        RuntimeException down = new RuntimeException("down");
+        BatchRetry.Outcome<List<String>> outcome = BatchRetry.untilProcessed(List.of("a", "b"), List::isEmpty,
+                pending -> {
+                    if (pending.size() == 1) throw down;
+                    return pending.subList(1, pending.size());
+                });
+
+        assertSame(down, outcome.error());
+        assertEquals(List.of("b"), outcome.remaining());
+    }
+}
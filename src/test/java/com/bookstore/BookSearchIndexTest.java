@@ -0,0 +1,155 @@
+package com.bookstore;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+    private Book cleanCode, patterns, pragmatic;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex();
+        cleanCode = new Book("1", "Clean Code", "Robert C. Martin", "Programming", new BigDecimal("35.50"), 10);
+        patterns = new Book("2", "Design Patterns", "Erich Gamma", "Programming", new BigDecimal("42.00"), 5);
+        pragmatic = new Book("3", "The Pragmatic Programmer", "Andrew Hunt", "Programming", new BigDecimal("40.00"), 3);
+        index.rebuild(List.of(cleanCode, patterns, pragmatic));
+    }
+
+    @Test
+    void testSearch_matchesTitleSubstringIgnoringCase() {
+        List<Book> result = index.search("CLEAN");
+        assertEquals(1, result.size());
+        assertEquals("1", result.get(0).getId());
+    }
+
+    @Test
+    void testSearch_matchesAuthorSubstring() {
+        List<Book> result = index.search("gamma");
+        assertEquals(List.of("2"), ids(result));
+    }
+
+    @Test
+    void testSearch_matchesInsideWords() {
+        // "ragma" is not a word prefix; a scan with contains() would still find it
+        List<Book> result = index.search("ragma");
+        assertEquals(List.of("3"), ids(result));
+    }
+
+    @Test
+    void testSearch_shortQueryFallsBackToLinearPass() {
+        List<Book> result = index.search("de");
+        assertTrue(ids(result).contains("1"));
+        assertTrue(ids(result).contains("2"));
+        assertFalse(ids(result).contains("3"));
+    }
+
+    @Test
+    void testSearch_emptyOrNullReturnsEverything() {
+        assertEquals(3, index.search("").size());
+        assertEquals(3, index.search(null).size());
+    }
+
+    @Test
+    void testSearch_noMatchReturnsEmpty() {
+        assertTrue(index.search("kubernetes").isEmpty());
+    }
+
+    @Test
+    void testPut_replacesOldTerms() {
+        Book renamed = new Book("1", "Refactoring", "Martin Fowler", "Programming", new BigDecimal("45.00"), 4);
+        index.put(renamed);
+
+        assertTrue(index.search("clean").isEmpty(), "Old title must no longer match");
+        assertEquals("Refactoring", index.search("refactor").get(0).getTitle());
+        assertEquals(1, index.search("refactor").size());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testRemove_dropsBookFromResults() {
+        index.remove("2");
+
+        assertTrue(index.search("patterns").isEmpty());
+        assertNull(index.get("2"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void testIsReady_onlyAfterRebuild() {
+        BookSearchIndex fresh = new BookSearchIndex();
+        assertFalse(fresh.isReady());
+        fresh.rebuild(List.of());
+        assertTrue(fresh.isReady());
+    }
+
+    @Test
+    void testReconcile_appliesFreshReadButKeepsWritesMadeDuringIt() {
+        index.beginReconcile();
+        Book added = new Book("4", "Refactoring", "Martin Fowler", "Programming", new BigDecimal("45.00"), 4);
+        index.put(added);          // written while the scan was running
+        index.remove("3");         // deleted while the scan was running
+
+        Book staleAdded = new Book("4", "Old Title", "Nobody", "Programming", BigDecimal.ONE, 1);
+        Book newPatterns = new Book("2", "Design Patterns, 2nd ed.", "Erich Gamma", "Programming", new BigDecimal("50.00"), 5);
+        index.reconcile(List.of(newPatterns, staleAdded, pragmatic)); // "1" is gone from the table
+
+        assertNull(index.get("1"));
+        assertEquals(newPatterns.getTitle(), index.get("2").getTitle());
+        assertNull(index.get("3"));
+        assertEquals(added.getTitle(), index.get("4").getTitle());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void testCopies_callersCannotChangeTheIndex() {
+        cleanCode.setStockQuantity(99);                       // the instance that was put
+        index.get("1").setStockQuantity(98);
+        index.search("").forEach(b -> b.setTitle("Changed"));
+
+        assertEquals(10, index.get("1").getStockQuantity());
+        assertEquals("Clean Code", index.get("1").getTitle());
+        assertEquals(1, index.search("clean").size());
+    }
+
+    @Test
+    void testAdjustStock_replacesEntryInsteadOfEditingHandedOutCopies() {
+        Book before = index.get("2");
+        index.adjustStock("2", -3);
+        index.adjustStock("2", -10);                          // floored at 0
+
+        assertEquals(5, before.getStockQuantity());
+        assertEquals(0, index.get("2").getStockQuantity());
+        assertEquals(List.of("2"), ids(index.search("patterns")));
+    }
+
+    @Test
+    void testAdjustStock_keptByReconcile() {
+        index.beginReconcile();
+        index.adjustStock("1", -2);
+        index.reconcile(List.of(cleanCode, patterns, pragmatic));  // read taken before the sale
+
+        assertEquals(8, index.get("1").getStockQuantity());
+    }
+
+    private static List<String> ids(List<Book> books) {
+        return books.stream().map(Book::getId).toList();
+    }
+
+    @Test
+    void testReconcile_returnsOnlyChangedIds() {
+        index.beginReconcile();
+        Book repriced = new Book("2", "Design Patterns", "Erich Gamma", "Programming", new BigDecimal("39.00"), 5);
+        Book added = new Book("4", "Refactoring", "Martin Fowler", "Programming", new BigDecimal("45.00"), 4);
+        Book sameCleanCode = new Book("1", "Clean Code", "Robert C. Martin", "Programming", new BigDecimal("35.5"), 10);
+
+        assertEquals(Set.of("2", "3", "4"), index.reconcile(List.of(sameCleanCode, repriced, added)));
+        assertEquals(0, new BigDecimal("39.00").compareTo(index.get("2").getPrice()));
+        assertTrue(index.reconcile(List.of(sameCleanCode, repriced, added)).isEmpty());
+    }
+}
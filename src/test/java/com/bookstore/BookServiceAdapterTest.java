@@ -0,0 +1,213 @@
+package com.bookstore.spring;
+
+import com.bookstore.Book;
+import com.bookstore.BookService;
+import com.bookstore.CacheInvalidationBus;
+import com.bookstore.InMemoryOrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BookServiceAdapterTest {
+
+    private BookService bookService;
+    private CaffeineCacheManager cacheManager;
+    private BookServiceAdapter adapter;
+    private final List<List<String>> published = new ArrayList<>();
+    private Consumer<List<String>> remote;
+    private final CacheInvalidationBus bus = new CacheInvalidationBus() {
+        @Override public void publish(Collection<String> ids) { published.add(List.copyOf(ids)); }
+        @Override public void subscribe(Consumer<List<String>> listener) { remote = listener; }
+        @Override public void close() { }
+    };
+    private final Book b1 = new Book("b-1", "T1", "A1", "G", BigDecimal.TEN, 5);
+    private final Book b2 = new Book("b-2", "T2", "A2", "G", BigDecimal.ONE, 1);
+
+    @BeforeEach
+    void setUp() {
+        bookService = mock(BookService.class);
+        cacheManager = new CaffeineCacheManager("booksAll", "booksById", "bookIdByAsin", "bookIdsByTitle");
+        adapter = new BookServiceAdapter(bookService, new InMemoryOrderRepository(), cacheManager, bus, 60, 0);
+        adapter.buildSuggester();
+        clearInvocations(bookService);   // the suggester build reads indexedBooks() too
+    }
+
+    @Test
+    void findAllById_loadsMissesInOneBatchInRequestOrder() {
+        when(bookService.getBooksByIds(List.of("b-2", "nope", "b-1"))).thenReturn(Map.of("b-1", b1, "b-2", b2));
+
+        Map<String, Book> found = adapter.findAllById(List.of("b-2", "nope", "b-1"));
+
+        assertEquals(List.of("b-2", "b-1"), List.copyOf(found.keySet()));
+        verify(bookService, times(1)).getBooksByIds(any());
+        verify(bookService, never()).getBookById(any());
+    }
+
+    @Test
+    void findAllById_servesRepeatsFromBooksByIdCache() {
+        cacheManager.getCache("booksById").put("b-1", b1);
+        when(bookService.getBooksByIds(List.of("nope"))).thenReturn(Map.of());
+
+        adapter.findAllById(List.of("b-1", "nope"));
+        Map<String, Book> again = adapter.findAllById(List.of("b-1", "nope"));
+
+        assertEquals(Map.of("b-1", b1), again);
+        // b-1 was cached up front, "nope" was cached as missing after the first call
+        verify(bookService, times(1)).getBooksByIds(any());
+    }
+
+    @Test
+    void findAllByIdInOrder_keepsIdOrderAndDropsUnknown() {
+        cacheManager.getCache("booksById").put("b-1", b1);
+        when(bookService.getBooksByIds(List.of("b-2", "nope"))).thenReturn(Map.of("b-2", b2));
+
+        assertEquals(List.of(b2, b1, b2), adapter.findAllByIdInOrder(List.of("b-2", "nope", "b-1", "b-2")));
+        assertEquals(List.of(), adapter.findAllByIdInOrder(List.of()));
+    }
+
+    @Test
+    void findById_servesSnapshotCopiesUntilReconciled() {
+        when(bookService.isServingSnapshot()).thenReturn(true);
+        when(bookService.indexedBook("b-1")).thenReturn(b1);
+
+        Book found = adapter.findById("b-1").orElseThrow();
+
+        assertEquals("T1", found.getTitle());
+        assertNotSame(b1, found);
+        verify(bookService, never()).getBookById(any());
+    }
+
+    @Test
+    void refresh_writesThroughToBooksByIdAndPatchesBooksAll() {
+        Book b3 = new Book("b-3", "T3", "A3", "G", BigDecimal.ONE, 7);
+        when(bookService.indexedBooks()).thenReturn(List.of(b1, b2));
+        assertEquals(2, adapter.listAll().size());
+
+        Book sold = new Book("b-1", "T1", "A1", "G", BigDecimal.TEN, 3);
+        when(bookService.indexedBook("b-1")).thenReturn(sold); // stock went 5 -> 3
+        when(bookService.indexedBook("b-2")).thenReturn(null);  // deleted
+        when(bookService.indexedBook("b-3")).thenReturn(b3);    // added
+        adapter.refresh(List.of("b-1", "b-2", "b-3"));
+
+        List<Book> all = adapter.listAll();
+        assertEquals(List.of("b-1", "b-3"), all.stream().map(Book::getId).toList());
+        assertEquals(3, all.get(0).getStockQuantity());
+        assertEquals(3, ((Book) cacheManager.getCache("booksById").get("b-1").get()).getStockQuantity());
+        assertNull(cacheManager.getCache("booksById").get("b-2"));
+        // patched in place of a reload
+        verify(bookService, times(1)).indexedBooks();
+    }
+
+    @Test
+    void listAll_concurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookService.indexedBooks()).thenAnswer(inv -> {
+            scanning.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(b1, b2);
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Book>>> calls = new ArrayList<>();
+            calls.add(pool.submit(adapter::listAll));
+            assertTrue(scanning.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 7; i++) calls.add(pool.submit(adapter::listAll));
+            Thread.sleep(100); // let the followers reach the in-flight load
+            release.countDown();
+            for (Future<List<Book>> f : calls) assertEquals(2, f.get(5, TimeUnit.SECONDS).size());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        verify(bookService, times(1)).indexedBooks();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        adapter.bindTo(registry);
+        assertEquals(1.0, registry.get("books.cache.all.loads").functionCounter().count());
+        assertEquals(7.0, registry.get("books.cache.all.coalesced").functionCounter().count());
+    }
+
+    @Test
+    void listAll_servesStaleListWhileRefreshingInBackground() throws Exception {
+        BookServiceAdapter eager = new BookServiceAdapter(bookService, new InMemoryOrderRepository(), cacheManager, bus, 0, 0);
+        Book b3 = new Book("b-3", "T3", "A3", "G", BigDecimal.ONE, 7);
+        when(bookService.indexedBooks()).thenReturn(List.of(b1), List.of(b1, b3));
+
+        assertEquals(1, eager.listAll().size());   // miss: loads synchronously
+        assertEquals(1, eager.listAll().size());   // due for refresh: stale list served, reload queued
+
+        verify(bookService, timeout(2000).times(2)).indexedBooks();
+        for (int i = 0; i < 50 && eager.listAll().size() != 2; i++) Thread.sleep(20);
+        assertEquals(2, eager.listAll().size());
+        eager.shutdown();
+    }
+
+    @Test
+    void refresh_publishesIdsAndRemoteInvalidationReloadsThem() {
+        Book repriced = new Book("b-1", "T1", "A1", "G", new BigDecimal("99.00"), 5);
+        cacheManager.getCache("booksById").put("b-1", b1);
+
+        when(bookService.indexedBook("b-2")).thenReturn(null);
+        adapter.refresh(List.of("b-2"));
+        assertEquals(List.of(List.of("b-2")), published);
+
+        // another node repriced b-1: re-read it into the index, then write it through locally
+        when(bookService.indexedBook("b-1")).thenReturn(repriced);
+        remote.accept(List.of("b-1"));
+
+        verify(bookService).reloadIndexed(List.of("b-1"));
+        assertEquals(new BigDecimal("99.00"),
+                ((Book) cacheManager.getCache("booksById").get("b-1").get()).getPrice());
+        assertEquals(1, published.size(), "remote invalidations are not re-published");
+    }
+
+    @Test
+    void findByAsin_cachesUnknownAsinUntilABookWithItIsWritten() {
+        Book asinBook = new Book("b-9", "T9", "A9", "G", BigDecimal.ONE, 1);
+        asinBook.setAsin("B000000009");
+
+        assertNull(adapter.findByAsin("B000000009"));
+        assertNull(adapter.findByAsin("B000000009"));
+        verify(bookService, times(1)).getBookByAsin("B000000009");
+
+        when(bookService.indexedBook("b-9")).thenReturn(asinBook);
+        adapter.refresh(List.of("b-9"));   // insert evicts the negative entry
+        when(bookService.getBookByAsin("B000000009")).thenReturn(asinBook);
+
+        assertEquals("b-9", adapter.findByAsin("B000000009").getId());
+        assertEquals("b-9", adapter.findByAsin("B000000009").getId());
+        verify(bookService, times(2)).getBookByAsin("B000000009");
+    }
+
+    @Test
+    void findByTitle_servesIdsFromCacheAndRequeriesRenamedBooks() {
+        when(bookService.findByTitle("T1")).thenReturn(List.of(b1));
+
+        assertEquals(List.of(b1), adapter.findByTitle("T1"));
+        assertEquals(List.of(b1), adapter.findByTitle("T1"));
+        verify(bookService, times(1)).findByTitle("T1");
+
+        // renamed behind our back (e.g. the write-through evicted booksById only)
+        cacheManager.getCache("booksById").put("b-1", new Book("b-1", "Renamed", "A1", "G", BigDecimal.TEN, 5));
+        when(bookService.findByTitle("T1")).thenReturn(List.of());
+        assertTrue(adapter.findByTitle("T1").isEmpty());
+        verify(bookService, times(2)).findByTitle("T1");
+    }
+}
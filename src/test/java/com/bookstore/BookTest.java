@@ -63,6 +63,24 @@ class BookTest {
         assertTrue(str.contains("10"));
     }
 
+    @Test
+    void testTitleLower_followsTitle() {
+        Book book = new Book("id1", "  Clean CODE ", "Robert Martin", "Programming", BigDecimal.TEN, 1);
+        assertEquals("clean code", book.getTitleLower());
+
+        book.setTitle("Refactoring");
+        assertEquals("refactoring", book.getTitleLower());
+
+        book.setTitleLower("ignored");
+        assertEquals("refactoring", book.getTitleLower());
+    }
+
+    @Test
+    void testNormalizeTitle_blankIsNull() {
+        assertNull(Book.normalizeTitle(null));
+        assertNull(Book.normalizeTitle("   "));
+    }
+
     @Test
     void testToString_handlesNullValues() {
         Book book = new Book();
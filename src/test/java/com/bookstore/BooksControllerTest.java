@@ -1,6 +1,8 @@
 package com.bookstore.api;
 
 import com.bookstore.Book;
+import com.bookstore.BulkWriteResult;
+import com.bookstore.PrefixSuggester;
 import com.bookstore.spring.BookServiceAdapter;
 import com.bookstore.spring.SessionAuth;
 import org.junit.jupiter.api.Test;
@@ -8,13 +10,21 @@ import org.mockito.Mockito;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -119,6 +129,63 @@ class BooksControllerTest {
                 .andExpect(jsonPath("$[0].title").value("Harry Potter"));
     }
 
+    @Test
+    void suggest_returns_completions() throws Exception {
+        when(adapter.suggest("cle", 10)).thenReturn(List.of(
+                new PrefixSuggester.Suggestion("Clean Code", List.of("b-1"), 3)
+        ));
+
+        mvc.perform(get("/api/books/suggest").param("prefix", "cle"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].text").value("Clean Code"))
+                .andExpect(jsonPath("$[0].bookIds[0]").value("b-1"));
+    }
+
+    @Test
+    void bulk_create_reports_per_item_results() throws Exception {
+        when(sessionAuth.isAdmin(any())).thenReturn(true);
+        BulkWriteResult result = new BulkWriteResult(2);
+        result.set(0, new BulkWriteResult.ItemResult("T1", "b-1", BulkWriteResult.Status.INSERTED, null));
+        result.set(1, new BulkWriteResult.ItemResult("T2", "b-2", BulkWriteResult.Status.UPDATED, null));
+        when(adapter.bulkUpsert(any())).thenReturn(result);
+
+        String json = """
+            [
+              {"title": "T1", "author": "A1", "genre": "G1", "price": 10, "stockQuantity": 2},
+              {"title": "T2", "author": "A2", "genre": "G2", "price": 12, "stockQuantity": 1}
+            ]
+            """;
+
+        mvc.perform(post("/api/books/bulk")
+                        .contentType(APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.results[0].status").value("INSERTED"))
+                .andExpect(jsonPath("$.results[1].status").value("UPDATED"));
+
+        // one batched call instead of one save per book
+        Mockito.verify(adapter).bulkUpsert(any());
+        Mockito.verify(adapter, Mockito.never()).save(any(Book.class));
+    }
+
+    @Test
+    void bulk_delete_reports_not_found_items() throws Exception {
+        when(sessionAuth.isAdmin(any())).thenReturn(true);
+        BulkWriteResult result = new BulkWriteResult(2);
+        result.set(0, new BulkWriteResult.ItemResult("b-1", "b-1", BulkWriteResult.Status.DELETED, null));
+        result.set(1, new BulkWriteResult.ItemResult("b-404", null, BulkWriteResult.Status.NOT_FOUND, null));
+        when(adapter.bulkDelete(any(), any())).thenReturn(result);
+
+        mvc.perform(delete("/api/books/bulk")
+                        .contentType(APPLICATION_JSON)
+                        .content("{\"ids\": [\"b-1\", \"b-404\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(1))
+                .andExpect(jsonPath("$.requested").value(2))
+                .andExpect(jsonPath("$.results[1].status").value("NOT_FOUND"));
+    }
+
     @Test
     void deleteById_forbidden_if_not_admin() throws Exception {
         when(sessionAuth.isAdmin(any())).thenReturn(false);
@@ -136,4 +203,62 @@ class BooksControllerTest {
 
         Mockito.verify(adapter).deleteById("b-1");
     }
+
+    @SuppressWarnings("unchecked")
+    private void stubCatalog(Book... books) {
+        doAnswer(inv -> {
+            Consumer<Book> sink = inv.getArgument(4);
+            for (Book b : books) sink.accept(b);
+            return null;
+        }).when(adapter).forEachFiltered(isNull(), isNull(), isNull(), isNull(), any(Consumer.class));
+    }
+
+    @Test
+    void exportCsv_streams_rows_with_escaping() throws Exception {
+        when(sessionAuth.isAdmin(any())).thenReturn(true);
+        Book quoted = new Book("b-1", "The \"Best\" Book", "A1", "G1", new BigDecimal("10.005"), 5);
+        quoted.setAsin("B000000001");
+        stubCatalog(quoted);
+
+        MvcResult started = mvc.perform(get("/api/books/export/csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv"))
+                .andExpect(content().string(
+                        "ASIN,ID,Title,Author,Genre,Price,Stock,ISBN\n" +
+                        "\"B000000001\",\"b-1\",\"The \"\"Best\"\" Book\",\"A1\",\"G1\",10.01,5,\"\"\n"));
+    }
+
+    @Test
+    void exportJson_gzip_streams_array() throws Exception {
+        when(sessionAuth.isAdmin(any())).thenReturn(true);
+        stubCatalog(
+                new Book("b-1", "T1", "A1", "G1", BigDecimal.valueOf(10.0), 5),
+                new Book("b-2", "T2", "A2", "G2", BigDecimal.valueOf(20.0), 1));
+
+        MvcResult started = mvc.perform(get("/api/books/export/json").param("gzip", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult done = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=catalog.json.gz"))
+                .andReturn();
+
+        byte[] gz = done.getResponse().getContentAsByteArray();
+        String json = new String(new GZIPInputStream(new ByteArrayInputStream(gz)).readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(2, com.jayway.jsonpath.JsonPath.<List<?>>read(json, "$").size());
+        assertEquals("b-2", com.jayway.jsonpath.JsonPath.read(json, "$[1].id"));
+    }
+
+    @Test
+    void export_forbidden_if_not_admin() throws Exception {
+        when(sessionAuth.isAdmin(any())).thenReturn(false);
+
+        mvc.perform(get("/api/books/export/csv"))
+                .andExpect(status().isForbidden());
+    }
 }
\ No newline at end of file
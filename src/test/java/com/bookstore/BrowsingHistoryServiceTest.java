@@ -2,8 +2,21 @@ package com.bookstore;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import static org.junit.jupiter.api.Assertions.*;
 
 class BrowsingHistoryServiceTest {
@@ -13,7 +26,7 @@ class BrowsingHistoryServiceTest {
 
     @BeforeEach
     void setUp() {
-        service = new BrowsingHistoryService(3); // capacity of 3
+        service = new BrowsingHistoryService(3, 30, 1 << 20, 0, BrowsingHistoryRepository.none()); // capacity of 3
         book1 = new Book("1", "Book1", "Author1", "Genre1", new BigDecimal("10"), 5);
         book2 = new Book("2", "Book2", "Author2", "Genre2", new BigDecimal("20"), 5);
         book3 = new Book("3", "Book3", "Author3", "Genre3", new BigDecimal("30"), 5);
@@ -23,9 +36,9 @@ class BrowsingHistoryServiceTest {
     void testView_addsBookToHistory() {
         service.view("user1", book1);
 
-        List<Book> history = service.getRecent("user1");
+        List<String> history = service.getRecentIds("user1");
         assertEquals(1, history.size());
-        assertEquals(book1, history.get(0));
+        assertEquals(book1.getId(), history.get(0));
     }
 
     @Test
@@ -34,11 +47,11 @@ class BrowsingHistoryServiceTest {
         service.view("user1", book2);
         service.view("user1", book3);
 
-        List<Book> history = service.getRecent("user1");
+        List<String> history = service.getRecentIds("user1");
         assertEquals(3, history.size());
-        assertEquals(book3, history.get(0)); // most recent
-        assertEquals(book2, history.get(1));
-        assertEquals(book1, history.get(2));
+        assertEquals(book3.getId(), history.get(0)); // most recent
+        assertEquals(book2.getId(), history.get(1));
+        assertEquals(book1.getId(), history.get(2));
     }
 
     @Test
@@ -50,10 +63,10 @@ class BrowsingHistoryServiceTest {
         service.view("user1", book3);
         service.view("user1", book4); // exceeds capacity
 
-        List<Book> history = service.getRecent("user1");
+        List<String> history = service.getRecentIds("user1");
         assertEquals(3, history.size());
-        assertFalse(history.contains(book1), "Oldest item should be removed");
-        assertTrue(history.contains(book4));
+        assertFalse(history.contains(book1.getId()), "Oldest item should be removed");
+        assertTrue(history.contains(book4.getId()));
     }
 
     @Test
@@ -63,9 +76,9 @@ class BrowsingHistoryServiceTest {
         service.view("user1", book3);
         service.view("user1", book1); // view book1 again
 
-        List<Book> history = service.getRecent("user1");
+        List<String> history = service.getRecentIds("user1");
         assertEquals(3, history.size());
-        assertEquals(book1, history.get(0), "Re-viewed book should move to front");
+        assertEquals(book1.getId(), history.get(0), "Re-viewed book should move to front");
     }
 
     @Test
@@ -73,13 +86,13 @@ class BrowsingHistoryServiceTest {
         service.view("user1", book1);
         service.view("user1", book1); // view same book twice
 
-        List<Book> history = service.getRecent("user1");
+        List<String> history = service.getRecentIds("user1");
         assertEquals(1, history.size());
     }
 
     @Test
     void testGetRecent_returnsEmptyForNewUser() {
-        List<Book> history = service.getRecent("unknownUser");
+        List<String> history = service.getRecentIds("unknownUser");
         assertNotNull(history);
         assertTrue(history.isEmpty());
     }
@@ -89,18 +102,18 @@ class BrowsingHistoryServiceTest {
         service.view("user1", book1);
         service.view("user2", book2);
 
-        List<Book> history1 = service.getRecent("user1");
-        List<Book> history2 = service.getRecent("user2");
+        List<String> history1 = service.getRecentIds("user1");
+        List<String> history2 = service.getRecentIds("user2");
 
         assertEquals(1, history1.size());
         assertEquals(1, history2.size());
-        assertEquals(book1, history1.get(0));
-        assertEquals(book2, history2.get(0));
+        assertEquals(book1.getId(), history1.get(0));
+        assertEquals(book2.getId(), history2.get(0));
     }
 
     @Test
     void testConstructor_withDefaultCapacity() {
-        BrowsingHistoryService defaultService = new BrowsingHistoryService(10);
+        BrowsingHistoryService defaultService = new BrowsingHistoryService(10, 30, 1 << 20, 0, BrowsingHistoryRepository.none());
         assertNotNull(defaultService);
 
         // Verify default capacity works
@@ -109,7 +122,155 @@ class BrowsingHistoryServiceTest {
             defaultService.view("user", b);
         }
 
-        List<Book> history = defaultService.getRecent("user");
+        List<String> history = defaultService.getRecentIds("user");
         assertEquals(10, history.size(), "Should respect capacity of 10");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testView_concurrentViewsKeepHistoryConsistent() throws Exception {
+        Book[] books = new Book[20];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = new Book("c" + i, "Book" + i, "Author", "Genre", BigDecimal.TEN, 5);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        service.view("user1", books[ThreadLocalRandom.current().nextInt(books.length)]);
+                        if (i % 100 == 0) assertTrue(service.getRecentIds("user1").size() <= 3);
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        List<String> history = service.getRecentIds("user1");
+        assertEquals(3, history.size());
+        assertEquals(3, new HashSet<>(history).size(), "no duplicates after concurrent views");
+        assertThrows(UnsupportedOperationException.class, () -> history.add("x"));
+    }
+
+    @Test
+    void testIdleHistoriesAreEvicted() {
+        AtomicLong nanos = new AtomicLong();
+        BrowsingHistoryService idle = new BrowsingHistoryService(3, Duration.ofMinutes(30), 1 << 20, nanos::get,
+                BrowsingHistoryRepository.none(), 0);
+        idle.view("guest:a", book1);
+        idle.view("user1", book2);
+
+        nanos.addAndGet(Duration.ofMinutes(20).toNanos());
+        assertEquals(List.of("2"), idle.getRecentIds("user1")); // a read counts as activity
+        nanos.addAndGet(Duration.ofMinutes(15).toNanos());
+        idle.cleanUp();
+
+        assertTrue(idle.getRecentIds("guest:a").isEmpty());
+        assertEquals(List.of("2"), idle.getRecentIds("user1"));
+        assertEquals(1, idle.entryCount());
+    }
+
+    @Test
+    void testStoreIsCappedByRetainedBytes() {
+        BrowsingHistoryService capped = new BrowsingHistoryService(10, Duration.ofMinutes(30), 20_000, System::nanoTime,
+                BrowsingHistoryRepository.none(), 0);
+        for (int i = 0; i < 1_000; i++) {
+            capped.view("guest:" + i, "b-" + i);
+            capped.view("guest:" + i, "b-" + (i + 1));
+        }
+        capped.cleanUp();
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        capped.bindTo(registry);
+        double entries = registry.get("browsing.history.entries").gauge().value();
+        double bytes = registry.get("browsing.history.retained.bytes").gauge().value();
+        assertTrue(entries > 0 && entries < 1_000, "entries: " + entries);
+        assertTrue(bytes > 0 && bytes <= 20_000, "bytes: " + bytes);
+        assertTrue(registry.get("browsing.history.evictions").functionCounter().count() > 0);
+    }
+
+    /** Stored histories in a map; counts calls and can fail writes for chosen users. */
+    private static class FakeRepository implements BrowsingHistoryRepository {
+        final Map<String, List<String>> stored = new HashMap<>();
+        final Set<String> failing = new HashSet<>();
+        int loads, saves;
+
+        @Override
+        public synchronized Map<String, List<String>> loadAll(Collection<String> users) {
+            loads++;
+            Map<String, List<String>> out = new HashMap<>();
+            for (String u : users) if (stored.containsKey(u)) out.put(u, stored.get(u));
+            return out;
+        }
+
+        @Override
+        public synchronized Set<String> saveAll(Map<String, List<String>> histories) {
+            saves++;
+            Set<String> failed = new HashSet<>();
+            histories.forEach((u, ids) -> {
+                if (failing.contains(u)) failed.add(u); else stored.put(u, List.copyOf(ids));
+            });
+            return failed;
+        }
+    }
+
+    @Test
+    void testFlush_coalescesViewsIntoOneWritePerUser() {
+        FakeRepository repo = new FakeRepository();
+        repo.stored.put("alice", List.of());
+        BrowsingHistoryService s = new BrowsingHistoryService(3, 30, 1 << 20, 0, repo);
+        assertTrue(s.getRecentIds("alice").isEmpty());
+        int loadsAfterRead = repo.loads;
+
+        for (int i = 0; i < 50; i++) s.view("alice", "b-" + (i % 4));
+        s.view(BrowsingHistoryService.guestKey("s1"), "b-9");
+        assertEquals(0, repo.saves, "views stay in memory until the flush");
+        assertEquals(loadsAfterRead, repo.loads);
+
+        s.flush();
+        assertEquals(1, repo.saves);
+        assertEquals(List.of("b-1", "b-0", "b-3"), repo.stored.get("alice"));
+        assertFalse(repo.stored.containsKey("guest:s1"), "guest histories are not stored");
+
+        s.flush();
+        assertEquals(1, repo.saves, "nothing new to write");
+    }
+
+    @Test
+    void testGetRecent_readsThroughAndMergesStoredHistoryBehindNewViews() {
+        FakeRepository repo = new FakeRepository();
+        repo.stored.put("alice", List.of("b-1", "b-2"));
+        repo.stored.put("bob", List.of("b-5", "b-6", "b-7"));
+        BrowsingHistoryService s = new BrowsingHistoryService(3, 30, 1 << 20, 0, repo);
+
+        assertEquals(List.of("b-1", "b-2"), s.getRecentIds("alice"));
+        assertEquals(List.of("b-1", "b-2"), s.getRecentIds("alice"));
+        assertEquals(1, repo.loads, "second read is served locally");
+
+        // bob views on this node before anything was read: stored ids go behind the new one
+        s.view("bob", "b-6");
+        s.view("bob", "b-9");
+        s.flush();
+        assertEquals(List.of("b-9", "b-6", "b-5"), repo.stored.get("bob"));
+        assertEquals(List.of("b-9", "b-6", "b-5"), s.getRecentIds("bob"));
+    }
+
+    @Test
+    void testFlush_keepsFailedUsersForTheNextFlush() {
+        FakeRepository repo = new FakeRepository();
+        repo.failing.add("alice");
+        BrowsingHistoryService s = new BrowsingHistoryService(3, 30, 1 << 20, 0, repo);
+
+        s.view("alice", "b-1");
+        s.view("carol", "b-2");
+        s.flush();
+        assertFalse(repo.stored.containsKey("alice"));
+        assertEquals(List.of("b-2"), repo.stored.get("carol"));
+
+        repo.failing.clear();
+        s.close();
+        assertEquals(List.of("b-1"), repo.stored.get("alice"));
+    }
+}
@@ -37,4 +37,28 @@ public class BrowsingHistoryTest {
         assertEquals("C", recent.get(0).getTitle());
         assertTrue(recent.stream().noneMatch(b -> b.getTitle().equals("B")));
     }
+
+    @Test
+    public void testSlotReuseAfterEvictionAndClear() {
+        BrowsingHistory history = new BrowsingHistory(3);
+        for (int i = 0; i < 10; i++) {
+            history.view(new Book("id-" + i, "T" + i, "Author", "Genre", BigDecimal.ONE, 1));
+        }
+        history.view(new Book("id-8", "T8 updated", "Author", "Genre", BigDecimal.ONE, 1)); // middle -> front
+
+        List<Book> recent = history.getRecent();
+        assertEquals(List.of("id-8", "id-9", "id-7"), recent.stream().map(Book::getId).toList());
+        assertEquals("T8 updated", recent.get(0).getTitle());
+        assertEquals(List.of("id-8", "id-9"), history.getRecent(2).stream().map(Book::getId).toList());
+        assertSame(recent, history.getRecent(), "unchanged history reuses its snapshot");
+
+        history.clear();
+        assertEquals(0, history.size());
+        assertTrue(history.getRecent().isEmpty());
+        assertEquals(1, recent.stream().filter(b -> b.getId().equals("id-7")).count(), "old snapshot unaffected");
+
+        history.view(new Book("id-x", "X", "Author", "Genre", BigDecimal.ONE, 1));
+        assertEquals(1, history.size());
+        assertEquals("id-x", history.getRecent().get(0).getId());
+    }
 }
@@ -4,15 +4,20 @@ import com.bookstore.*;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -26,21 +31,30 @@ class CartControllerTest {
     MockMvc mvc;
 
     @MockBean
-    BookService bookService;
+    BookServiceAdapter books;
 
     @MockBean
     CheckoutService checkoutService;
 
     @MockBean
-    InMemoryOrderRepository orderRepo;
+    OrderRepository orderRepo;
 
-    @MockBean  //
-    private CacheManager cacheManager;
+    @Autowired
+    InventoryReservations reservations;
+
+    /** Real ledger: holds are plain in-memory state. */
+    @TestConfiguration
+    static class ReservationsConfig {
+        @Bean
+        InventoryReservations inventoryReservations() {
+            return new InventoryReservations(Duration.ofMinutes(2), Duration.ofMinutes(1));
+        }
+    }
 
     @Test
     void preview_ok() throws Exception {
-        when(bookService.getBookById("b-1"))
-                .thenReturn(new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5));
+        when(books.findAllById(any()))
+                .thenReturn(Map.of("b-1", new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5)));
 
         String cartJson = """
             {
@@ -62,8 +76,8 @@ class CartControllerTest {
 
     @Test
     void preview_409_when_insufficient_stock() throws Exception {
-        when(bookService.getBookById("b-1"))
-                .thenReturn(new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 1));
+        when(books.findAllById(any()))
+                .thenReturn(Map.of("b-1", new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 1)));
 
         String cartJson = """
             {
@@ -82,16 +96,73 @@ class CartControllerTest {
                 .andExpect(status().isConflict());
     }
 
+    @Test
+    void preview_409_when_stock_is_held_by_another_session() throws Exception {
+        when(books.findAllById(any()))
+                .thenReturn(Map.of("b-1", new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 3)));
+
+        String cartJson = """
+            { "items": [ { "bookId": "b-1", "quantity": 2 } ] }
+            """;
+
+        mvc.perform(post("/api/cart/preview").session(signedIn("s-1"))
+                        .contentType(APPLICATION_JSON).content(cartJson))
+                .andExpect(status().isOk());
+
+        // 3 in stock, 2 held by s-1: a second shopper cannot preview 2 more
+        mvc.perform(post("/api/cart/preview").session(signedIn("s-2"))
+                        .contentType(APPLICATION_JSON).content(cartJson))
+                .andExpect(status().isConflict());
+
+        // previewing again refreshes s-1's own hold instead of counting it twice
+        mvc.perform(post("/api/cart/preview").session(signedIn("s-1"))
+                        .contentType(APPLICATION_JSON).content(cartJson))
+                .andExpect(status().isOk());
+
+        reservations.release("s-1");
+    }
+
+    @Test
+    void preview_anonymous_checks_stock_without_holding() throws Exception {
+        when(books.findAllById(any()))
+                .thenReturn(Map.of("b-1", new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 3)));
+
+        String cartJson = """
+            { "items": [ { "bookId": "b-1", "quantity": 3 } ] }
+            """;
+
+        mvc.perform(post("/api/cart/preview").session(new MockHttpSession(null, "anon-1"))
+                        .contentType(APPLICATION_JSON).content(cartJson))
+                .andExpect(status().isOk());
+        assertEquals(0, reservations.heldByOthers("b-1", "someone-else"));
+
+        // still refused when signed-in shoppers hold the stock
+        mvc.perform(post("/api/cart/preview").session(signedIn("s-3"))
+                        .contentType(APPLICATION_JSON).content(cartJson))
+                .andExpect(status().isOk());
+        mvc.perform(post("/api/cart/preview").session(new MockHttpSession(null, "anon-1"))
+                        .contentType(APPLICATION_JSON).content(cartJson))
+                .andExpect(status().isConflict());
+
+        reservations.release("s-3");
+    }
+
+    private static MockHttpSession signedIn(String id) {
+        MockHttpSession session = new MockHttpSession(null, id);
+        session.setAttribute("username", "user-" + id);
+        return session;
+    }
+
     @Test
     void checkout_ok_uses_username_if_present() throws Exception {
-        when(bookService.getBookById("b-1"))
-                .thenReturn(new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5));
+        when(books.findAllById(any()))
+                .thenReturn(Map.of("b-1", new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5)));
 
         // Create mock order with proper constructor
         Map<String, CartItem> items = new HashMap<>();
         Order mockOrder = new Order("order-123", "adi", items, BigDecimal.valueOf(20.0));
 
-        when(checkoutService.checkout(eq("adi"), any(Cart.class)))
+        when(checkoutService.checkout(eq("adi"), any(Cart.class), any()))
                 .thenReturn(mockOrder);
 
         String cartJson = """
@@ -111,12 +182,14 @@ class CartControllerTest {
                         .content(cartJson))
                 .andExpect(status().isOk());
 
-        Mockito.verify(checkoutService).checkout(eq("adi"), any(Cart.class));
+        Mockito.verify(checkoutService).checkout(eq("adi"), any(Cart.class), anyString());
+        // only the purchased book is written through to the caches
+        Mockito.verify(books).refresh(List.of("b-1"));
     }
 
     @Test
     void preview_badRequest_when_book_not_found() throws Exception {
-        when(bookService.getBookById("invalid-id")).thenReturn(null);
+        when(books.findAllById(any())).thenReturn(Map.of());
 
         String cartJson = """
             {
@@ -137,8 +210,8 @@ class CartControllerTest {
 
     @Test
     void preview_badRequest_when_quantity_is_zero() throws Exception {
-        when(bookService.getBookById("b-1"))
-                .thenReturn(new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5));
+        when(books.findAllById(any()))
+                .thenReturn(Map.of("b-1", new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5)));
 
         String cartJson = """
             {
@@ -159,8 +232,8 @@ class CartControllerTest {
 
     @Test
     void preview_badRequest_when_quantity_is_negative() throws Exception {
-        when(bookService.getBookById("b-1"))
-                .thenReturn(new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5));
+        when(books.findAllById(any()))
+                .thenReturn(Map.of("b-1", new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5)));
 
         String cartJson = """
             {
@@ -181,13 +254,13 @@ class CartControllerTest {
 
     @Test
     void checkout_uses_anonymous_when_no_session() throws Exception {
-        when(bookService.getBookById("b-1"))
-                .thenReturn(new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5));
+        when(books.findAllById(any()))
+                .thenReturn(Map.of("b-1", new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5)));
 
         Map<String, CartItem> items = new HashMap<>();
         Order mockOrder = new Order("order-456", "anonymous", items, BigDecimal.valueOf(10.0));
 
-        when(checkoutService.checkout(eq("anonymous"), any(Cart.class)))
+        when(checkoutService.checkout(eq("anonymous"), any(Cart.class), any()))
                 .thenReturn(mockOrder);
 
         String cartJson = """
@@ -206,18 +279,18 @@ class CartControllerTest {
                         .content(cartJson))
                 .andExpect(status().isOk());
 
-        Mockito.verify(checkoutService).checkout(eq("anonymous"), any(Cart.class));
+        Mockito.verify(checkoutService).checkout(eq("anonymous"), any(Cart.class), anyString());
     }
 
     @Test
     void checkout_uses_query_param_when_provided() throws Exception {
-        when(bookService.getBookById("b-1"))
-                .thenReturn(new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5));
+        when(books.findAllById(any()))
+                .thenReturn(Map.of("b-1", new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5)));
 
         Map<String, CartItem> items = new HashMap<>();
         Order mockOrder = new Order("order-789", "guest-user", items, BigDecimal.valueOf(10.0));
 
-        when(checkoutService.checkout(eq("guest-user"), any(Cart.class)))
+        when(checkoutService.checkout(eq("guest-user"), any(Cart.class), any()))
                 .thenReturn(mockOrder);
 
         String cartJson = """
@@ -237,15 +310,15 @@ class CartControllerTest {
                         .content(cartJson))
                 .andExpect(status().isOk());
 
-        Mockito.verify(checkoutService).checkout(eq("guest-user"), any(Cart.class));
+        Mockito.verify(checkoutService).checkout(eq("guest-user"), any(Cart.class), anyString());
     }
 
     @Test
     void checkout_handles_insufficient_stock_error() throws Exception {
-        when(bookService.getBookById("b-1"))
-                .thenReturn(new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5));
+        when(books.findAllById(any()))
+                .thenReturn(Map.of("b-1", new Book("b-1", "T", "A", "G", BigDecimal.valueOf(10.0), 5)));
 
-        when(checkoutService.checkout(anyString(), any(Cart.class)))
+        when(checkoutService.checkout(anyString(), any(Cart.class), any()))
                 .thenThrow(new IllegalStateException("Insufficient stock for: T"));
 
         String cartJson = """
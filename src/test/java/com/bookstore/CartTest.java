@@ -168,4 +168,31 @@ class CartTest {
             items.put("999", new CartItem("999", "Test", BigDecimal.ONE, 1));
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCalculateTotal_keepsPriceScaleAndHandlesSubCentPrices() {
+        cart.addBook(new Book("3", "Book3", "Author3", "Genre3", new BigDecimal("9.5"), 5), 3);
+        cart.addBook(new Book("4", "Book4", "Author4", "Genre4", new BigDecimal("2"), 5), 1);
+        assertEquals(new BigDecimal("30.5"), cart.calculateTotal());
+
+        cart.addBook(new Book("5", "Book5", "Author5", "Genre5", new BigDecimal("0.125"), 5), 2);
+        assertEquals(new BigDecimal("30.750"), cart.calculateTotal());
+    }
+
+    @Test
+    void testGetItems_snapshotIsNotChangedByLaterWrites() {
+        cart.addBook(book1, 1);
+        Map<String, CartItem> before = cart.getItems();
+        BigDecimal totalBefore = cart.calculateTotal();
+
+        cart.addBook(book1, 2);
+        cart.addBook(book2, 1);
+
+        assertNotSame(before, cart.getItems());
+        assertEquals(1, before.get("1").getQuantity());
+        assertEquals(new BigDecimal("10.00"), totalBefore);
+        assertEquals(3, cart.getItems().get("1").getQuantity());
+        assertEquals(new BigDecimal("50.00"), cart.calculateTotal());
+        assertSame(cart.getItems(), cart.getItems());
+    }
+}
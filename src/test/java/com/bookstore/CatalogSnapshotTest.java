@@ -0,0 +1,79 @@
+package com.bookstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testWriteThenLoad_roundTripsEveryField() throws IOException {
+        Book full = new Book("b-1", "Clean Code", "Robert C. Martin", "Programming", new BigDecimal("35.50"), 10);
+        full.setAsin("B0TEST0001");
+        full.setIsbn("978-0132350884");
+        Book sparse = new Book("b-2", "Ünïcödé", null, null, null, null);
+        Path file = dir.resolve("catalog.snapshot");
+
+        CatalogSnapshot.write(file, List.of(full, sparse));
+        CatalogSnapshot loaded = CatalogSnapshot.load(file);
+
+        assertEquals(2, loaded.books().size());
+        Book a = loaded.books().get(0);
+        assertEquals("b-1", a.getId());
+        assertEquals("B0TEST0001", a.getAsin());
+        assertEquals("978-0132350884", a.getIsbn());
+        assertEquals(new BigDecimal("35.50"), a.getPrice());
+        assertEquals(10, a.getStockQuantity());
+        Book b = loaded.books().get(1);
+        assertEquals("Ünïcödé", b.getTitle());
+        assertNull(b.getAuthor());
+        assertNull(b.getPrice());
+        assertNull(b.getStockQuantity());
+        assertNotNull(loaded.writtenAt());
+    }
+
+    @Test
+    void testLoad_missingFileIsNull() throws IOException {
+        assertNull(CatalogSnapshot.load(dir.resolve("nope")));
+    }
+
+    @Test
+    void testLoad_rejectsCorruptOrTruncatedFiles() throws IOException {
+        Path file = dir.resolve("catalog.snapshot");
+        CatalogSnapshot.write(file, List.of(new Book("b-1", "T", "A", "G", BigDecimal.ONE, 1)));
+        byte[] bytes = Files.readAllBytes(file);
+
+        bytes[bytes.length - 1] ^= 0x7F;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> CatalogSnapshot.load(file));
+
+        Files.write(file, java.util.Arrays.copyOf(bytes, 10));
+        assertThrows(IOException.class, () -> CatalogSnapshot.load(file));
+    }
+
+    @Test
+    void testLoad_rejectsSnapshotOlderThanMaxAge() throws IOException {
+        Path file = dir.resolve("catalog.snapshot");
+        CatalogSnapshot.write(file, List.of(new Book("b-1", "T", "A", "G", BigDecimal.ONE, 1)));
+        assertEquals(1, CatalogSnapshot.load(file, Duration.ofMinutes(60)).books().size());
+
+        // writtenAt sits in the header (after magic, version, count), outside the body checksum
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putLong(12, Instant.now().minus(Duration.ofHours(2)).toEpochMilli());
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> CatalogSnapshot.load(file, Duration.ofMinutes(60)));
+        assertEquals(1, CatalogSnapshot.load(file).books().size());
+    }
+}
@@ -5,6 +5,9 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -31,7 +34,7 @@ class CheckoutServiceTest {
     @Test
     void testCheckout_createsAndSavesOrder() {
         cart.addBook(book1, 2);
-        when(bookService.getBookById("1")).thenReturn(book1);
+        when(bookService.decrementStock(any(), any())).thenReturn(List.of());
 
         Order order = checkoutService.checkout("user1", cart);
 
@@ -58,39 +61,76 @@ class CheckoutServiceTest {
     @Test
     void testCheckout_throwsExceptionWhenBookNotFound() {
         cart.addBook(book1, 1);
-        when(bookService.getBookById("1")).thenReturn(null);
+        when(bookService.decrementStock(any(), any())).thenReturn(List.of(
+                new BookService.StockShortfall("1", null, 1, 0, false)));
 
-        assertThrows(IllegalStateException.class, () -> {
+        IllegalStateException ex = assertThrows(IllegalStateException.class, () -> {
             checkoutService.checkout("user1", cart);
         });
+        assertEquals("Book not found: 1", ex.getMessage());
+        verify(orderRepository, never()).save(any(Order.class));
     }
 
     @Test
     void testCheckout_throwsExceptionForInsufficientStock() {
         cart.addBook(book1, 15); // more than available stock
-        when(bookService.getBookById("1")).thenReturn(book1);
+        when(bookService.decrementStock(any(), any())).thenReturn(List.of(
+                new BookService.StockShortfall("1", "Book1", 15, 10, true)));
 
-        assertThrows(IllegalStateException.class, () -> {
+        IllegalStateException ex = assertThrows(IllegalStateException.class, () -> {
             checkoutService.checkout("user1", cart);
         });
+        assertEquals("Insufficient stock: Book1: requested 15 but only 10 available", ex.getMessage());
+        verify(orderRepository, never()).save(any(Order.class));
+        assertFalse(cart.isEmpty(), "Cart must survive a failed checkout");
     }
 
     @Test
     void testCheckout_decrementsStock() {
         cart.addBook(book1, 3);
-        when(bookService.getBookById("1")).thenReturn(book1);
+        when(bookService.decrementStock(any(), any())).thenReturn(List.of());
 
         checkoutService.checkout("user1", cart);
 
-        verify(bookService, times(1)).saveOrUpdateBookByTitle(argThat(book ->
-                book.getId().equals("1") && book.getStockQuantity() == 7
-        ));
+        // one conditional transaction, no read-modify-write of the book
+        verify(bookService, times(1)).decrementStock(Map.of("1", 3), Map.of());
+        verify(bookService, never()).getBookById(any());
+        verify(bookService, never()).saveOrUpdateBookByTitle(any());
+    }
+
+    @Test
+    void testCheckout_restoresStockWhenOrderSaveFails() {
+        cart.addBook(book1, 2);
+        when(bookService.decrementStock(any(), any())).thenReturn(List.of());
+        doThrow(new RuntimeException("store down")).when(orderRepository).save(any(Order.class));
+
+        assertThrows(RuntimeException.class, () -> checkoutService.checkout("user1", cart));
+
+        verify(bookService).restoreStock(Map.of("1", 2));
+        assertFalse(cart.isEmpty());
+    }
+
+    @Test
+    void testCheckout_leavesOtherShoppersHoldsAndReleasesOwn() {
+        InventoryReservations reservations = new InventoryReservations(Duration.ofMinutes(2), Duration.ofMinutes(1));
+        CheckoutService withHolds = new CheckoutService(orderRepository, bookService, reservations);
+        reservations.hold("me", "1", 3, 10);
+        reservations.hold("other", "1", 4, 10);
+        cart.addBook(book1, 3);
+        when(bookService.decrementStock(any(), any())).thenReturn(List.of());
+
+        withHolds.checkout("user1", cart, "me");
+
+        verify(bookService).decrementStock(Map.of("1", 3), Map.of("1", 4));
+        assertEquals(4, reservations.heldByOthers("1", "me"), "Own hold is gone, the other shopper's stays");
+        assertEquals(1, reservations.size());
+        reservations.close();
     }
 
     @Test
     void testCheckout_clearsCartAfterSuccess() {
         cart.addBook(book1, 2);
-        when(bookService.getBookById("1")).thenReturn(book1);
+        when(bookService.decrementStock(any(), any())).thenReturn(List.of());
 
         checkoutService.checkout("user1", cart);
 
@@ -111,7 +151,7 @@ class CheckoutServiceTest {
     @Test
     void testCheckout_allowsNullUsername() {
         cart.addBook(book1, 1);
-        when(bookService.getBookById("1")).thenReturn(book1);
+        when(bookService.decrementStock(any(), any())).thenReturn(List.of());
 
         Order order = checkoutService.checkout(null, cart);
 
@@ -123,7 +163,8 @@ class CheckoutServiceTest {
     void testCheckout_preventsNegativeStock() {
         Book bookWithLowStock = new Book("2", "Book2", "Author2", "Genre", new BigDecimal("10"), 2);
         cart.addBook(bookWithLowStock, 3); // requesting more than available
-        when(bookService.getBookById("2")).thenReturn(bookWithLowStock);
+        when(bookService.decrementStock(eq(Map.of("2", 3)), any())).thenReturn(List.of(
+                new BookService.StockShortfall("2", "Book2", 3, 2, true)));
 
         assertThrows(IllegalStateException.class, () -> {
             checkoutService.checkout("user1", cart);
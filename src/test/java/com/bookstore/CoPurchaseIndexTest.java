@@ -0,0 +1,194 @@
+package com.bookstore;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CoPurchaseIndexTest {
+
+    private CoPurchaseIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new CoPurchaseIndex();
+    }
+
+    private static Order order(String user, String... bookIds) {
+        Map<String, CartItem> items = new LinkedHashMap<>();
+        for (String id : bookIds) items.put(id, new CartItem(id, "Title " + id, BigDecimal.TEN, 1));
+        return new Order(UUID.randomUUID().toString(), user, items, BigDecimal.TEN);
+    }
+
+    @Test
+    void testSimilar_rankedByTimesBoughtTogether() {
+        index.record(order("u1", "a", "b", "c"));
+        index.record(order("u2", "a", "c"));
+        index.record(order("u3", "a", "c", "d"));
+
+        assertEquals(List.of("c", "b", "d"), index.similar(List.of("a"), 5));
+        assertEquals(List.of("c"), index.similar(List.of("a"), 1));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void testSimilar_cartMergesNeighboursAndExcludesCart() {
+        index.record(order("u1", "a", "x"));
+        index.record(order("u2", "b", "x"));
+        index.record(order("u3", "a", "y"));
+
+        List<String> recs = index.similar(List.of("a", "b"), 5);
+        assertEquals("x", recs.get(0));
+        assertTrue(recs.contains("y"));
+        assertFalse(recs.contains("a"));
+        assertFalse(recs.contains("b"));
+    }
+
+    @Test
+    void testSimilar_unknownOrEmpty() {
+        index.record(order("u1", "a", "b"));
+        assertTrue(index.similar(List.of("zzz"), 5).isEmpty());
+        assertTrue(index.similar(List.of(), 5).isEmpty());
+        assertTrue(index.similar(List.of("a"), 0).isEmpty());
+    }
+
+    @Test
+    void testSimilar_refreshedAfterNewOrders() {
+        index.record(order("u1", "a", "b"));
+        assertEquals(List.of("b"), index.similar(List.of("a"), 5));
+
+        index.record(order("u2", "a", "c"));
+        index.record(order("u3", "a", "c"));
+        assertEquals(List.of("c", "b"), index.similar(List.of("a"), 5));
+    }
+
+    @Test
+    void testForUser_excludesBooksAlreadyBought() {
+        index.record(order("alice", "a", "b"));
+        index.record(order("bob", "a", "c"));
+        index.record(order("carol", "b", "c", "d"));
+
+        List<String> recs = index.forUser("alice", 5);
+        assertEquals("c", recs.get(0));
+        assertTrue(recs.contains("d"));
+        assertFalse(recs.contains("a"));
+        assertFalse(recs.contains("b"));
+        assertTrue(index.forUser("nobody", 5).isEmpty());
+    }
+
+    @Test
+    void testBestSellers_byNumberOfOrders() {
+        index.record(order("u1", "a", "b"));
+        index.record(order("u2", "b"));
+        index.record(order("u3", "b", "c"));
+        index.record(order("u4", "c"));
+
+        assertEquals(List.of("b", "c", "a"), index.bestSellers(5));
+        assertEquals(List.of("b"), index.bestSellers(1));
+
+        index.record(order("u5", "a"));
+        index.record(order("u6", "a"));
+        assertEquals("a", index.bestSellers(1).get(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPersist_writesChangedUsersOnce() {
+        RecommendationRepository repo = mock(RecommendationRepository.class);
+        index.record(order("alice", "a", "b"));
+        index.record(order("bob", "a", "c"));
+
+        assertEquals(2, index.persist(repo, 5));
+        ArgumentCaptor<List<Recommendation>> recs = ArgumentCaptor.forClass(List.class);
+        verify(repo).saveRecommendations(eq("alice"), recs.capture());
+        Recommendation first = recs.getValue().get(0);
+        assertEquals(1, first.getRank());
+        assertEquals("c", first.getBookId());
+        assertEquals("Title c", first.getTitle());
+
+        assertEquals(0, index.persist(repo, 5));
+        verify(repo, times(2)).saveRecommendations(anyString(), anyList());
+    }
+
+    @Test
+    void testPersist_failedUsersRetried() {
+        RecommendationRepository repo = mock(RecommendationRepository.class);
+        doThrow(new RuntimeException("down")).doNothing().when(repo).saveRecommendations(eq("alice"), anyList());
+        index.record(order("alice", "a", "b"));
+        index.record(order("bob", "b", "c"));
+
+        assertEquals(1, index.persist(repo, 5));          // bob only
+        assertEquals(1, index.persist(repo, 5));          // alice, retried
+        assertEquals(0, index.persist(repo, 5));
+    }
+
+    @Test
+    void testBootstrap_countsOrderSavedDuringScanOnce() {
+        Order live = order("u2", "a", "b");
+        InMemoryOrderRepository stored = new InMemoryOrderRepository() {
+            @Override
+            public OrderPage findAll(int limit, String cursor) {
+                OrderPage page = super.findAll(limit, cursor);
+                index.record(live);                         // a checkout lands mid-scan
+                return page;
+            }
+        };
+        stored.save(order("u1", "a", "b"));
+        stored.save(live);
+
+        assertEquals(2, index.bootstrap(stored));
+        assertEquals(List.of("a", "b"), index.bestSellers(5));
+
+        // after the scan an order id is no longer remembered
+        index.record(order("u3", "c", "a"));
+        index.record(order("u3", "c", "a"));
+        assertEquals(List.of("a", "b", "c"), index.bestSellers(5));
+        assertEquals(List.of("b", "c"), index.similar(List.of("a"), 5));
+    }
+
+    @Test
+    void testRecord_neighboursPerBookAreCapped() {
+        for (int i = 0; i < 3 * CoPurchaseIndex.MAX_NEIGHBOURS; i++) {
+            index.record(order("u" + i, "hub", "rare-" + i));
+            if (i % 10 == 0) index.record(order("v" + i, "hub", "often"));
+        }
+
+        assertTrue(index.neighbourCount("hub") <= CoPurchaseIndex.MAX_NEIGHBOURS);
+        assertEquals("often", index.similar(List.of("hub"), 1).get(0));
+    }
+
+    @Test
+    void testIntCounts_retainLargestKeepsTopCounts() {
+        CoPurchaseIndex.IntCounts counts = new CoPurchaseIndex.IntCounts(4);
+        for (int k = 0; k < 100; k++) counts.add(k, k);
+
+        counts.retainLargest(10);
+
+        assertEquals(10, counts.size());
+        for (int k : counts.keys()) assertTrue(k >= 90, "kept " + k);
+    }
+
+    @Test
+    void testIntCounts_growsAndKeepsCounts() {
+        CoPurchaseIndex.IntCounts counts = new CoPurchaseIndex.IntCounts(2);
+        for (int k = 0; k < 1000; k++) counts.add(k, k);
+        for (int k = 0; k < 1000; k += 2) counts.add(k, 1);
+
+        assertEquals(1000, counts.size());
+        assertTrue(counts.capacity() >= 2000);
+        int total = 0;
+        for (int s = 0; s < counts.capacity(); s++) {
+            if (counts.keyAt(s) >= 0) total += counts.valueAt(s) - counts.keyAt(s);
+        }
+        assertEquals(500, total);
+    }
+}
@@ -0,0 +1,75 @@
+package com.bookstore;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.net.URI;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs against DynamoDB Local (DDB_ENDPOINT, default http://localhost:8000), as in CI.
+ * Skipped when no local DynamoDB is reachable.
+ */
+class DynamoDbBrowsingHistoryRepositoryTest {
+
+    private static DynamoDbClient client;
+    private static DynamoDbBrowsingHistoryRepository repository;
+    private static final String TABLE = "BrowsingHistoryTest-" + UUID.randomUUID();
+
+    @BeforeAll
+    static void connect() {
+        String endpoint = System.getenv().getOrDefault("DDB_ENDPOINT", "http://localhost:8000");
+        client = DynamoDbClient.builder()
+                .endpointOverride(URI.create(endpoint))
+                .region(Region.AP_SOUTH_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("dummy", "dummy")))
+                .build();
+        boolean reachable;
+        try {
+            client.listTables();
+            reachable = true;
+        } catch (RuntimeException e) {
+            reachable = false;
+        }
+        assumeTrue(reachable, "DynamoDB Local not reachable at " + endpoint);
+        repository = new DynamoDbBrowsingHistoryRepository(client, TABLE);
+    }
+
+    @AfterAll
+    static void dropTable() {
+        if (repository != null) client.deleteTable(r -> r.tableName(TABLE));
+        if (client != null) client.close();
+    }
+
+    @Test
+    void testSaveAllAndLoadAll_roundTripsMoreThanOneBatch() {
+        Map<String, List<String>> histories = new LinkedHashMap<>();
+        for (int i = 0; i < 60; i++) histories.put("user-" + i, List.of("b-" + i, "b-x", "b-" + (i + 1)));
+        histories.put("empty", List.of());
+
+        assertTrue(repository.saveAll(histories).isEmpty());
+
+        List<String> users = new ArrayList<>(histories.keySet());
+        users.add("nobody");
+        Map<String, List<String>> loaded = repository.loadAll(users);
+        assertEquals(61, loaded.size());
+        assertEquals(List.of("b-7", "b-x", "b-8"), loaded.get("user-7"));
+        assertEquals(List.of(), loaded.get("empty"));
+        assertFalse(loaded.containsKey("nobody"));
+    }
+
+    @Test
+    void testSaveAll_replacesStoredList() {
+        repository.saveAll(Map.of("alice", List.of("b-1", "b-2")));
+        repository.saveAll(Map.of("alice", List.of("b-3")));
+        assertEquals(List.of("b-3"), repository.loadAll(List.of("alice")).get("alice"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.bookstore;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs against DynamoDB Local (DDB_ENDPOINT, default http://localhost:8000), as in CI.
+ * Skipped when no local DynamoDB is reachable.
+ */
+class DynamoDbOrderRepositoryTest {
+
+    private static DynamoDbClient client;
+    private static DynamoDbOrderRepository repository;
+    private static final String TABLE = "OrdersTest-" + UUID.randomUUID();
+    private static final String COUNTERS = TABLE + "-units";
+
+    @BeforeAll
+    static void connect() {
+        String endpoint = System.getenv().getOrDefault("DDB_ENDPOINT", "http://localhost:8000");
+        client = DynamoDbClient.builder()
+                .endpointOverride(URI.create(endpoint))
+                .region(Region.AP_SOUTH_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("dummy", "dummy")))
+                .build();
+        boolean reachable;
+        try {
+            client.listTables();
+            reachable = true;
+        } catch (RuntimeException e) {
+            reachable = false;
+        }
+        assumeTrue(reachable, "DynamoDB Local not reachable at " + endpoint);
+
+        DynamoDbEnhancedClient enhanced = DynamoDbEnhancedClient.builder().dynamoDbClient(client).build();
+        repository = new DynamoDbOrderRepository(client, enhanced, TABLE, COUNTERS, 0, 0);
+    }
+
+    @AfterAll
+    static void dropTable() {
+        if (repository != null) {
+            client.deleteTable(r -> r.tableName(TABLE));
+            client.deleteTable(r -> r.tableName(COUNTERS));
+        }
+        if (client != null) client.close();
+    }
+
+    @Test
+    void testSaveAndFindById_roundTripsLineItemsAndTimestamp() {
+        Instant at = Instant.parse("2024-03-01T10:15:30.123456789Z");
+        Map<String, CartItem> items = Map.of("b1", new CartItem("b1", "Clean Code", "Robert C. Martin", null,
+                new BigDecimal("35.50"), 2));
+        repository.save(new Order("rt-1", "alice", items, new BigDecimal("71.00"), at));
+
+        Order found = repository.findById("rt-1").orElseThrow();
+        assertEquals("alice", found.getUsername());
+        assertEquals(at, found.getCreatedAt());
+        assertEquals(0, new BigDecimal("71.00").compareTo(found.getTotal()));
+        CartItem line = found.getItems().get("b1");
+        assertEquals("Clean Code", line.getTitle());
+        assertEquals(2, line.getQuantity());
+        assertNull(line.getIsbn());
+        assertEquals(2, repository.unitsSold("b1"));
+    }
+
+    @Test
+    void testFindByUser_pagesNewestFirst() {
+        Instant t0 = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i = 0; i < 5; i++) {
+            repository.save(new Order("pg-" + i, "bob", Map.of(), BigDecimal.ONE, t0.plusMillis(i)));
+        }
+        repository.save(new Order("pg-other", "carol", Map.of(), BigDecimal.ONE, t0.plusSeconds(5)));
+
+        OrderPage first = repository.findByUser("bob", 2, null);
+        assertEquals(List.of("pg-4", "pg-3"), ids(first.orders()));
+
+        OrderPage second = repository.findByUser("bob", 2, first.nextCursor());
+        assertEquals(List.of("pg-2", "pg-1"), ids(second.orders()));
+
+        OrderPage third = repository.findByUser("bob", 2, second.nextCursor());
+        assertEquals(List.of("pg-0"), ids(third.orders()));
+        assertNull(third.nextCursor());
+
+        assertEquals(5, repository.findByUser("bob").size());
+    }
+
+    @Test
+    void testUnitsSold_sharedAcrossInstancesAndRestarts() {
+        DynamoDbEnhancedClient enhanced = DynamoDbEnhancedClient.builder().dynamoDbClient(client).build();
+        Map<String, CartItem> two = Map.of("us-1", new CartItem("us-1", "T", BigDecimal.ONE, 2));
+        repository.save(new Order("us-o1", "alice", two, BigDecimal.ONE));
+
+        // another replica, or this one after a restart, starts from the persisted count
+        DynamoDbOrderRepository other = new DynamoDbOrderRepository(client, enhanced, TABLE, COUNTERS, 0, 0);
+        assertEquals(2, other.unitsSold("us-1"));
+
+        other.save(new Order("us-o2", "bob", Map.of("us-1", new CartItem("us-1", "T", BigDecimal.ONE, 3)), BigDecimal.ONE));
+        assertEquals(5, other.unitsSold("us-1"));
+        // re-saving an order counts only the difference
+        repository.save(new Order("us-o1", "alice", Map.of("us-1", new CartItem("us-1", "T", BigDecimal.ONE, 1)), BigDecimal.ONE));
+        assertEquals(4, repository.unitsSold("us-1"));
+        assertEquals(4, new DynamoDbOrderRepository(client, enhanced, TABLE, COUNTERS, 0, 0).unitsSold("us-1"));
+
+        // a top seller here picks up another replica's sales without a full scan
+        other.save(new Order("us-o3", "bob", Map.of("us-1", new CartItem("us-1", "T", BigDecimal.ONE, 5)), BigDecimal.ONE));
+        assertEquals(4, repository.unitsSold("us-1"));
+        repository.refreshTopSellers();
+        assertEquals(9, repository.unitsSold("us-1"));
+    }
+
+    private static List<String> ids(List<Order> orders) {
+        return orders.stream().map(Order::getOrderId).toList();
+    }
+}
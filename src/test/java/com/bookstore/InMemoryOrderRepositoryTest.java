@@ -3,6 +3,7 @@ package com.bookstore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -112,6 +113,75 @@ class InMemoryOrderRepositoryTest {
         });
     }
 
+    @Test
+    void testUnitsSold_sumsQuantitiesAcrossOrders() {
+        repository.save(order1);
+        repository.save(order2);
+
+        Map<String, CartItem> items = new HashMap<>();
+        items.put("b2", new CartItem("b2", "Book2", new BigDecimal("20"), 3));
+        repository.save(new Order("order5", "user2", items, new BigDecimal("60")));
+
+        assertEquals(1, repository.unitsSold("b1"));
+        assertEquals(5, repository.unitsSold("b2"));
+        assertEquals(0, repository.unitsSold("unknown"));
+    }
+
+    @Test
+    void testUnitsSold_overwriteDoesNotDoubleCount() {
+        repository.save(order2);
+        repository.save(order2);
+
+        assertEquals(2, repository.unitsSold("b2"));
+    }
+
+    @Test
+    void testFindByUser_newestFirstWithCursorPages() {
+        Instant t0 = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i = 0; i < 5; i++) {
+            repository.save(new Order("o" + i, "pat", Map.of(), BigDecimal.ONE, t0.plusSeconds(i)));
+        }
+        repository.save(new Order("other", "sam", Map.of(), BigDecimal.ONE, t0.plusSeconds(10)));
+
+        OrderPage first = repository.findByUser("pat", 2, null);
+        assertEquals(List.of("o4", "o3"), ids(first.orders()));
+        assertNotNull(first.nextCursor());
+
+        OrderPage second = repository.findByUser("pat", 2, first.nextCursor());
+        assertEquals(List.of("o2", "o1"), ids(second.orders()));
+
+        OrderPage last = repository.findByUser("pat", 2, second.nextCursor());
+        assertEquals(List.of("o0"), ids(last.orders()));
+        assertNull(last.nextCursor());
+    }
+
+    @Test
+    void testFindByUser_overwriteMovesOrderBetweenUsers() {
+        repository.save(order1);
+        repository.save(new Order("order1", "user2", Map.of(), BigDecimal.ONE));
+
+        assertTrue(repository.findByUser("user1").isEmpty());
+        assertEquals(1, repository.findByUser("user2").size());
+        assertEquals(1, repository.findAll(10, null).orders().size());
+    }
+
+    @Test
+    void testFindAll_pagesAcrossUsersAndRejectsBadCursor() {
+        Instant t0 = Instant.parse("2024-01-01T00:00:00Z");
+        repository.save(new Order("a", "u1", Map.of(), BigDecimal.ONE, t0));
+        repository.save(new Order("b", "u2", Map.of(), BigDecimal.ONE, t0)); // same instant: ordered by id
+        repository.save(new Order("c", "u1", Map.of(), BigDecimal.ONE, t0.plusSeconds(1)));
+
+        OrderPage page = repository.findAll(2, null);
+        assertEquals(List.of("c", "b"), ids(page.orders()));
+        assertEquals(List.of("a"), ids(repository.findAll(2, page.nextCursor()).orders()));
+        assertThrows(IllegalArgumentException.class, () -> repository.findAll(2, "not-a-cursor"));
+    }
+
+    private static List<String> ids(List<Order> orders) {
+        return orders.stream().map(Order::getOrderId).toList();
+    }
+
     @Test
     void testThreadSafety() throws InterruptedException {
         // Test concurrent saves
@@ -0,0 +1,110 @@
+package com.bookstore;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InventoryReservationsTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private InventoryReservations ledger;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new InventoryReservations(Duration.ofSeconds(60), now::get);
+    }
+
+    @Test
+    void testHold_fitsWhenStockMinusOthersCovers() {
+        assertTrue(ledger.hold("s1", "b1", 3, 5));
+        assertTrue(ledger.hold("s2", "b1", 2, 5));
+        assertFalse(ledger.hold("s3", "b1", 1, 5), "All 5 copies are held");
+        assertEquals(5, ledger.heldByOthers("b1", "s3"));
+        assertEquals(2, ledger.heldByOthers("b1", "s1"));
+    }
+
+    @Test
+    void testHold_refreshReplacesOwnHold() {
+        assertTrue(ledger.hold("s1", "b1", 3, 3));
+        assertTrue(ledger.hold("s1", "b1", 2, 3));
+        assertEquals(2, ledger.heldByOthers("b1", "s2"));
+        assertEquals(1, ledger.size());
+    }
+
+    @Test
+    void testHold_failureDropsPreviousHold() {
+        assertTrue(ledger.hold("s1", "b1", 1, 2));
+        assertFalse(ledger.hold("s1", "b1", 5, 2));
+        assertEquals(0, ledger.heldByOthers("b1", "s2"));
+    }
+
+    @Test
+    void testExpiredHolds_areIgnoredAndSwept() {
+        ledger.hold("s1", "b1", 4, 4);
+        assertFalse(ledger.hold("s2", "b1", 1, 4));
+
+        now.addAndGet(Duration.ofSeconds(61).toNanos());
+
+        assertEquals(0, ledger.heldByOthers("b1", "s2"));
+        assertEquals(1, ledger.sweep());
+        assertEquals(0, ledger.size());
+        assertTrue(ledger.hold("s2", "b1", 1, 4));
+    }
+
+    @Test
+    void testRelease_dropsAllHoldsOfHolder() {
+        ledger.hold("s1", "b1", 1, 5);
+        ledger.hold("s1", "b2", 1, 5);
+        ledger.hold("s2", "b1", 1, 5);
+
+        ledger.release("s1");
+
+        assertEquals(1, ledger.size());
+        assertEquals(0, ledger.heldByOthers("b2", "x"));
+        assertEquals(1, ledger.heldByOthers("b1", "x"));
+    }
+
+    @Test
+    void testRetain_dropsBooksNoLongerInCart() {
+        ledger.hold("s1", "b1", 1, 5);
+        ledger.hold("s1", "b2", 1, 5);
+
+        ledger.retain("s1", Set.of("b2"));
+
+        assertEquals(0, ledger.heldByOthers("b1", "x"));
+        assertEquals(1, ledger.heldByOthers("b2", "x"));
+    }
+
+    @Test
+    void testHold_racingFailureOnAnotherBookKeepsHolderIndex() throws Exception {
+        // a failed hold on b2 forgets b2 under b2's stripe while b1 is held under b1's;
+        // release must still find the b1 hold every time
+        for (int round = 0; round < 2000; round++) {
+            ledger.hold("s1", "b2", 1, 5);
+            CyclicBarrier start = new CyclicBarrier(2);
+            Thread other = new Thread(() -> {
+                await(start);
+                ledger.hold("s1", "b2", 9, 5);
+            });
+            other.start();
+            await(start);
+            ledger.hold("s1", "b1", 1, 5);
+            other.join();
+
+            ledger.release("s1");
+            assertEquals(0, ledger.size(), "round " + round);
+        }
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
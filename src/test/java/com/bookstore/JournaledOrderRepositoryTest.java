@@ -0,0 +1,267 @@
+package com.bookstore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournaledOrderRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private static Order order(String id, String user, String bookId, int qty) {
+        Map<String, CartItem> items = new LinkedHashMap<>();
+        items.put(bookId, new CartItem(bookId, "Title " + bookId, "Author", "isbn-" + bookId, new BigDecimal("12.50"), qty));
+        return new Order(id, user, items, new BigDecimal("12.50").multiply(BigDecimal.valueOf(qty)),
+                Instant.ofEpochSecond(1_700_000_000L, id.hashCode() & 0xFFFF));
+    }
+
+    @Test
+    void testReplay_restoresOrdersAfterRestart() {
+        try (JournaledOrderRepository repo = new JournaledOrderRepository(dir, 1000)) {
+            repo.save(order("o1", "alice", "b1", 2));
+            repo.save(order("o2", "bob", "b1", 1));
+            repo.save(order("o1", "alice", "b2", 3)); // overwrite
+        }
+
+        try (JournaledOrderRepository repo = new JournaledOrderRepository(dir, 1000)) {
+            Order o1 = repo.findById("o1").orElseThrow();
+            assertEquals("alice", o1.getUsername());
+            assertEquals(3, o1.getItems().get("b2").getQuantity());
+            assertEquals("Author", o1.getItems().get("b2").getAuthor());
+            assertEquals(0, new BigDecimal("37.50").compareTo(o1.getTotal()));
+            assertEquals(order("o1", "alice", "b2", 3).getCreatedAt(), o1.getCreatedAt());
+            assertEquals(2, repo.findAll().size());
+            assertEquals(1, repo.unitsSold("b1"));
+            assertEquals(3, repo.unitsSold("b2"));
+        }
+    }
+
+    @Test
+    void testReplay_dropsTornTail() throws Exception {
+        try (JournaledOrderRepository repo = new JournaledOrderRepository(dir, 1000)) {
+            repo.save(order("o1", "alice", "b1", 1));
+            repo.save(order("o2", "alice", "b1", 1));
+        }
+        // close() snapshots and empties the journal; write a fresh record and then a half-written one
+        try (JournaledOrderRepository repo = new JournaledOrderRepository(dir, 1000)) {
+            repo.save(order("o3", "alice", "b1", 1));
+            Path journal = dir.resolve("journal.log");
+            byte[] tail = Arrays.copyOf(Files.readAllBytes(journal), 11);
+            Files.write(journal, tail, StandardOpenOption.APPEND);
+            Files.copy(journal, dir.resolve("torn.log"));
+        }
+        Files.delete(dir.resolve("snapshot.bin"));
+        Files.move(dir.resolve("torn.log"), dir.resolve("journal.log"), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+
+        try (JournaledOrderRepository repo = new JournaledOrderRepository(dir, 1000)) {
+            assertTrue(repo.findById("o3").isPresent());
+            assertEquals(1, repo.findAll().size());
+            repo.save(order("o4", "alice", "b1", 1));
+        }
+        try (JournaledOrderRepository repo = new JournaledOrderRepository(dir, 1000)) {
+            assertTrue(repo.findById("o4").isPresent());
+        }
+    }
+
+    @Test
+    void testSnapshot_truncatesJournalAndReplaysBoth() throws Exception {
+        JournaledOrderRepository repo = new JournaledOrderRepository(dir, 3);
+        for (int i = 0; i < 7; i++) repo.save(order("o" + i, "alice", "b1", 1));
+
+        assertTrue(Files.exists(dir.resolve("snapshot.bin")));
+        assertTrue(Files.size(dir.resolve("journal.log")) > 0); // o6 is only in the journal
+
+        // simulate a crash: no close(), so no final snapshot
+        JournaledOrderRepository reopened = new JournaledOrderRepository(dir, 3);
+        assertEquals(7, reopened.findAll().size());
+        assertEquals(7, reopened.unitsSold("b1"));
+        reopened.close();
+    }
+
+    @Test
+    void testSave_concurrentCheckoutsAreAllDurable() throws Exception {
+        int threads = 8, perThread = 250;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (JournaledOrderRepository repo = new JournaledOrderRepository(dir, 500)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        repo.save(order("t" + thread + "-" + i, "user" + thread, "b" + (i % 5), 1));
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        try (JournaledOrderRepository repo = new JournaledOrderRepository(dir, 500)) {
+            assertEquals(threads * perThread, repo.findAll().size());
+            assertEquals(perThread, repo.findByUser("user3").size());
+        }
+    }
+
+    @Test
+    void testSave_afterCloseIsRejected() {
+        JournaledOrderRepository repo = new JournaledOrderRepository(dir, 10);
+        repo.close();
+        assertThrows(IllegalStateException.class, () -> repo.save(order("o1", "alice", "b1", 1)));
+    }
+
+    @Test
+    void testAppend_failedFsyncFailsBatchAndIsCutOff() throws Exception {
+        Files.createDirectories(dir);
+        FaultyChannel channel = new FaultyChannel(FileChannel.open(dir.resolve("journal.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        Map<String, Order> applied = new ConcurrentHashMap<>();
+        OrderJournal journal = new OrderJournal(dir, channel);
+        journal.replay(o -> {});
+        journal.start(o -> applied.put(o.getOrderId(), o), applied::values, 1000);
+
+        journal.append(order("o1", "alice", "b1", 1)).get(5, TimeUnit.SECONDS);
+        channel.failWrites = true;     // half a record reaches the file, then the write fails
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> journal.append(order("o2", "alice", "b1", 1)).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+        channel.failWrites = false;
+        channel.forceFailures.set(1);
+        e = assertThrows(ExecutionException.class,
+                () -> journal.append(order("o3", "alice", "b1", 1)).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+        journal.append(order("o4", "alice", "b1", 1)).get(5, TimeUnit.SECONDS);
+        assertEquals(Set.of("o1", "o4"), applied.keySet());
+
+        // fsync keeps failing, so the failed batch cannot be cut off either: refuse from then on
+        channel.forceFailures.set(2);
+        assertThrows(ExecutionException.class,
+                () -> journal.append(order("o5", "alice", "b1", 1)).get(5, TimeUnit.SECONDS));
+        e = assertThrows(ExecutionException.class,
+                () -> journal.append(order("o6", "alice", "b1", 1)).get(5, TimeUnit.SECONDS));
+        assertEquals("Order journal failed", e.getCause().getMessage());
+
+        // crash: no close(); the journal must hold exactly the acknowledged orders
+        List<String> replayed = new ArrayList<>();
+        new OrderJournal(dir).replay(o -> replayed.add(o.getOrderId()));
+        assertEquals(List.of("o1", "o4"), replayed);
+    }
+
+    @Test
+    void testReplay_failsOnCorruptRecordBeforeIntactOnes() throws Exception {
+        JournaledOrderRepository repo = new JournaledOrderRepository(dir, 1000);
+        repo.save(order("o1", "alice", "b1", 1));
+        repo.save(order("o2", "alice", "b1", 1));
+        // crash without close(), then damage the first record's payload
+        Path journal = dir.resolve("journal.log");
+        byte[] bytes = Files.readAllBytes(journal);
+        bytes[10] ^= 0x5A;
+        Files.write(journal, bytes);
+
+        UncheckedIOException e = assertThrows(UncheckedIOException.class,
+                () -> new JournaledOrderRepository(dir, 1000));
+        assertTrue(e.getCause().getMessage().contains("offset 0"));
+    }
+
+    @Test
+    void testAppend_throwingApplierFailsOnlyItsCaller() throws Exception {
+        List<Order> applied = new CopyOnWriteArrayList<>();
+        OrderJournal journal = new OrderJournal(dir);
+        journal.replay(o -> {});
+        journal.start(o -> {
+            if (o.getOrderId().equals("bad")) throw new IllegalArgumentException("boom");
+            applied.add(o);
+        }, () -> applied, 1000);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> journal.append(order("bad", "alice", "b1", 1)).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        journal.append(order("o1", "alice", "b1", 1)).get(5, TimeUnit.SECONDS);
+        assertEquals(1, applied.size());
+        journal.close();
+    }
+
+    @Test
+    void testAppend_racingCloseNeverHangs() throws Exception {
+        OrderJournal journal = new OrderJournal(dir);
+        journal.replay(o -> {});
+        List<Order> applied = new CopyOnWriteArrayList<>();
+        journal.start(applied::add, () -> applied, 1000);
+        List<CompletableFuture<Void>> futures = new CopyOnWriteArrayList<>();
+        Thread appender = new Thread(() -> {
+            for (int i = 0; ; i++) {
+                try {
+                    futures.add(journal.append(order("o" + i, "alice", "b1", 1)));
+                } catch (IllegalStateException closed) {
+                    return;
+                }
+            }
+        });
+        appender.start();
+        Thread.sleep(20);
+        journal.close();
+        appender.join(5000);
+
+        for (CompletableFuture<Void> f : futures) f.get(5, TimeUnit.SECONDS);
+        assertEquals(futures.size(), applied.size());
+    }
+
+    /** Journal file whose writes or fsyncs can be made to fail; a failing write gets half-way first. */
+    private static final class FaultyChannel extends FileChannel {
+        private final FileChannel file;
+        volatile boolean failWrites;
+        final AtomicInteger forceFailures = new AtomicInteger();
+
+        FaultyChannel(FileChannel file) {
+            this.file = file;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            if (!failWrites) return file.write(srcs, offset, length);
+            ByteBuffer half = srcs[offset].duplicate();
+            half.limit(half.position() + half.remaining() / 2);
+            file.write(half);
+            throw new IOException("disk full");
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (forceFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) throw new IOException("fsync failed");
+            file.force(metaData);
+        }
+
+        @Override public int read(ByteBuffer dst) throws IOException { return file.read(dst); }
+        @Override public long read(ByteBuffer[] dsts, int offset, int length) throws IOException { return file.read(dsts, offset, length); }
+        @Override public int write(ByteBuffer src) throws IOException { return file.write(src); }
+        @Override public long position() throws IOException { return file.position(); }
+        @Override public FileChannel position(long newPosition) throws IOException { file.position(newPosition); return this; }
+        @Override public long size() throws IOException { return file.size(); }
+        @Override public FileChannel truncate(long size) throws IOException { file.truncate(size); return this; }
+        @Override public long transferTo(long position, long count, WritableByteChannel target) throws IOException { return file.transferTo(position, count, target); }
+        @Override public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException { return file.transferFrom(src, position, count); }
+        @Override public int read(ByteBuffer dst, long position) throws IOException { return file.read(dst, position); }
+        @Override public int write(ByteBuffer src, long position) throws IOException { return file.write(src, position); }
+        @Override public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException { return file.map(mode, position, size); }
+        @Override public FileLock lock(long position, long size, boolean shared) throws IOException { return file.lock(position, size, shared); }
+        @Override public FileLock tryLock(long position, long size, boolean shared) throws IOException { return file.tryLock(position, size, shared); }
+        @Override protected void implCloseChannel() throws IOException { file.close(); }
+    }
+}
@@ -0,0 +1,59 @@
+package com.bookstore.spring;
+
+import com.bookstore.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = OrderController.class)
+class OrderControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    OrderRepository repo;
+
+    private static Order order(String id) {
+        return new Order(id, "adi", Map.of(), BigDecimal.TEN);
+    }
+
+    @Test
+    void list_without_paging_params_returns_newest_page_as_plain_list() throws Exception {
+        when(repo.findAll(50, null)).thenReturn(new OrderPage(List.of(order("o-1"), order("o-2")), "more"));
+
+        mvc.perform(get("/api/orders"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].orderId").value("o-1"))
+                .andExpect(jsonPath("$.length()").value(2));
+        verify(repo, never()).findAll();
+    }
+
+    @Test
+    void list_with_limit_returns_page() throws Exception {
+        when(repo.findAll(1, null)).thenReturn(new OrderPage(List.of(order("o-1")), "next"));
+
+        mvc.perform(get("/api/orders").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orders[0].orderId").value("o-1"))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    void list_bad_cursor_is_400() throws Exception {
+        when(repo.findAll(50, "junk")).thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        mvc.perform(get("/api/orders").param("cursor", "junk"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,134 @@
+package com.bookstore;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefixSuggesterTest {
+
+    private PrefixSuggester suggester;
+    private final Map<String, Long> sold = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        suggester = new PrefixSuggester(id -> sold.getOrDefault(id, 0L));
+        suggester.rebuild(List.of(
+                new Book("1", "Clean Code", "Robert C. Martin", "Programming", new BigDecimal("35.50"), 10),
+                new Book("2", "Clean Architecture", "Robert C. Martin", "Programming", new BigDecimal("30.00"), 5),
+                new Book("3", "Cleaning Up", "Marie Kondo", "Home", new BigDecimal("15.00"), 7)
+        ));
+    }
+
+    private static List<String> texts(List<PrefixSuggester.Suggestion> s) {
+        return s.stream().map(PrefixSuggester.Suggestion::text).toList();
+    }
+
+    @Test
+    void testSuggest_returnsAllCompletionsForPrefix() {
+        List<String> result = texts(suggester.suggest("clea", 10));
+        assertEquals(List.of("Clean Architecture", "Clean Code", "Cleaning Up"), result);
+    }
+
+    @Test
+    void testSuggest_prefixEndingMidEdge() {
+        // "clean " ends inside the edge shared by both "clean ..." titles
+        List<String> result = texts(suggester.suggest("Clean c", 10));
+        assertEquals(List.of("Clean Code"), result);
+    }
+
+    @Test
+    void testSuggest_ranksByPopularity() {
+        sold.put("3", 50L);
+        sold.put("2", 5L);
+        suggester.rescore(List.of("2", "3"));
+        List<String> result = texts(suggester.suggest("clea", 2));
+        assertEquals(List.of("Cleaning Up", "Clean Architecture"), result);
+    }
+
+    @Test
+    void testSuggest_authorAggregatesBooks() {
+        sold.put("1", 1L);
+        sold.put("2", 1L);
+        suggester.rescore(null);
+        List<PrefixSuggester.Suggestion> result = suggester.suggest("rob", 5);
+        assertEquals(1, result.size());
+        assertEquals("Robert C. Martin", result.get(0).text());
+        assertEquals(2, result.get(0).score());
+        assertEquals(List.of("1", "2"), result.get(0).bookIds());
+    }
+
+    @Test
+    void testSuggest_emptyOrUnknownPrefix() {
+        assertTrue(suggester.suggest("", 5).isEmpty());
+        assertTrue(suggester.suggest("zzz", 5).isEmpty());
+    }
+
+    @Test
+    void testRemove_dropsKeysAndKeepsSiblings() {
+        suggester.remove("1");
+
+        assertEquals(List.of("Clean Architecture", "Cleaning Up"), texts(suggester.suggest("clean", 10)));
+        assertEquals(List.of("2"), suggester.suggest("robert", 5).get(0).bookIds());
+    }
+
+    @Test
+    void testPut_replacesPreviousKeys() {
+        suggester.put(new Book("3", "Spark Joy", "Marie Kondo", "Home", new BigDecimal("15.00"), 7));
+
+        assertEquals(List.of("Clean Architecture", "Clean Code"), texts(suggester.suggest("clean", 10)));
+        assertEquals(List.of("Spark Joy"), texts(suggester.suggest("spa", 10)));
+        assertEquals(3, suggester.size());
+    }
+
+    @Test
+    void testNormalize_collapsesWhitespaceAndCase() {
+        assertEquals("clean code", PrefixSuggester.normalize("  Clean   CODE "));
+        assertEquals("", PrefixSuggester.normalize(null));
+    }
+
+    @Test
+    void testPut_updatesDisplayTextWhenTitleChanges() {
+        suggester.put(new Book("1", "CLEAN CODE", "Robert C. Martin", "Programming", new BigDecimal("35.50"), 10));
+
+        assertEquals(List.of("CLEAN CODE"), texts(suggester.suggest("clean c", 10)));
+    }
+
+    @Test
+    void testSuggest_largeSubtreeRankedFromPerNodeLists() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            books.add(new Book("t" + i, "The Book " + i, "Author " + i, "G", BigDecimal.ONE, 1));
+            sold.put("t" + i, (long) (i * 7919 % 500));
+        }
+        suggester.rebuild(books);
+
+        assertEquals(expectedTop(books, "the", 10), texts(suggester.suggest("t", 10)));
+        assertEquals(expectedTop(books, "the book 1", 10), texts(suggester.suggest("the book 1", 10)));
+
+        // a sale moves a book to the top; removing it drops it again
+        sold.put("t42", 10_000L);
+        suggester.rescore(List.of("t42"));
+        assertEquals("The Book 42", suggester.suggest("th", 5).get(0).text());
+        suggester.remove("t42");
+        books.removeIf(b -> b.getId().equals("t42"));
+        assertEquals(expectedTop(books, "the", 10), texts(suggester.suggest("t", 10)));
+        assertEquals(expectedTop(books, "the", 60), texts(suggester.suggest("the", 60)));
+    }
+
+    // brute force over every title with the prefix, same order as the suggester
+    private List<String> expectedTop(List<Book> books, String prefix, int limit) {
+        return books.stream()
+                .filter(b -> PrefixSuggester.normalize(b.getTitle()).startsWith(prefix))
+                .sorted(Comparator.comparingLong((Book b) -> sold.getOrDefault(b.getId(), 0L)).reversed()
+                        .thenComparing(Book::getTitle))
+                .limit(limit)
+                .map(Book::getTitle)
+                .toList();
+    }
+}
@@ -7,6 +7,7 @@ import org.mockito.MockitoAnnotations;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.math.BigDecimal;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -131,4 +132,34 @@ class RecommendationServiceTest {
 
         assertTrue(result.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRecommendForUser_resolvesIdsInRankOrder() {
+        when(repository.getTopRecommendations("user1", 3)).thenReturn(Arrays.asList(
+                new Recommendation(1, "b-1", "Old title", "r"),
+                new Recommendation(2, "b-gone", "Deleted", "r"),
+                new Recommendation(3, "b-3", "Book3", "r")));
+        Book live1 = new Book("b-1", "Book1", "A", "G", new BigDecimal("12.50"), 4);
+        Book live3 = new Book("b-3", "Book3", "A", "G", new BigDecimal("7.00"), 0);
+
+        List<Book> result = service.recommendForUser("user1", 3, ids -> {
+            assertEquals(List.of("b-1", "b-gone", "b-3"), ids);
+            return List.of(live1, live3);
+        });
+
+        assertEquals(List.of(live1, live3), result);
+        assertEquals(new BigDecimal("12.50"), result.get(0).getPrice());
+        verify(repository, never()).findRecommendationsForUser(anyString(), anyInt());
+    }
+
+    @Test
+    void testRecommendForUser_noSavedListSkipsLookup() {
+        when(repository.getTopRecommendations("user1", 5)).thenReturn(Collections.emptyList());
+
+        List<Book> result = service.recommendForUser("user1", 5, ids -> {
+            throw new AssertionError("lookup not expected");
+        });
+
+        assertTrue(result.isEmpty());
+    }
+}
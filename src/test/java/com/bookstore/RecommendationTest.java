@@ -66,4 +66,12 @@ class RecommendationTest {
         Recommendation rec = new Recommendation();
         assertDoesNotThrow(() -> rec.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testToBook_carriesIdAndTitle() {
+        Book b = new Recommendation(1, "b-1", "Clean Code", "classic").toBook();
+        assertEquals("b-1", b.getId());
+        assertEquals("Clean Code", b.getTitle());
+        assertNull(new Recommendation().toBook());
+    }
+}
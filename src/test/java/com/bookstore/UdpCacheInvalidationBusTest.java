@@ -0,0 +1,90 @@
+package com.bookstore;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+class UdpCacheInvalidationBusTest {
+
+    private UdpCacheInvalidationBus receiver;
+    private UdpCacheInvalidationBus sender;
+    private final BlockingQueue<List<String>> delivered = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void setUp() {
+        receiver = new UdpCacheInvalidationBus(0, List.of());
+        receiver.subscribe(delivered::add);
+        sender = new UdpCacheInvalidationBus(0, List.of(
+                new InetSocketAddress("127.0.0.1", receiver.localPort())));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sender.close();
+        receiver.close();
+    }
+
+    @Test
+    void testPublish_deliversIdsToPeer() throws Exception {
+        sender.publish(List.of("b-1", "b-2"));
+
+        assertEquals(List.of("b-1", "b-2"), delivered.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, receiver.receivedCount());
+    }
+
+    @Test
+    void testPublish_splitsLargeIdListsAcrossDatagrams() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 500; i++) ids.add("b-" + "x".repeat(20) + i);
+
+        sender.publish(ids);
+
+        List<String> got = new ArrayList<>();
+        while (got.size() < ids.size()) {
+            List<String> chunk = delivered.poll(5, TimeUnit.SECONDS);
+            assertNotNull(chunk, "missing datagram after " + got.size() + " ids");
+            got.addAll(chunk);
+        }
+        assertEquals(ids, got);
+        assertTrue(sender.sentCount() > 1);
+    }
+
+    @Test
+    void testPublish_ignoresOwnEcho() throws Exception {
+        int port;
+        try (DatagramSocket probe = new DatagramSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        // a node listed among its own peers (same peer list on every replica)
+        UdpCacheInvalidationBus node = new UdpCacheInvalidationBus(port, List.of(
+                new InetSocketAddress("127.0.0.1", port),
+                new InetSocketAddress("127.0.0.1", receiver.localPort())));
+        BlockingQueue<List<String>> own = new LinkedBlockingQueue<>();
+        node.subscribe(own::add);
+        try {
+            node.publish(List.of("b-9"));
+
+            assertEquals(List.of("b-9"), delivered.poll(5, TimeUnit.SECONDS));
+            assertNull(own.poll(200, TimeUnit.MILLISECONDS));
+        } finally {
+            node.close();
+        }
+    }
+
+    @Test
+    void testParsePeers_readsHostPortList() {
+        List<InetSocketAddress> peers = UdpCacheInvalidationBus.parsePeers(" 10.0.0.1:47800, ,node-b:9000");
+        assertEquals(2, peers.size());
+        assertEquals(47800, peers.get(0).getPort());
+        assertEquals("node-b", peers.get(1).getHostString());
+        assertThrows(IllegalArgumentException.class, () -> UdpCacheInvalidationBus.parsePeers("nohost"));
+    }
+}
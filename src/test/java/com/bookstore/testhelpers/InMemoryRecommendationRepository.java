@@ -35,35 +35,12 @@ public class InMemoryRecommendationRepository implements RecommendationRepositor
 
     @Override
     public List<Book> findRecommendationsForUser(String userId, int limit) {
-        List<Recommendation> recs = getTopRecommendations(userId, limit);
-        return recs.stream()
-                .map(this::extractBook)
+        return getTopRecommendations(userId, limit).stream()
+                .map(Recommendation::toBook)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
-    private Book extractBook(Recommendation r) {
-        try {
-            // Prefer direct getter if available
-            var method = r.getClass().getMethod("getBook");
-            Object result = method.invoke(r);
-            if (result instanceof Book) return (Book) result;
-        } catch (NoSuchMethodException ignored) {
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        // fallback: attempt to build minimal Book
-        try {
-            Book b = new Book();
-            var setTitle = Book.class.getMethod("setTitle", String.class);
-            setTitle.invoke(b, r.toString());
-            return b;
-        } catch (Exception ignored) {
-        }
-        return null;
-    }
-
     // optional helper for tests
     public void clear() {
         storage.clear();